@@ -9,6 +9,7 @@ import liquibase.resource.ClassLoaderResourceAccessor;
 
 import org.idvairaz.config.DatabaseConfig;
 import org.idvairaz.web.EmbeddedTomcatServer;
+import org.idvairaz.web.ServiceFactory;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -154,6 +155,7 @@ public class App {
                 if (tomcatServer != null) {
                     tomcatServer.stop();
                 }
+                ServiceFactory.shutdown();
                 DatabaseConfig.close();
                 System.out.println("Ресурсы приложения корректно освобождены");
             } catch (Exception e) {
@@ -193,6 +195,7 @@ public class App {
 
             testDatabaseConnection();
             runLiquibaseMigrations();
+            ServiceFactory.warmUpCaches();
             startEmbeddedTomcat();
 
             System.out.printf("""
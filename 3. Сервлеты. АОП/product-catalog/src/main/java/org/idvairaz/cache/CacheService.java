@@ -2,6 +2,9 @@ package org.idvairaz.cache;
 
 import java.util.Optional;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 /**
  * Интерфейс для сервиса кэширования.
@@ -30,6 +33,17 @@ public interface CacheService<K, V> {
      */
     Optional<V> get(K key);
 
+    /**
+     * Получает значение из кэша, при промахе загружая его через loader.
+     * Одновременные промахи по одному ключу выполняют одну загрузку:
+     * остальные вызывающие ждут ее результат. Значение null не кэшируется.
+     *
+     * @param key ключ для поиска
+     * @param loader функция загрузки значения при промахе
+     * @return найденное или загруженное значение, либо null если loader его не нашел
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
     /**
      * Удаляет значение из кэша по ключу.
      *
@@ -37,6 +51,24 @@ public interface CacheService<K, V> {
      */
     void remove(K key);
 
+    /**
+     * Заменяет значение, если ключ есть в кэше.
+     * Загрузка по этому ключу, выполняющаяся в момент вызова, не сохранит свой результат,
+     * так как он мог быть получен до изменения данных.
+     *
+     * @param key ключ
+     * @param remapping функция вычисления нового значения по текущему; null удаляет запись
+     */
+    void computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Удаляет все записи, удовлетворяющие условию.
+     * Загрузки, выполняющиеся в момент вызова, не сохранят свои результаты.
+     *
+     * @param predicate условие удаления по ключу и значению
+     */
+    void removeIf(BiPredicate<? super K, ? super V> predicate);
+
     /**
      * Очищает весь кэш.
      */
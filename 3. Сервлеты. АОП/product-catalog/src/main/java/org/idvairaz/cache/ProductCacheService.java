@@ -86,10 +86,14 @@
 package org.idvairaz.cache;
 
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductSearchResult;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Function;
 
 /**
  * Специализированный интерфейс для кэширования товаров с расширенными возможностями.
@@ -115,8 +119,35 @@ public interface ProductCacheService {
      */
     Optional<Product> getCachedProduct(Long id);
 
+    /**
+     * Получает товар из кэша, при промахе загружая его через loader.
+     * Одновременные промахи по одному ID выполняют одну загрузку из базы данных.
+     * Отсутствие товара запоминается на короткое время: повторные запросы
+     * несуществующего ID не обращаются к базе данных.
+     *
+     * @param id идентификатор товара
+     * @param loader функция загрузки товара по ID
+     * @return Optional с товаром или empty если товар не найден
+     */
+    Optional<Product> getProduct(Long id, Function<Long, Optional<Product>> loader);
+
+    /**
+     * Находит товар по названию без учета регистра через loader.
+     * Найденный товар кэшируется по ID, отсутствие товара с таким названием
+     * запоминается на короткое время.
+     *
+     * @param name название товара
+     * @param loader функция поиска товара по названию
+     * @return Optional с товаром или empty если товар не найден
+     */
+    Optional<Product> getProductByName(String name, Function<String, Optional<Product>> loader);
+
     /**
      * Кэширует список товаров по категории.
+     * Уже закэшированный товар заменяется только более новой версией (по времени обновления).
+     * Для списков, загружаемых из базы данных, следует использовать
+     * {@link #getProductsByCategory(String, Function)}: он не кэширует загрузку,
+     * во время которой товары изменялись.
      *
      * @param category категория товаров
      * @param products список товаров для кэширования
@@ -131,8 +162,30 @@ public interface ProductCacheService {
      */
     Optional<List<Product>> getCachedProductsByCategory(String category);
 
+    /**
+     * Получает список товаров категории из кэша, при промахе загружая его через loader.
+     * Одновременные промахи по одной категории выполняют одну загрузку из базы данных.
+     *
+     * @param category категория товаров
+     * @param loader функция загрузки товаров категории
+     * @return список товаров категории
+     */
+    List<Product> getProductsByCategory(String category, Function<String, List<Product>> loader);
+
+    /**
+     * Возвращает версию списка товаров категории в кэше без загрузки из базы данных.
+     * Версия меняется при любом изменении списка или входящих в него товаров и никогда
+     * не повторяется, поэтому по ней можно проверять актуальность производных данных
+     * (например, сериализованного ответа). Учитывает обращение к категории для прогрева кэша.
+     *
+     * @param category категория товаров
+     * @return OptionalLong с версией или empty если списка категории нет в кэше
+     */
+    OptionalLong getCategoryVersion(String category);
+
     /**
      * Кэширует список товаров по бренду.
+     * Уже закэшированный товар заменяется только более новой версией (по времени обновления).
      *
      * @param brand бренд товаров
      * @param products список товаров для кэширования
@@ -147,14 +200,46 @@ public interface ProductCacheService {
      */
     Optional<List<Product>> getCachedProductsByBrand(String brand);
 
+    /**
+     * Получает список товаров бренда из кэша, при промахе загружая его через loader.
+     * Одновременные промахи по одному бренду выполняют одну загрузку из базы данных.
+     *
+     * @param brand бренд товаров
+     * @param loader функция загрузки товаров бренда
+     * @return список товаров бренда
+     */
+    List<Product> getProductsByBrand(String brand, Function<String, List<Product>> loader);
+
+    /**
+     * Возвращает версию списка товаров бренда в кэше без загрузки из базы данных.
+     * См. {@link #getCategoryVersion(String)}.
+     *
+     * @param brand бренд товаров
+     * @return OptionalLong с версией или empty если списка бренда нет в кэше
+     */
+    OptionalLong getBrandVersion(String brand);
+
     /**
      * Кэширует результаты поискового запроса.
+     * Уже закэшированный товар заменяется только более новой версией (по времени обновления).
      *
      * @param searchKey поисковый ключ или запрос
      * @param products список найденных товаров
      */
     void cacheSearchResults(String searchKey, List<Product> products);
 
+    /**
+     * Получает результаты поискового запроса вместе с релевантностью товаров из кэша,
+     * при промахе загружая их через loader.
+     * Результат загрузки, во время которой товары изменялись, возвращается, но не кэшируется.
+     * Результаты, сохраненные через cacheSearchResults без релевантности, загружаются заново.
+     *
+     * @param searchKey поисковый ключ
+     * @param loader функция загрузки результатов по ключу
+     * @return найденные товары и их релевантность
+     */
+    ProductSearchResult getSearchResults(String searchKey, Function<String, ProductSearchResult> loader);
+
     /**
      * Получает закэшированные результаты поиска.
      *
@@ -175,6 +260,15 @@ public interface ProductCacheService {
      */
     Map<String, Object> getStats();
 
+    /**
+     * Учитывает в кэшах только что созданный товар без сброса остальных данных.
+     * Товар добавляется в кэш по ID и в закэшированные списки его категории и бренда,
+     * из кэша поиска удаляются только результаты, которые могли измениться.
+     *
+     * @param product созданный товар с присвоенным ID
+     */
+    void cacheNewProduct(Product product);
+
     /**
      * Удаляет товар из всех кэшей по идентификатору.
      * Использует умную инвалидацию для минимизации потерь кэша.
@@ -182,4 +276,46 @@ public interface ProductCacheService {
      * @param id идентификатор товара для удаления
      */
     void invalidateProduct(Long id);
+
+    /**
+     * Применяет к кэшам пакет изменений товаров за один проход.
+     * Сохраненные товары заменяют свои прежние версии в кэше по ID, их идентификаторы
+     * переносятся из индексов прежних категорий и брендов в индексы новых.
+     * Удаленные товары убираются из кэша по ID и из индексов.
+     * Из кэша результатов поиска удаляются только результаты, которые могли измениться.
+     * Запомненное отсутствие ID и названий сохраненных товаров сбрасывается.
+     *
+     * @param saved созданные и измененные товары в сохраненном состоянии
+     * @param deletedIds идентификаторы удаленных товаров
+     */
+    void applyProductChanges(Collection<Product> saved, Collection<Long> deletedIds);
+
+    /**
+     * Применяет к кэшам изменения, выполненные другим экземпляром приложения.
+     * Работает как {@link #applyProductChanges(Collection, Collection)}, но если прежней версии
+     * товара нет в локальном кэше, для переноса между индексами используется известная
+     * из оповещения прежняя версия (частичная: ID, категория, бренд).
+     *
+     * @param saved созданные и измененные товары в сохраненном состоянии
+     * @param deletedIds идентификаторы удаленных товаров
+     * @param knownPreviousVersions прежние версии товаров из оповещения
+     */
+    void applyRemoteChanges(Collection<Product> saved, Collection<Long> deletedIds,
+                            Collection<Product> knownPreviousVersions);
+
+    /**
+     * Возвращает идентификаторы товаров, которые чаще всего запрашивались по ID.
+     *
+     * @param limit максимальное количество идентификаторов
+     * @return идентификаторы по убыванию частоты запросов
+     */
+    List<Long> getHotProductIds(int limit);
+
+    /**
+     * Возвращает категории, списки товаров которых запрашивались чаще всего.
+     *
+     * @param limit максимальное количество категорий
+     * @return категории в нижнем регистре по убыванию частоты запросов
+     */
+    List<String> getHotCategories(int limit);
 }
\ No newline at end of file
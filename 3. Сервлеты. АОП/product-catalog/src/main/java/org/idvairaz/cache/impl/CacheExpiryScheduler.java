@@ -0,0 +1,57 @@
+package org.idvairaz.cache.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Общий фоновый поток удаления устаревших записей для всех in-memory кэшей.
+ * Каждый кэш регистрирует периодическую задачу очистки; поток один на приложение
+ * и является демоном, поэтому не мешает завершению работы.
+ * Кэш удерживается слабой ссылкой: после его сборки задача отменяет себя сама.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class CacheExpiryScheduler {
+
+    /** Однопоточный планировщик очистки кэшей */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CacheExpiryScheduler() {
+    }
+
+    /**
+     * Регистрирует кэш для периодической очистки устаревших записей.
+     *
+     * @param cache кэш для очистки
+     * @param periodMillis период очистки в миллисекундах
+     */
+    static void register(InMemoryCacheService<?, ?> cache, long periodMillis) {
+        WeakReference<InMemoryCacheService<?, ?>> reference = new WeakReference<>(cache);
+        AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
+
+        future.set(EXECUTOR.scheduleWithFixedDelay(() -> {
+            InMemoryCacheService<?, ?> target = reference.get();
+            if (target == null) {
+                ScheduledFuture<?> self = future.get();
+                if (self != null) {
+                    self.cancel(false);
+                }
+                return;
+            }
+            try {
+                target.cleanExpiredEntries();
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка очистки кэша: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS));
+    }
+}
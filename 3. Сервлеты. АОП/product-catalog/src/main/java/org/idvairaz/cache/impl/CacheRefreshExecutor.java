@@ -0,0 +1,49 @@
+package org.idvairaz.cache.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий небольшой пул потоков для фонового обновления записей кэша (refresh-ahead).
+ * Пул намеренно мал: фоновые обновления не должны занимать больше соединений
+ * пула базы данных, чем запросы пользователей. При переполнении очереди задача
+ * отклоняется, и запись обновляется при следующем обращении к ней.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class CacheRefreshExecutor {
+
+    /** Количество потоков обновления */
+    private static final int THREADS = 2;
+
+    /** Максимальное количество ожидающих обновлений */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /** Номер следующего потока для имени */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(1);
+
+    /** Пул потоков обновления */
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh-" + THREAD_NUMBER.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private CacheRefreshExecutor() {
+    }
+
+    /**
+     * Ставит задачу обновления в очередь.
+     *
+     * @param task задача обновления записи
+     * @throws java.util.concurrent.RejectedExecutionException если очередь переполнена
+     */
+    static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+}
@@ -0,0 +1,124 @@
+package org.idvairaz.cache.impl;
+
+/**
+ * Приближенный счетчик частоты обращений к ключам (count-min sketch).
+ * Используется политикой вытеснения W-TinyLFU: при нехватке места новый элемент
+ * допускается в кэш, только если к нему обращались чаще, чем к кандидату на вытеснение.
+ *
+ * <p>Счетчики 4-битные (не больше 15) и хранятся в четырех строках, частота ключа -
+ * минимум по строкам. После каждых 10 * ширина увеличений все счетчики делятся пополам,
+ * поэтому старая популярность постепенно забывается.</p>
+ *
+ * <p>Класс не потокобезопасен, вызывающий код обязан синхронизировать обращения.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class FrequencySketch {
+
+    /** Максимальное значение счетчика */
+    private static final int MAX_COUNT = 15;
+
+    /** Максимальная ширина строки счетчиков */
+    private static final int MAX_WIDTH = 1 << 20;
+
+    /** Затравки хеш-функций для каждой строки */
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /** Строки счетчиков */
+    private final byte[][] table;
+
+    /** Маска индекса в строке (ширина - степень двойки) */
+    private final int mask;
+
+    /** Количество увеличений, после которого счетчики делятся пополам */
+    private final int sampleSize;
+
+    /** Количество увеличений с последнего деления */
+    private int additions;
+
+    /**
+     * Создает счетчик, рассчитанный на указанное количество элементов кэша.
+     *
+     * @param expectedEntries ожидаемое максимальное количество элементов
+     */
+    FrequencySketch(long expectedEntries) {
+        int width = Integer.highestOneBit((int) Math.min(Math.max(expectedEntries, 16), MAX_WIDTH) - 1) << 1;
+        this.table = new byte[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Возвращает оценку частоты обращений к ключу.
+     *
+     * @param key ключ
+     * @return частота от 0 до 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < table.length; i++) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Учитывает обращение к ключу.
+     *
+     * @param key ключ
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < table.length; i++) {
+            int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Делит все счетчики пополам ("старение" частот).
+     */
+    private void reset() {
+        for (byte[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = (byte) (row[j] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Вычисляет индекс счетчика ключа в строке.
+     *
+     * @param hash перемешанный хеш ключа
+     * @param row номер строки
+     * @return индекс в строке
+     */
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    /**
+     * Перемешивает биты хеш-кода, чтобы ослабить влияние плохих hashCode().
+     *
+     * @param hashCode исходный хеш-код
+     * @return перемешанный хеш
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,101 @@
+package org.idvairaz.cache.impl;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчик частоты обращений к ключам для выбора "горячих" ключей,
+ * которые прогреваются в кэше при следующем запуске приложения.
+ *
+ * <p>Количество отслеживаемых ключей ограничено. Когда места нет, новые ключи не учитываются,
+ * а после maximumKeys таких отказов все счетчики делятся пополам и обнулившиеся ключи
+ * удаляются, освобождая место для новой популярности (например, при переборе ID ботами
+ * разовые ключи быстро вытесняются).</p>
+ *
+ * @param <K> тип ключа
+ * @author idvavraz
+ * @version 1.0
+ */
+final class HotKeyTracker<K> {
+
+    /** Максимальное количество отслеживаемых ключей */
+    private final int maximumKeys;
+
+    /** Счетчики обращений по ключам */
+    private final Map<K, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /** Количество неучтенных новых ключей с последнего деления счетчиков */
+    private final AtomicInteger rejectedSinceDecay = new AtomicInteger();
+
+    /**
+     * Создает счетчик.
+     *
+     * @param maximumKeys максимальное количество отслеживаемых ключей
+     * @throws IllegalArgumentException если maximumKeys не положительно
+     */
+    HotKeyTracker(int maximumKeys) {
+        if (maximumKeys <= 0) {
+            throw new IllegalArgumentException("Maximum keys must be positive");
+        }
+        this.maximumKeys = maximumKeys;
+    }
+
+    /**
+     * Учитывает обращение к ключу.
+     *
+     * @param key ключ
+     */
+    void record(K key) {
+        if (key == null) {
+            return;
+        }
+        LongAdder count = counts.get(key);
+        if (count == null) {
+            if (counts.size() >= maximumKeys) {
+                if (rejectedSinceDecay.incrementAndGet() >= maximumKeys) {
+                    decay();
+                }
+                return;
+            }
+            count = counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Возвращает самые часто запрашиваемые ключи.
+     *
+     * @param limit максимальное количество ключей
+     * @return ключи по убыванию частоты обращений
+     */
+    List<K> top(int limit) {
+        return counts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Делит все счетчики пополам и удаляет обнулившиеся ключи.
+     */
+    private synchronized void decay() {
+        if (rejectedSinceDecay.get() < maximumKeys) {
+            return;
+        }
+        rejectedSinceDecay.set(0);
+        counts.forEach((key, count) -> {
+            long half = count.sumThenReset() / 2;
+            if (half == 0) {
+                counts.remove(key, count);
+            } else {
+                count.add(half);
+            }
+        });
+    }
+}
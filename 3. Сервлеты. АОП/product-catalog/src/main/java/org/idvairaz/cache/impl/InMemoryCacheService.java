@@ -99,25 +99,94 @@ import org.idvairaz.cache.CacheService;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
- * In-memory реализация сервиса кэширования с поддержкой TTL (Time To Live).
- * Автоматически удаляет устаревшие записи при обращении к ним.
+ * Потокобезопасная in-memory реализация сервиса кэширования с поддержкой TTL (Time To Live).
+ * Записи хранятся в ConcurrentHashMap, статистика ведется счетчиками LongAdder,
+ * поэтому чтения не блокируют друг друга и масштабируются с числом потоков Tomcat.
+ *
+ * <p>Все записи кэша живут одинаковое время (TTL от момента записи), поэтому очередь
+ * записей в порядке сохранения одновременно упорядочена по сроку истечения.
+ * Общий фоновый поток (CacheExpiryScheduler) периодически снимает устаревшие записи
+ * с головы этой очереди - за амортизированное O(1) на запись, без обхода всего кэша.
+ * Между проходами устаревшая запись не выдается: срок проверяется и при чтении.
+ * Поэтому size() и getStats() - O(1) снимки состояния без очистки.</p>
+ *
+ * <p>Запись не берет общую блокировку: атомарность по ключу обеспечивает ConcurrentHashMap.
+ * Ограниченный кэш откладывает изменения в буфер записи и учитывает их в очередях политики
+ * под policyLock только при свободной блокировке, как и обращения при чтении.
+ * Неограниченный кэш добавляет записи в неблокирующую очередь истечения; замененные
+ * и удаленные записи остаются в ней до истечения своего TTL.</p>
+ *
+ * <p>Метод get(key, loader) объединяет одновременные промахи по одному ключу в одну загрузку:
+ * первый поток вызывает loader, остальные ждут его результат. Если ключ удален или кэш
+ * очищен во время загрузки, загруженное значение возвращается вызывающим, но в кэш не попадает.</p>
+ *
+ * <p>Если задан порог обновления (refreshAfterMillis, меньше TTL), то запись старше порога,
+ * прочитанная через get(key, loader), по-прежнему возвращается сразу, а ее перезагрузка
+ * ставится в фоновый пул CacheRefreshExecutor (не больше одной на ключ). Поэтому
+ * часто читаемые записи обновляются до истечения TTL и запросы не ждут базу данных.
+ * Если loader вернул null, запись удаляется; при ошибке остается прежнее значение.
+ * Если loader вернул тот же объект, что уже хранится в записи, запись не меняется:
+ * так loader может отказаться от обновления, не удаляя запись.</p>
+ *
+ * <p>Кэш может быть ограничен по суммарному весу записей (для ограничения по количеству
+ * вес каждой записи равен 1). Вытеснение выполняется по политике W-TinyLFU:
+ * новые записи попадают в небольшое LRU-окно (1% емкости), а из окна в основную
+ * область (SLRU: испытательный и защищенный сегменты) допускаются, только если
+ * по оценке FrequencySketch к ним обращались чаще, чем к кандидату на вытеснение.
+ * Благодаря этому разовый проход по всем категориям не вытесняет популярные товары.</p>
+ *
+ * <p>Порядок записей политики защищен блокировкой. Чтения захватывают ее через tryLock
+ * и при конкуренции не ждут ее, а откладывают обращение в ограниченный буфер; буфер
+ * применяется следующим потоком, получившим блокировку. Запись, которая тяжелее всей
+ * основной области, в нее не допускается и не вытесняет остальные записи.</p>
  *
  * @param <K> тип ключа
  * @param <V> тип значения
  * @author idvavraz
- * @version 2.0
+ * @version 3.5
  */
 public class InMemoryCacheService<K, V> implements CacheService<K, V> {
 
+    /**
+     * Сегмент политики вытеснения, в котором находится запись.
+     */
+    private enum Segment {
+        /** LRU-окно для новых записей */
+        WINDOW,
+        /** Испытательный сегмент основной области */
+        PROBATION,
+        /** Защищенный сегмент основной области для повторно запрошенных записей */
+        PROTECTED
+    }
+
     /**
      * Внутренняя запись кэша, содержащая значение и время создания.
-     * Используется для реализации TTL.
+     * Используется для реализации TTL и является узлом очереди политики вытеснения.
      *
+     * @param <K> тип ключа
      * @param <V> тип значения
      */
-    private static class CacheEntry<V> {
+    private static class CacheEntry<K, V> {
+        /**
+         * Ключ записи.
+         */
+        private final K key;
         /**
          * Кэшированное значение.
          */
@@ -127,14 +196,36 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
          * Используется для проверки истечения TTL.
          */
         private final long timestamp;
+        /**
+         * Вес записи при ограничении кэша по весу.
+         */
+        private final int weight;
+
+        /** Сегмент политики или null если запись не участвует в политике */
+        private Segment segment;
+        /** Предыдущая запись в очереди сегмента */
+        private CacheEntry<K, V> prev;
+        /** Следующая запись в очереди сегмента */
+        private CacheEntry<K, V> next;
+
+        /** Находится ли запись в очереди порядка записи */
+        private boolean inWriteOrder;
+        /** Предыдущая (более ранняя) запись в очереди порядка записи */
+        private CacheEntry<K, V> writePrev;
+        /** Следующая (более поздняя) запись в очереди порядка записи */
+        private CacheEntry<K, V> writeNext;
 
         /**
          * Создает новую запись кэша с текущим временем создания.
          *
+         * @param key ключ записи
          * @param value значение для кэширования
+         * @param weight вес записи
          */
-        CacheEntry(V value) {
+        CacheEntry(K key, V value, int weight) {
+            this.key = key;
             this.value = value;
+            this.weight = weight;
             this.timestamp = System.currentTimeMillis();
         }
 
@@ -147,47 +238,371 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
         boolean isExpired(long ttlMillis) {
             return System.currentTimeMillis() - timestamp > ttlMillis;
         }
+
+        /**
+         * Проверяет, пора ли обновить запись в фоне.
+         *
+         * @param refreshAfterMillis порог обновления в миллисекундах, 0 - обновление отключено
+         * @return true если запись старше порога обновления
+         */
+        boolean needsRefresh(long refreshAfterMillis) {
+            return refreshAfterMillis > 0 && System.currentTimeMillis() - timestamp > refreshAfterMillis;
+        }
+    }
+
+    /**
+     * Двусвязная очередь записей одного сегмента в порядке обращений (первая - самая старая).
+     *
+     * @param <K> тип ключа
+     * @param <V> тип значения
+     */
+    private static class AccessOrderQueue<K, V> {
+        /** Самая давно использованная запись */
+        private CacheEntry<K, V> head;
+        /** Самая недавно использованная запись */
+        private CacheEntry<K, V> tail;
+        /** Суммарный вес записей очереди */
+        private long weight;
+
+        void addLast(CacheEntry<K, V> entry) {
+            entry.prev = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+            weight += entry.weight;
+        }
+
+        void remove(CacheEntry<K, V> entry) {
+            if (entry.prev == null) {
+                head = entry.next;
+            } else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.prev;
+            } else {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            weight -= entry.weight;
+        }
+
+        void moveToLast(CacheEntry<K, V> entry) {
+            if (entry != tail) {
+                remove(entry);
+                addLast(entry);
+            }
+        }
+
+        CacheEntry<K, V> peekFirst() {
+            return head;
+        }
+
+        CacheEntry<K, V> pollFirst() {
+            CacheEntry<K, V> first = head;
+            if (first != null) {
+                remove(first);
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Обращение к ключу, отложенное из-за занятой блокировки политики.
+     *
+     * @param <K> тип ключа
+     * @param <V> тип значения
+     */
+    private static class PendingAccess<K, V> {
+        /** Ключ, к которому обратились */
+        private final K key;
+        /** Найденная запись или null при промахе */
+        private final CacheEntry<K, V> entry;
+
+        PendingAccess(K key, CacheEntry<K, V> entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Очередь записей в порядке сохранения (первая - самая старая, то есть истекающая раньше всех).
+     *
+     * @param <K> тип ключа
+     * @param <V> тип значения
+     */
+    private static class WriteOrderQueue<K, V> {
+        /** Самая ранняя запись */
+        private CacheEntry<K, V> head;
+        /** Самая поздняя запись */
+        private CacheEntry<K, V> tail;
+
+        void addLast(CacheEntry<K, V> entry) {
+            entry.writePrev = tail;
+            entry.writeNext = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.writeNext = entry;
+            }
+            tail = entry;
+            entry.inWriteOrder = true;
+        }
+
+        void remove(CacheEntry<K, V> entry) {
+            if (!entry.inWriteOrder) {
+                return;
+            }
+            if (entry.writePrev == null) {
+                head = entry.writeNext;
+            } else {
+                entry.writePrev.writeNext = entry.writeNext;
+            }
+            if (entry.writeNext == null) {
+                tail = entry.writePrev;
+            } else {
+                entry.writeNext.writePrev = entry.writePrev;
+            }
+            entry.writePrev = null;
+            entry.writeNext = null;
+            entry.inWriteOrder = false;
+        }
+
+        CacheEntry<K, V> peekFirst() {
+            return head;
+        }
     }
 
+    /** Максимальное количество записей, удаляемых за одно удержание блокировки при очистке */
+    private static final int EXPIRY_BATCH_SIZE = 256;
+
+    /** Максимальное количество обращений, ожидающих блокировку политики */
+    private static final int ACCESS_BUFFER_SIZE = 1024;
+
+    /** Количество неучтенных изменений, после которого записывающий поток ждет блокировку политики */
+    private static final int WRITE_BUFFER_SIZE = 1024;
+
     /** Основное хранилище кэшированных данных с поддержкой TTL */
-    private final Map<K, CacheEntry<V>> cache = new HashMap<>();
+    private final Map<K, CacheEntry<K, V>> cache = new ConcurrentHashMap<>();
 
     /** Время жизни записей в кэше в миллисекундах */
     private final long ttlMillis;
 
-    /** Статистика использования кэша */
-    private final Map<String, Integer> stats = new HashMap<>();
+    /** Максимальный суммарный вес записей или 0 если кэш не ограничен */
+    private final long maximumWeight;
+
+    /** Функция вычисления веса значения */
+    private final ToIntFunction<? super V> weigher;
+
+    /** Максимальный вес LRU-окна */
+    private final long windowMaximum;
+
+    /** Максимальный вес основной области (испытательный и защищенный сегменты) */
+    private final long mainMaximum;
+
+    /** Максимальный вес защищенного сегмента */
+    private final long protectedMaximum;
+
+    /** Оценка частоты обращений к ключам для решения о допуске в основную область */
+    private final FrequencySketch sketch;
+
+    /** Блокировка, защищающая очереди, FrequencySketch и проход очистки */
+    private final ReentrantLock policyLock = new ReentrantLock();
+
+    /** Обращения, отложенные из-за занятой блокировки политики */
+    private final ConcurrentLinkedQueue<PendingAccess<K, V>> accessBuffer = new ConcurrentLinkedQueue<>();
+
+    /** Количество обращений в accessBuffer */
+    private final AtomicInteger bufferedAccesses = new AtomicInteger();
+
+    /** Записи, добавленные в хранилище или удаленные из него, но еще не учтенные политикой */
+    private final ConcurrentLinkedQueue<CacheEntry<K, V>> writeBuffer = new ConcurrentLinkedQueue<>();
+
+    /** Количество записей в writeBuffer */
+    private final AtomicInteger bufferedWrites = new AtomicInteger();
+
+    /** LRU-окно */
+    private final AccessOrderQueue<K, V> window = new AccessOrderQueue<>();
+
+    /** Испытательный сегмент */
+    private final AccessOrderQueue<K, V> probation = new AccessOrderQueue<>();
+
+    /** Защищенный сегмент */
+    private final AccessOrderQueue<K, V> protectedSegment = new AccessOrderQueue<>();
+
+    /** Очередь записей ограниченного кэша в порядке сохранения для удаления по TTL */
+    private final WriteOrderQueue<K, V> writeOrder = new WriteOrderQueue<>();
+
+    /** Очередь записей неограниченного кэша в порядке сохранения для удаления по TTL */
+    private final ConcurrentLinkedQueue<CacheEntry<K, V>> expiryQueue = new ConcurrentLinkedQueue<>();
+
+    /** Количество попаданий в кэш */
+    private final LongAdder hits = new LongAdder();
+
+    /** Количество промахов кэша */
+    private final LongAdder misses = new LongAdder();
+
+    /** Количество сохранений в кэш */
+    private final LongAdder puts = new LongAdder();
+
+    /** Количество явных удалений из кэша */
+    private final LongAdder removals = new LongAdder();
+
+    /** Количество записей, удаленных по истечении TTL */
+    private final LongAdder expired = new LongAdder();
+
+    /** Количество записей, вытесненных политикой (включая не допущенные в основную область) */
+    private final LongAdder evictions = new LongAdder();
+
+    /** Суммарный вес вытесненных записей */
+    private final LongAdder evictedWeight = new LongAdder();
+
+    /** Количество новых записей, не допущенных в основную область из-за низкой частоты или веса */
+    private final LongAdder admissionRejections = new LongAdder();
+
+    /** Количество обращений, не учтенных политикой из-за переполнения буфера обращений */
+    private final LongAdder droppedAccesses = new LongAdder();
+
+    /** Загрузки, выполняемые в данный момент, по ключам */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    /** Количество выполненных загрузок через loader */
+    private final LongAdder loadCount = new LongAdder();
+
+    /** Количество промахов, дождавшихся чужой загрузки вместо собственной */
+    private final LongAdder deduplicatedLoads = new LongAdder();
+
+    /** Количество загрузок, завершившихся исключением */
+    private final LongAdder loadFailures = new LongAdder();
+
+    /** Возраст записи, после которого она обновляется в фоне при чтении, 0 - не обновляется */
+    private final long refreshAfterMillis;
+
+    /** Количество запущенных фоновых обновлений */
+    private final LongAdder refreshes = new LongAdder();
+
+    /** Количество фоновых обновлений, завершившихся исключением или отклоненных пулом */
+    private final LongAdder refreshFailures = new LongAdder();
 
     /**
-     * Создает кэш с указанным временем жизни записей.
+     * Создает кэш с указанным временем жизни записей без ограничения размера.
      *
      * @param ttlMillis время жизни записей в миллисекундах
      * @throws IllegalArgumentException если ttlMillis меньше или равно 0
      */
     public InMemoryCacheService(long ttlMillis) {
+        this(ttlMillis, 0, value -> 1);
+    }
+
+    /**
+     * Создает кэш с временем жизни по умолчанию (30 минут).
+     */
+    public InMemoryCacheService() {
+        this(30 * 60 * 1000);
+    }
+
+    /**
+     * Создает кэш, ограниченный по количеству записей.
+     *
+     * @param ttlMillis время жизни записей в миллисекундах
+     * @param maximumSize максимальное количество записей
+     * @throws IllegalArgumentException если ttlMillis или maximumSize меньше или равно 0
+     */
+    public InMemoryCacheService(long ttlMillis, long maximumSize) {
+        this(ttlMillis, requirePositive(maximumSize), value -> 1);
+    }
+
+    /**
+     * Создает кэш, ограниченный по суммарному весу записей.
+     *
+     * @param ttlMillis время жизни записей в миллисекундах
+     * @param maximumWeight максимальный суммарный вес записей, 0 - без ограничения
+     * @param weigher функция вычисления веса значения (не меньше 1)
+     * @throws IllegalArgumentException если ttlMillis меньше или равно 0 или maximumWeight отрицателен
+     */
+    public InMemoryCacheService(long ttlMillis, long maximumWeight, ToIntFunction<? super V> weigher) {
+        this(ttlMillis, maximumWeight, weigher, 0);
+    }
+
+    /**
+     * Создает кэш, ограниченный по суммарному весу записей, с фоновым обновлением записей.
+     *
+     * @param ttlMillis время жизни записей в миллисекундах
+     * @param maximumWeight максимальный суммарный вес записей, 0 - без ограничения
+     * @param weigher функция вычисления веса значения (не меньше 1)
+     * @param refreshAfterMillis возраст записи, после которого она обновляется в фоне, 0 - без обновления
+     * @throws IllegalArgumentException если ttlMillis меньше или равно 0, maximumWeight отрицателен
+     *                                  или refreshAfterMillis отрицателен либо не меньше ttlMillis
+     */
+    public InMemoryCacheService(long ttlMillis, long maximumWeight, ToIntFunction<? super V> weigher,
+                                long refreshAfterMillis) {
         if (ttlMillis <= 0) {
             throw new IllegalArgumentException("TTL must be positive");
         }
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight cannot be negative");
+        }
+        if (refreshAfterMillis < 0 || refreshAfterMillis >= ttlMillis) {
+            throw new IllegalArgumentException("Refresh interval must be less than TTL");
+        }
         this.ttlMillis = ttlMillis;
-        initializeStats();
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.mainMaximum = Math.max(0, maximumWeight - windowMaximum);
+        this.protectedMaximum = mainMaximum * 4 / 5;
+        this.sketch = maximumWeight > 0 ? new FrequencySketch(maximumWeight) : null;
+
+        CacheExpiryScheduler.register(this, Math.min(1000, Math.max(10, ttlMillis / 10)));
     }
 
     /**
-     * Создает кэш с временем жизни по умолчанию (30 минут).
+     * Проверяет, что ограничение размера положительно.
+     *
+     * @param maximumSize максимальное количество записей
+     * @return то же значение
+     * @throws IllegalArgumentException если значение меньше или равно 0
      */
-    public InMemoryCacheService() {
-        this(30 * 60 * 1000);
+    private static long requirePositive(long maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        return maximumSize;
+    }
+
+    /**
+     * Проверяет, ограничен ли кэш по размеру.
+     *
+     * @return true если действует политика вытеснения
+     */
+    private boolean isBounded() {
+        return maximumWeight > 0;
     }
 
     /**
-     * Инициализирует счетчики статистики.
+     * Сбрасывает счетчики статистики.
      */
-    private void initializeStats() {
-        stats.put("hits", 0);
-        stats.put("misses", 0);
-        stats.put("puts", 0);
-        stats.put("removals", 0);
-        stats.put("expired", 0);
+    private void resetStats() {
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removals.reset();
+        expired.reset();
+        evictions.reset();
+        evictedWeight.reset();
+        admissionRejections.reset();
+        droppedAccesses.reset();
+        loadCount.reset();
+        deduplicatedLoads.reset();
+        loadFailures.reset();
+        refreshes.reset();
+        refreshFailures.reset();
     }
 
     @Override
@@ -195,8 +610,239 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null");
         }
-        cache.put(key, new CacheEntry<>(value));
-        stats.put("puts", stats.get("puts") + 1);
+        puts.increment();
+
+        CacheEntry<K, V> entry = newEntry(key, value);
+        // Явная запись новее результата загрузки, начатой до нее
+        loads.remove(key);
+        afterWrite(cache.put(key, entry), entry);
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+
+        Optional<V> cached = get(key);
+        if (cached.isPresent()) {
+            refreshIfStale(key, loader);
+            return cached.get();
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            deduplicatedLoads.increment();
+            return await(inFlight);
+        }
+
+        try {
+            V value = loadAndPut(key, load, loader);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Выполняет загрузку значения и сохраняет его в кэш, если загрузка не была отменена
+     * удалением ключа или очисткой кэша.
+     *
+     * @param key ключ
+     * @param load текущая загрузка
+     * @param loader функция загрузки
+     * @return загруженное значение или null если значение не найдено
+     */
+    private V loadAndPut(K key, CompletableFuture<V> load, Function<? super K, ? extends V> loader) {
+        // Значение могло появиться между промахом и регистрацией загрузки
+        CacheEntry<K, V> existing = cache.get(key);
+        if (existing != null && !existing.isExpired(ttlMillis)) {
+            return existing.value;
+        }
+
+        loadCount.increment();
+        V value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+
+        if (replaceIf(key, newEntry(key, value), current -> loads.get(key) == load)) {
+            puts.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Ставит фоновое обновление записи, если она старше порога обновления
+     * и по ключу еще не выполняется загрузка.
+     *
+     * @param key ключ
+     * @param loader функция загрузки
+     */
+    private void refreshIfStale(K key, Function<? super K, ? extends V> loader) {
+        CacheEntry<K, V> entry = cache.get(key);
+        if (entry == null || !entry.needsRefresh(refreshAfterMillis) || loads.containsKey(key)) {
+            return;
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        if (loads.putIfAbsent(key, load) != null) {
+            return;
+        }
+
+        refreshes.increment();
+        try {
+            CacheRefreshExecutor.execute(() -> refresh(key, load, loader));
+        } catch (RejectedExecutionException e) {
+            refreshFailures.increment();
+            loads.remove(key, load);
+            load.complete(entry.value);
+        }
+    }
+
+    /**
+     * Перезагружает запись в фоновом потоке. Новое значение заменяет запись,
+     * если ключ не был удален или кэш не был очищен во время загрузки.
+     * Значение, совпадающее по ссылке с текущим, оставляет запись без изменений.
+     *
+     * @param key ключ
+     * @param load текущая загрузка
+     * @param loader функция загрузки
+     */
+    private void refresh(K key, CompletableFuture<V> load, Function<? super K, ? extends V> loader) {
+        try {
+            loadCount.increment();
+            V value = loader.apply(key);
+            CacheEntry<K, V> entry = value != null ? newEntry(key, value) : null;
+
+            boolean replaced = replaceIf(key, entry,
+                    current -> loads.get(key) == load && (current == null || current.value != value));
+            if (replaced && entry != null) {
+                puts.increment();
+            } else if (replaced) {
+                removals.increment();
+            }
+            load.complete(value);
+        } catch (RuntimeException | Error e) {
+            refreshFailures.increment();
+            load.completeExceptionally(e);
+            System.err.println("Ошибка фонового обновления кэша (ключ " + key + "): " + e.getMessage());
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Ожидает результат загрузки, выполняемой другим потоком.
+     *
+     * @param load загрузка
+     * @return загруженное значение или null
+     */
+    private V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Создает запись кэша, вычисляя ее вес.
+     *
+     * @param key ключ
+     * @param value значение
+     * @return новая запись
+     */
+    private CacheEntry<K, V> newEntry(K key, V value) {
+        int weight = isBounded() ? Math.max(1, weigher.applyAsInt(value)) : 1;
+        return new CacheEntry<>(key, value, weight);
+    }
+
+    /**
+     * Атомарно для ключа заменяет текущую запись, если она удовлетворяет условию.
+     * Условие проверяется под блокировкой ключа в хранилище, поэтому загрузка, отмененная
+     * записью или удалением ключа до замены, не перезапишет их результат.
+     *
+     * @param key ключ
+     * @param entry новая запись или null для удаления текущей
+     * @param condition условие по текущей записи (null если записи нет)
+     * @return true если хранилище изменено
+     */
+    private boolean replaceIf(K key, CacheEntry<K, V> entry, Predicate<CacheEntry<K, V>> condition) {
+        AtomicReference<CacheEntry<K, V>> previous = new AtomicReference<>();
+        CacheEntry<K, V> result = cache.compute(key, (k, current) -> {
+            if (!condition.test(current)) {
+                return current;
+            }
+            previous.set(current);
+            return entry;
+        });
+
+        boolean changed = entry != null ? result == entry : previous.get() != null;
+        if (changed) {
+            afterWrite(previous.get(), entry);
+        }
+        return changed;
+    }
+
+    /**
+     * Учитывает изменение хранилища в очередях истечения и политики вытеснения.
+     * Неограниченный кэш только добавляет новую запись в очередь истечения.
+     * Ограниченный кэш откладывает изменение в буфер записи и разбирает буфер,
+     * если блокировка политики свободна; иначе изменение учтет поток, получивший блокировку
+     * следующим, или ближайший проход очистки. Ждать блокировку приходится,
+     * только если буфер переполнен.
+     *
+     * @param previous запись, замененная или удаленная из хранилища, или null
+     * @param entry запись, добавленная в хранилище, или null
+     */
+    private void afterWrite(CacheEntry<K, V> previous, CacheEntry<K, V> entry) {
+        if (!isBounded()) {
+            if (entry != null) {
+                expiryQueue.offer(entry);
+            }
+            return;
+        }
+
+        if (previous != null) {
+            bufferWrite(previous);
+        }
+        if (entry != null) {
+            bufferWrite(entry);
+        }
+
+        if (bufferedWrites.get() > WRITE_BUFFER_SIZE) {
+            policyLock.lock();
+        } else if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            drainBuffers();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Откладывает учет изменения записи до получения блокировки политики.
+     *
+     * @param entry добавленная или удаленная запись
+     */
+    private void bufferWrite(CacheEntry<K, V> entry) {
+        bufferedWrites.incrementAndGet();
+        writeBuffer.offer(entry);
     }
 
     @Override
@@ -205,35 +851,89 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
             return Optional.empty();
         }
 
-        CacheEntry<V> entry = cache.get(key);
+        CacheEntry<K, V> entry = cache.get(key);
         if (entry == null) {
-            stats.put("misses", stats.get("misses") + 1);
+            misses.increment();
+            recordAccess(key, null);
             return Optional.empty();
         }
 
         if (entry.isExpired(ttlMillis)) {
-            cache.remove(key);
-            stats.put("misses", stats.get("misses") + 1);
-            stats.put("expired", stats.get("expired") + 1);
+            expire(key, entry);
+            misses.increment();
             return Optional.empty();
         }
 
-        stats.put("hits", stats.get("hits") + 1);
+        hits.increment();
+        recordAccess(key, entry);
         return Optional.of(entry.value);
     }
 
     @Override
     public void remove(K key) {
-        if (key != null) {
-            cache.remove(key);
-            stats.put("removals", stats.get("removals") + 1);
+        if (key == null) {
+            return;
+        }
+        removals.increment();
+
+        loads.remove(key);
+        CacheEntry<K, V> entry = cache.remove(key);
+        if (entry != null) {
+            afterWrite(entry, null);
         }
     }
 
     @Override
     public void clear() {
+        loads.clear();
         cache.clear();
-        initializeStats();
+        policyLock.lock();
+        try {
+            purgeRemovedEntries();
+        } finally {
+            policyLock.unlock();
+        }
+        resetStats();
+    }
+
+    @Override
+    public void computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        if (key == null) {
+            return;
+        }
+
+        loads.remove(key);
+        AtomicReference<CacheEntry<K, V>> previous = new AtomicReference<>();
+        CacheEntry<K, V> result = cache.computeIfPresent(key, (k, entry) -> {
+            previous.set(entry);
+            if (entry.isExpired(ttlMillis)) {
+                expired.increment();
+                return null;
+            }
+
+            V value = remapping.apply(k, entry.value);
+            if (value == null) {
+                removals.increment();
+                return null;
+            }
+            puts.increment();
+            return newEntry(k, value);
+        });
+
+        if (previous.get() != null) {
+            afterWrite(previous.get(), result);
+        }
+    }
+
+    @Override
+    public void removeIf(BiPredicate<? super K, ? super V> predicate) {
+        loads.clear();
+        cache.forEach((key, entry) -> {
+            if (!entry.isExpired(ttlMillis) && predicate.test(key, entry.value) && cache.remove(key, entry)) {
+                removals.increment();
+                afterWrite(entry, null);
+            }
+        });
     }
 
     @Override
@@ -242,67 +942,378 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
             return false;
         }
 
-        CacheEntry<V> entry = cache.get(key);
+        CacheEntry<K, V> entry = cache.get(key);
         if (entry == null) {
             return false;
         }
 
         if (entry.isExpired(ttlMillis)) {
-            cache.remove(key);
-            stats.put("expired", stats.get("expired") + 1);
+            expire(key, entry);
             return false;
         }
 
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     * Возвращает снимок без обхода записей: устаревшие записи, которые фоновый поток
+     * еще не удалил, учитываются до ближайшего прохода очистки.
+     */
     @Override
     public int size() {
-        // Очищаем устаревшие записи перед подсчетом размера
-        cleanExpiredEntries();
         return cache.size();
     }
 
     @Override
     public Map<String, Object> getStats() {
-        cleanExpiredEntries(); // Очищаем устаревшие перед сбором статистики
-
-        int hits = stats.get("hits");
-        int misses = stats.get("misses");
-        int total = hits + misses;
-        double hitRate = total > 0 ? (double) hits / total * 100 : 0;
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        double hitRate = total > 0 ? (double) hitCount / total * 100 : 0;
 
         Map<String, Object> result = new HashMap<>();
-        result.put("hits", hits);
-        result.put("misses", misses);
-        result.put("puts", stats.get("puts"));
-        result.put("removals", stats.get("removals"));
-        result.put("expired", stats.get("expired"));
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        result.put("puts", puts.sum());
+        result.put("removals", removals.sum());
+        result.put("expired", expired.sum());
+        result.put("evictions", evictions.sum());
+        result.put("evictedWeight", evictedWeight.sum());
+        result.put("admissionRejections", admissionRejections.sum());
+        result.put("droppedAccesses", droppedAccesses.sum());
+        result.put("loads", loadCount.sum());
+        result.put("deduplicatedLoads", deduplicatedLoads.sum());
+        result.put("loadFailures", loadFailures.sum());
+        result.put("refreshes", refreshes.sum());
+        result.put("refreshFailures", refreshFailures.sum());
+        result.put("refreshAfterMillis", refreshAfterMillis);
         result.put("hitRate", hitRate);
         result.put("totalRequests", total);
         result.put("currentSize", cache.size());
+        result.put("maximumWeight", maximumWeight);
+        result.put("weightedSize", getWeightedSize());
         result.put("ttlMillis", ttlMillis);
         return result;
     }
 
     /**
      * Очищает все устаревшие записи из кэша.
-     * Вызывается автоматически при операциях, но может быть вызван вручную.
+     * Снимает записи с головы очереди порядка записи, пока они устаревшие, порциями
+     * по EXPIRY_BATCH_SIZE, отпуская блокировку между порциями. Попутно учитывает
+     * изменения, отложенные в буфере записи.
+     * Вызывается фоновым потоком CacheExpiryScheduler, но может быть вызван вручную.
      */
     public void cleanExpiredEntries() {
-        int expiredCount = 0;
-        var iterator = cache.entrySet().iterator();
-
-        while (iterator.hasNext()) {
-            var entry = iterator.next();
-            if (entry.getValue().isExpired(ttlMillis)) {
-                iterator.remove();
-                expiredCount++;
+        if (!isBounded()) {
+            cleanExpiryQueue();
+            return;
+        }
+
+        boolean more = true;
+        while (more) {
+            policyLock.lock();
+            try {
+                drainBuffers();
+                int removed = 0;
+                CacheEntry<K, V> entry = writeOrder.peekFirst();
+                while (entry != null && entry.isExpired(ttlMillis) && removed < EXPIRY_BATCH_SIZE) {
+                    if (cache.remove(entry.key, entry)) {
+                        expired.increment();
+                    }
+                    unlink(entry);
+                    removed++;
+                    entry = writeOrder.peekFirst();
+                }
+                more = entry != null && entry.isExpired(ttlMillis);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Снимает устаревшие записи с головы очереди истечения неограниченного кэша.
+     * Записи, уже замененные или удаленные из хранилища, просто исключаются из очереди.
+     * Блокировка разделяет только проходы очистки: записывающие потоки ее не берут.
+     */
+    private void cleanExpiryQueue() {
+        policyLock.lock();
+        try {
+            CacheEntry<K, V> entry;
+            while ((entry = expiryQueue.peek()) != null && entry.isExpired(ttlMillis)) {
+                expiryQueue.poll();
+                if (cache.remove(entry.key, entry)) {
+                    expired.increment();
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Исключает из очередей записи, удаленные из хранилища без учета в буфере записи
+     * (после clear). Записи, добавленные другими потоками после очистки, остаются.
+     * Вызывается под policyLock.
+     */
+    private void purgeRemovedEntries() {
+        if (!isBounded()) {
+            expiryQueue.removeIf(entry -> cache.get(entry.key) != entry);
+            return;
+        }
+        drainBuffers();
+        for (CacheEntry<K, V> entry = writeOrder.peekFirst(); entry != null; ) {
+            CacheEntry<K, V> next = entry.writeNext;
+            if (cache.get(entry.key) != entry) {
+                unlink(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Удаляет устаревшую запись, только если она не была заменена другим потоком.
+     *
+     * @param key ключ записи
+     * @param entry устаревшая запись
+     */
+    private void expire(K key, CacheEntry<K, V> entry) {
+        if (cache.remove(key, entry)) {
+            expired.increment();
+            afterWrite(entry, null);
+        }
+    }
+
+    /**
+     * Учитывает обращение к ключу в политике вытеснения.
+     * Если блокировка занята другим потоком, обращение откладывается в буфер и учитывается
+     * следующим потоком, получившим блокировку. Обращение теряется, только если буфер заполнен.
+     *
+     * @param key ключ
+     * @param entry найденная запись или null при промахе
+     */
+    private void recordAccess(K key, CacheEntry<K, V> entry) {
+        if (!isBounded()) {
+            return;
+        }
+        if (!policyLock.tryLock()) {
+            bufferAccess(key, entry);
+            return;
+        }
+        try {
+            drainBuffers();
+            applyAccess(key, entry);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Откладывает обращение до получения блокировки политики.
+     *
+     * @param key ключ
+     * @param entry найденная запись или null при промахе
+     */
+    private void bufferAccess(K key, CacheEntry<K, V> entry) {
+        if (bufferedAccesses.incrementAndGet() > ACCESS_BUFFER_SIZE) {
+            bufferedAccesses.decrementAndGet();
+            droppedAccesses.increment();
+            return;
+        }
+        accessBuffer.offer(new PendingAccess<>(key, entry));
+    }
+
+    /**
+     * Учитывает отложенные изменения и обращения и вытесняет записи сверх ограничения.
+     * Вызывается под policyLock.
+     */
+    private void drainBuffers() {
+        drainWriteBuffer();
+        drainAccessBuffer();
+        evictEntries();
+    }
+
+    /**
+     * Учитывает отложенные изменения записей. Вызывается под policyLock.
+     */
+    private void drainWriteBuffer() {
+        CacheEntry<K, V> entry;
+        while ((entry = writeBuffer.poll()) != null) {
+            bufferedWrites.decrementAndGet();
+            applyWrite(entry);
+        }
+    }
+
+    /**
+     * Приводит положение записи в очередях в соответствие с хранилищем: запись из хранилища
+     * добавляется в окно и очередь порядка записи, удаленная из хранилища исключается из очередей.
+     * Запись попадает в хранилище не более одного раза, поэтому порядок разбора изменений
+     * одной записи не важен. Вызывается под policyLock.
+     *
+     * @param entry добавленная или удаленная запись
+     */
+    private void applyWrite(CacheEntry<K, V> entry) {
+        boolean present = cache.get(entry.key) == entry;
+        if (present && !entry.inWriteOrder) {
+            writeOrder.addLast(entry);
+            sketch.increment(entry.key);
+            entry.segment = Segment.WINDOW;
+            window.addLast(entry);
+        } else if (!present && entry.inWriteOrder) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Учитывает отложенные обращения. Вызывается под policyLock.
+     */
+    private void drainAccessBuffer() {
+        PendingAccess<K, V> access;
+        while ((access = accessBuffer.poll()) != null) {
+            bufferedAccesses.decrementAndGet();
+            applyAccess(access.key, access.entry);
+        }
+    }
+
+    /**
+     * Увеличивает частоту ключа и обновляет положение записи, если она все еще в кэше.
+     * Вызывается под policyLock.
+     *
+     * @param key ключ
+     * @param entry найденная запись или null при промахе
+     */
+    private void applyAccess(K key, CacheEntry<K, V> entry) {
+        sketch.increment(key);
+        if (entry != null && entry.segment != null && cache.get(key) == entry) {
+            onAccess(entry);
+        }
+    }
+
+    /**
+     * Перемещает запись в очередях политики после обращения к ней.
+     * Повторное обращение к записи испытательного сегмента переводит ее в защищенный,
+     * а самые старые записи защищенного сегмента при переполнении возвращаются в испытательный.
+     *
+     * @param entry запись, к которой обратились
+     */
+    private void onAccess(CacheEntry<K, V> entry) {
+        switch (entry.segment) {
+            case WINDOW -> window.moveToLast(entry);
+            case PROTECTED -> protectedSegment.moveToLast(entry);
+            case PROBATION -> {
+                probation.remove(entry);
+                entry.segment = Segment.PROTECTED;
+                protectedSegment.addLast(entry);
+                while (protectedSegment.weight > protectedMaximum) {
+                    CacheEntry<K, V> demoted = protectedSegment.pollFirst();
+                    demoted.segment = Segment.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Переносит записи из переполненного окна в основную область с проверкой допуска.
+     */
+    private void evictEntries() {
+        while (window.weight > windowMaximum) {
+            admit(window.pollFirst());
+        }
+    }
+
+    /**
+     * Решает, допустить ли вышедшую из окна запись в основную область (TinyLFU).
+     * Запись тяжелее всей основной области отклоняется сразу. Иначе, пока места не хватает,
+     * кандидат сравнивается по частоте с самой старой записью основной области:
+     * более редкая из двух вытесняется.
+     *
+     * @param candidate запись, вышедшая из окна
+     */
+    private void admit(CacheEntry<K, V> candidate) {
+        if (candidate.weight > mainMaximum) {
+            // Иначе ради одной записи была бы вытеснена вся основная область
+            reject(candidate);
+            return;
+        }
+
+        int candidateFrequency = sketch.frequency(candidate.key);
+
+        while (probation.weight + protectedSegment.weight + candidate.weight > mainMaximum) {
+            CacheEntry<K, V> victim = probation.peekFirst() != null
+                    ? probation.peekFirst()
+                    : protectedSegment.peekFirst();
+
+            if (victim == null || candidateFrequency <= sketch.frequency(victim.key)) {
+                reject(candidate);
+                return;
             }
+
+            evict(victim);
         }
 
-        if (expiredCount > 0) {
-            stats.put("expired", stats.get("expired") + expiredCount);
+        candidate.segment = Segment.PROBATION;
+        probation.addLast(candidate);
+    }
+
+    /**
+     * Вытесняет запись, не допущенную в основную область.
+     *
+     * @param candidate отклоненная запись
+     */
+    private void reject(CacheEntry<K, V> candidate) {
+        candidate.segment = null;
+        evict(candidate);
+        admissionRejections.increment();
+    }
+
+    /**
+     * Удаляет вытесненную запись из хранилища и очередей и учитывает ее в статистике.
+     *
+     * @param entry вытесненная запись
+     */
+    private void evict(CacheEntry<K, V> entry) {
+        unlink(entry);
+        if (cache.remove(entry.key, entry)) {
+            evictions.increment();
+            evictedWeight.add(entry.weight);
+        }
+    }
+
+    /**
+     * Исключает запись из очереди ее сегмента и из очереди порядка записи.
+     *
+     * @param entry запись кэша
+     */
+    private void unlink(CacheEntry<K, V> entry) {
+        writeOrder.remove(entry);
+        if (entry.segment == null) {
+            return;
+        }
+        switch (entry.segment) {
+            case WINDOW -> window.remove(entry);
+            case PROBATION -> probation.remove(entry);
+            case PROTECTED -> protectedSegment.remove(entry);
+        }
+        entry.segment = null;
+    }
+
+    /**
+     * Возвращает суммарный вес записей кэша.
+     *
+     * @return вес записей (для неограниченного кэша - количество записей)
+     */
+    private long getWeightedSize() {
+        if (!isBounded()) {
+            return cache.size();
+        }
+        policyLock.lock();
+        try {
+            drainBuffers();
+            return window.weight + probation.weight + protectedSegment.weight;
+        } finally {
+            policyLock.unlock();
         }
     }
 
@@ -314,4 +1325,4 @@ public class InMemoryCacheService<K, V> implements CacheService<K, V> {
     public long getTtlMillis() {
         return ttlMillis;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package org.idvairaz.cache.impl;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Запись вторичного индекса кэша товаров: идентификаторы товаров в порядке выдачи
+ * и версия записи. Запись неизменяема: любое изменение списка создает новую запись
+ * с новой версией, поэтому по версии можно проверять актуальность производных данных.
+ * Запись результатов поиска хранит также релевантность товаров.
+ *
+ * @author idvavraz
+ * @version 1.1
+ */
+@Value
+@AllArgsConstructor
+public class IndexEntry {
+
+    /** Идентификаторы товаров в порядке выдачи */
+    long[] ids;
+
+    /** Версия записи, уникальная среди всех записей индексов */
+    long version;
+
+    /** Релевантность товаров в порядке ids или null для списков категорий и брендов */
+    float[] ranks;
+
+    /**
+     * Создает запись индекса без релевантности.
+     *
+     * @param ids идентификаторы товаров в порядке выдачи
+     * @param version версия записи
+     */
+    public IndexEntry(long[] ids, long version) {
+        this(ids, version, null);
+    }
+
+    /**
+     * Возвращает вес записи для ограничения размера кэша в идентификаторах:
+     * значение релевантности занимает половину идентификатора.
+     *
+     * @return вес записи
+     */
+    public int getWeight() {
+        return ids.length + (ranks != null ? (ranks.length + 1) / 2 : 0);
+    }
+}
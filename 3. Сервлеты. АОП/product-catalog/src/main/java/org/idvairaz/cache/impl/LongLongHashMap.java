@@ -0,0 +1,210 @@
+package org.idvairaz.cache.impl;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Хеш-таблица с ключами и значениями типа long без упаковки в объекты.
+ * Открытая адресация с линейным пробированием, удаление со сдвигом
+ * последующих элементов цепочки (без "надгробий").
+ *
+ * <p>Класс не потокобезопасен, вызывающий код обязан синхронизировать обращения.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class LongLongHashMap {
+
+    /** Максимальная доля занятых ячеек перед увеличением таблицы */
+    private static final double LOAD_FACTOR = 0.7;
+
+    /** Значение, возвращаемое для отсутствующего ключа */
+    private final long missingValue;
+
+    /** Ключи */
+    private long[] keys;
+
+    /** Значения */
+    private long[] values;
+
+    /** Признаки занятых ячеек */
+    private boolean[] used;
+
+    /** Количество элементов */
+    private int size;
+
+    /** Количество элементов, при котором таблица увеличивается */
+    private int resizeThreshold;
+
+    /**
+     * Создает пустую таблицу.
+     *
+     * @param expectedSize ожидаемое количество элементов
+     * @param missingValue значение, возвращаемое для отсутствующего ключа
+     */
+    LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    /**
+     * Возвращает значение по ключу.
+     *
+     * @param key ключ
+     * @return значение или missingValue если ключа нет
+     */
+    long get(long key) {
+        int mask = keys.length - 1;
+        for (int i = indexOf(key, mask); used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return missingValue;
+    }
+
+    /**
+     * Сохраняет значение по ключу.
+     *
+     * @param key ключ
+     * @param value значение
+     * @return прежнее значение или missingValue если ключа не было
+     */
+    long put(long key, long value) {
+        int mask = keys.length - 1;
+        int i = indexOf(key, mask);
+        while (used[i]) {
+            if (keys[i] == key) {
+                long previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+        return missingValue;
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @param key ключ
+     * @return удаленное значение или missingValue если ключа не было
+     */
+    long remove(long key) {
+        int mask = keys.length - 1;
+        int i = indexOf(key, mask);
+        while (used[i]) {
+            if (keys[i] == key) {
+                long previous = values[i];
+                shiftBack(i, mask);
+                size--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Возвращает количество элементов.
+     *
+     * @return количество элементов
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Удаляет все элементы, сохраняя размер таблицы.
+     */
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Передает все ключи обработчику. Обработчик не должен изменять таблицу.
+     *
+     * @param action обработчик ключа
+     */
+    void forEachKey(LongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Закрывает образовавшуюся после удаления дыру, сдвигая назад элементы цепочки,
+     * которые иначе стали бы недостижимы.
+     *
+     * @param hole индекс освободившейся ячейки
+     * @param mask маска индекса
+     */
+    private void shiftBack(int hole, int mask) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i]) {
+                break;
+            }
+            int home = indexOf(keys[i], mask);
+            boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!reachable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        used[hole] = false;
+    }
+
+    /**
+     * Увеличивает таблицу вдвое.
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Выделяет массивы таблицы указанной емкости.
+     *
+     * @param capacity емкость (степень двойки)
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Вычисляет начальную ячейку ключа.
+     *
+     * @param key ключ
+     * @param mask маска индекса
+     * @return индекс ячейки
+     */
+    static int indexOf(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,746 @@
+package org.idvairaz.cache.impl;
+
+import org.idvairaz.cache.CacheService;
+import org.idvairaz.model.Product;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Кэш товаров вне кучи Java: товары хранятся в двоичном виде в прямых (direct) ByteBuffer
+ * фиксированного размера (слабах), поэтому сотни тысяч записей не нагружают сборщик мусора.
+ * Используется как второй уровень под InMemoryCacheService (см. TieredCacheService).
+ *
+ * <p>Формат записи: int длина записи, long id, long время записи, byte флаги null-полей,
+ * цена как long unscaled value и int scale, int остаток, время создания и обновления
+ * в эпохальных миллисекундах (UTC), затем название, описание, категория и бренд
+ * как int длина и байты UTF-8 (длина -1 - null).</p>
+ *
+ * <p>Записи дописываются в текущий слаб. Индекс id - положение записи (номер слаба и смещение)
+ * хранится в LongLongHashMap без упаковки. Замененные и удаленные записи остаются в слабах
+ * как мусор; когда слабы заканчиваются, выбирается слаб с наименьшим объемом живых записей.
+ * Если живых записей в нем не больше трех четвертей, они переносятся в резервный слаб
+ * (уплотнение), а освобожденный слаб становится новым резервом. Иначе кэш действительно
+ * заполнен, и записи этого слаба вытесняются.</p>
+ *
+ * <p>Чтения выполняются под блокировкой чтения и не мешают друг другу.
+ * Объединение одновременных загрузок выполняет кэш первого уровня; явные изменения ключа
+ * во время загрузки отменяют сохранение ее результата, как и в InMemoryCacheService.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class OffHeapProductCache implements CacheService<Long, Product> {
+
+    /** Признак отсутствия записи в индексе */
+    private static final long NO_LOCATION = -1L;
+
+    /** Размер заголовка записи до строковых полей, байт */
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 1 + 8 + 4 + 4 + 8 + 8;
+
+    /** Флаг: цена равна null */
+    private static final byte PRICE_NULL = 1;
+
+    /** Флаг: время создания равно null */
+    private static final byte CREATED_NULL = 2;
+
+    /** Флаг: время обновления равно null */
+    private static final byte UPDATED_NULL = 4;
+
+    /** Время жизни записей в миллисекундах */
+    private final long ttlMillis;
+
+    /** Размер одного слаба, байт */
+    private final int slabBytes;
+
+    /** Слабы; выделяются по мере необходимости */
+    private final ByteBuffer[] slabs;
+
+    /** Объем живых записей в каждом слабе, байт */
+    private final int[] slabLive;
+
+    /** Объем записанных в каждый слаб данных (живых и мусора), байт */
+    private final int[] slabUsed;
+
+    /** Свободные выделенные слабы */
+    private final Deque<Integer> freeSlabs = new ArrayDeque<>();
+
+    /** Индекс id товара - положение записи (номер слаба в старших 32 битах, смещение в младших) */
+    private final LongLongHashMap index = new LongLongHashMap(1024, NO_LOCATION);
+
+    /** Блокировка: чтения под блокировкой чтения, изменения под блокировкой записи */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Маркеры выполняющихся загрузок по ключам; изменяется под блокировкой записи */
+    private final Map<Long, Object> loads = new HashMap<>();
+
+    /** Количество выделенных слабов */
+    private int allocatedSlabs;
+
+    /** Слаб, в который дописываются записи, -1 если еще не выбран */
+    private int currentSlab = -1;
+
+    /** Резервный пустой слаб для уплотнения, -1 если еще не выделен */
+    private int reserveSlab = -1;
+
+    /** Количество попаданий в кэш */
+    private final LongAdder hits = new LongAdder();
+
+    /** Количество промахов кэша */
+    private final LongAdder misses = new LongAdder();
+
+    /** Количество сохранений в кэш */
+    private final LongAdder puts = new LongAdder();
+
+    /** Количество явных удалений из кэша */
+    private final LongAdder removals = new LongAdder();
+
+    /** Количество записей, удаленных по истечении TTL */
+    private final LongAdder expired = new LongAdder();
+
+    /** Количество записей, вытесненных при заполнении кэша */
+    private final LongAdder evictions = new LongAdder();
+
+    /** Количество уплотнений слабов */
+    private final LongAdder compactions = new LongAdder();
+
+    /** Количество товаров, не сохраненных из-за размера записи или цены вне диапазона long */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Создает кэш вне кучи.
+     *
+     * @param ttlMillis время жизни записей в миллисекундах
+     * @param maximumBytes максимальный объем памяти под слабы, байт
+     * @param slabBytes размер одного слаба, байт
+     * @throws IllegalArgumentException если ttlMillis или slabBytes не положительны
+     *                                  или в maximumBytes не помещаются два слаба
+     */
+    public OffHeapProductCache(long ttlMillis, long maximumBytes, int slabBytes) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        if (slabBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Slab size is too small");
+        }
+        if (maximumBytes / slabBytes < 2) {
+            throw new IllegalArgumentException("Maximum bytes must hold at least two slabs");
+        }
+        this.ttlMillis = ttlMillis;
+        this.slabBytes = slabBytes;
+        int maxSlabs = (int) Math.min(Integer.MAX_VALUE, maximumBytes / slabBytes);
+        this.slabs = new ByteBuffer[maxSlabs];
+        this.slabLive = new int[maxSlabs];
+        this.slabUsed = new int[maxSlabs];
+    }
+
+    @Override
+    public void put(Long key, Product value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        store(key, value, null);
+    }
+
+    /**
+     * Записывает товар, заменяя прежнюю запись. Товар, который не удалось закодировать
+     * или который не помещается в слаб, не сохраняется, а прежняя запись удаляется.
+     *
+     * @param key ключ
+     * @param value товар
+     * @param load маркер загрузки, результат которой записывается, или null для явной записи;
+     *             если загрузка отменена, запись не выполняется
+     */
+    private void store(long key, Product value, Object load) {
+        byte[] record = encode(key, value, System.currentTimeMillis());
+        boolean fits = record != null && record.length <= slabBytes;
+
+        lock.writeLock().lock();
+        try {
+            if (load == null) {
+                // Явная запись новее результата загрузки, начатой до нее
+                loads.remove(key);
+            } else if (!loads.remove(key, load)) {
+                return;
+            }
+            // Старая запись удаляется из индекса до выделения места, чтобы уплотнение не перенесло ее
+            long previous = index.remove(key);
+            if (previous != NO_LOCATION) {
+                markDead(previous);
+            }
+            if (!fits) {
+                rejected.increment();
+                return;
+            }
+            puts.increment();
+            long location = allocate(record.length);
+            int slab = slabOf(location);
+            slabs[slab].put(offsetOf(location), record);
+            slabLive[slab] += record.length;
+            index.put(key, location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Product> get(Long key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+
+        long location;
+        Product product = null;
+        boolean isExpired = false;
+        lock.readLock().lock();
+        try {
+            location = index.get(key);
+            if (location != NO_LOCATION) {
+                ByteBuffer slab = slabs[slabOf(location)];
+                int offset = offsetOf(location);
+                isExpired = isExpired(slab, offset);
+                if (!isExpired) {
+                    product = decode(slab, offset);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (isExpired) {
+            expire(key, location);
+        }
+        if (product == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(product);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Одновременные промахи не объединяются: это делает кэш первого уровня.
+     * Загрузка регистрируется до проверки кэша, поэтому put, remove, computeIfPresent,
+     * removeIf или clear во время нее отменяют сохранение загруженного значения.
+     */
+    @Override
+    public Product get(Long key, Function<? super Long, ? extends Product> loader) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+
+        Object load = new Object();
+        lock.writeLock().lock();
+        try {
+            loads.put(key, load);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Optional<Product> cached = get(key);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+            Product value = loader.apply(key);
+            if (value != null) {
+                store(key, value, load);
+            }
+            return value;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                loads.remove(key, load);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(Long key) {
+        if (key == null) {
+            return;
+        }
+        removals.increment();
+
+        lock.writeLock().lock();
+        try {
+            loads.remove(key);
+            long location = index.remove(key);
+            if (location != NO_LOCATION) {
+                markDead(location);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void computeIfPresent(Long key, BiFunction<? super Long, ? super Product, ? extends Product> remapping) {
+        if (key == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            loads.remove(key);
+            Optional<Product> current = get(key);
+            if (current.isEmpty()) {
+                return;
+            }
+            Product value = remapping.apply(key, current.get());
+            if (value == null) {
+                remove(key);
+            } else {
+                put(key, value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeIf(BiPredicate<? super Long, ? super Product> predicate) {
+        lock.writeLock().lock();
+        try {
+            loads.clear();
+            List<Long> matched = new ArrayList<>();
+            index.forEachKey(key -> {
+                long location = index.get(key);
+                ByteBuffer slab = slabs[slabOf(location)];
+                int offset = offsetOf(location);
+                if (!isExpired(slab, offset) && predicate.test(key, decode(slab, offset))) {
+                    matched.add(key);
+                }
+            });
+            matched.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            loads.clear();
+            index.clear();
+            freeSlabs.clear();
+            for (int slab = 0; slab < allocatedSlabs; slab++) {
+                slabLive[slab] = 0;
+                slabUsed[slab] = 0;
+                if (slab != reserveSlab) {
+                    freeSlabs.add(slab);
+                }
+            }
+            currentSlab = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        resetStats();
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return get(key).isPresent();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Устаревшие записи учитываются, пока к ним не обратились или пока их слаб не уплотнен.
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        result.put("puts", puts.sum());
+        result.put("removals", removals.sum());
+        result.put("expired", expired.sum());
+        result.put("evictions", evictions.sum());
+        result.put("compactions", compactions.sum());
+        result.put("rejected", rejected.sum());
+        result.put("hitRate", total > 0 ? (double) hitCount / total * 100 : 0);
+        result.put("totalRequests", total);
+        result.put("ttlMillis", ttlMillis);
+
+        lock.readLock().lock();
+        try {
+            long used = 0;
+            long live = 0;
+            for (int slab = 0; slab < allocatedSlabs; slab++) {
+                used += slabUsed[slab];
+                live += slabLive[slab];
+            }
+            result.put("currentSize", index.size());
+            result.put("slabs", allocatedSlabs);
+            result.put("slabBytes", slabBytes);
+            result.put("bytesReserved", (long) allocatedSlabs * slabBytes);
+            result.put("bytesUsed", used);
+            result.put("liveBytes", live);
+            result.put("fragmentation", used > 0 ? (double) (used - live) / used * 100 : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает счетчики статистики.
+     */
+    private void resetStats() {
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removals.reset();
+        expired.reset();
+        evictions.reset();
+        compactions.reset();
+        rejected.reset();
+    }
+
+    /**
+     * Удаляет устаревшую запись, если она не была заменена после чтения.
+     *
+     * @param key ключ
+     * @param location положение устаревшей записи
+     */
+    private void expire(long key, long location) {
+        lock.writeLock().lock();
+        try {
+            if (index.get(key) == location) {
+                index.remove(key);
+                markDead(location);
+                expired.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает запись как мусор. Вызывается под блокировкой записи.
+     *
+     * @param location положение записи
+     */
+    private void markDead(long location) {
+        int slab = slabOf(location);
+        slabLive[slab] -= slabs[slab].getInt(offsetOf(location));
+    }
+
+    /**
+     * Выделяет место под запись в текущем слабе, при необходимости переходя к следующему.
+     * Вызывается под блокировкой записи.
+     *
+     * @param length длина записи
+     * @return положение записи
+     */
+    private long allocate(int length) {
+        if (currentSlab < 0 || slabUsed[currentSlab] + length > slabBytes) {
+            nextSlab(length);
+        }
+        int offset = slabUsed[currentSlab];
+        slabUsed[currentSlab] += length;
+        return location(currentSlab, offset);
+    }
+
+    /**
+     * Делает текущим свободный слаб: из списка свободных, новый (если лимит не исчерпан,
+     * один слаб всегда остается под резерв) или полученный уплотнением либо вытеснением.
+     *
+     * @param length длина записи, под которую нужно место
+     */
+    private void nextSlab(int length) {
+        if (!freeSlabs.isEmpty()) {
+            startSlab(freeSlabs.pop());
+            return;
+        }
+        if (allocatedSlabs < slabs.length - 1) {
+            startSlab(newSlab());
+            return;
+        }
+        if (reserveSlab < 0) {
+            reserveSlab = newSlab();
+        }
+        reclaim();
+        if (slabUsed[currentSlab] + length > slabBytes) {
+            // Уплотненный слаб не вместил крупную запись - вытесняем его записи
+            evictRecords(currentSlab);
+            startSlab(currentSlab);
+        }
+    }
+
+    /**
+     * Освобождает место: уплотняет слаб с наименьшим объемом живых записей в резервный
+     * или, если уплотнение почти ничего не даст, вытесняет его записи.
+     */
+    private void reclaim() {
+        int victim = -1;
+        for (int slab = 0; slab < allocatedSlabs; slab++) {
+            if (slab != reserveSlab && (victim < 0 || slabLive[slab] < slabLive[victim])) {
+                victim = slab;
+            }
+        }
+
+        if (slabLive[victim] <= slabBytes / 4 * 3) {
+            int target = reserveSlab;
+            startSlab(target);
+            relocateLiveRecords(victim, target);
+            reserveSlab = victim;
+            slabLive[victim] = 0;
+            slabUsed[victim] = 0;
+            compactions.increment();
+        } else {
+            evictRecords(victim);
+            startSlab(victim);
+        }
+    }
+
+    /**
+     * Переносит живые неустаревшие записи слаба в конец целевого слаба.
+     *
+     * @param source уплотняемый слаб
+     * @param target целевой слаб
+     */
+    private void relocateLiveRecords(int source, int target) {
+        ByteBuffer from = slabs[source];
+        ByteBuffer to = slabs[target];
+        int offset = 0;
+        while (offset < slabUsed[source]) {
+            int length = from.getInt(offset);
+            long id = from.getLong(offset + 4);
+            if (index.get(id) == location(source, offset)) {
+                if (isExpired(from, offset)) {
+                    index.remove(id);
+                    expired.increment();
+                } else {
+                    int newOffset = slabUsed[target];
+                    to.put(newOffset, from, offset, length);
+                    slabUsed[target] += length;
+                    slabLive[target] += length;
+                    index.put(id, location(target, newOffset));
+                }
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Удаляет из индекса все живые записи слаба.
+     *
+     * @param slab вытесняемый слаб
+     */
+    private void evictRecords(int slab) {
+        ByteBuffer buffer = slabs[slab];
+        int offset = 0;
+        while (offset < slabUsed[slab]) {
+            int length = buffer.getInt(offset);
+            long id = buffer.getLong(offset + 4);
+            if (index.get(id) == location(slab, offset)) {
+                index.remove(id);
+                evictions.increment();
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Выделяет новый слаб.
+     *
+     * @return номер слаба
+     */
+    private int newSlab() {
+        int slab = allocatedSlabs++;
+        slabs[slab] = ByteBuffer.allocateDirect(slabBytes);
+        return slab;
+    }
+
+    /**
+     * Делает слаб текущим и пустым.
+     *
+     * @param slab номер слаба
+     */
+    private void startSlab(int slab) {
+        currentSlab = slab;
+        slabUsed[slab] = 0;
+        slabLive[slab] = 0;
+    }
+
+    /**
+     * Проверяет, истекло ли время жизни записи.
+     *
+     * @param slab слаб записи
+     * @param offset смещение записи
+     * @return true если запись устарела
+     */
+    private boolean isExpired(ByteBuffer slab, int offset) {
+        return System.currentTimeMillis() - slab.getLong(offset + 12) > ttlMillis;
+    }
+
+    /**
+     * Кодирует товар в двоичную запись.
+     *
+     * @param id id товара
+     * @param product товар
+     * @param writeTime время записи в миллисекундах
+     * @return запись или null если цена не помещается в long
+     */
+    private static byte[] encode(long id, Product product, long writeTime) {
+        BigDecimal price = product.getPrice();
+        if (price != null && price.unscaledValue().bitLength() > 63) {
+            return null;
+        }
+
+        byte[] name = utf8(product.getName());
+        byte[] description = utf8(product.getDescription());
+        byte[] category = utf8(product.getCategory());
+        byte[] brand = utf8(product.getBrand());
+        int length = HEADER_BYTES + stringBytes(name) + stringBytes(description)
+                + stringBytes(category) + stringBytes(brand);
+
+        byte flags = 0;
+        if (price == null) {
+            flags |= PRICE_NULL;
+        }
+        if (product.getCreatedAt() == null) {
+            flags |= CREATED_NULL;
+        }
+        if (product.getUpdatedAt() == null) {
+            flags |= UPDATED_NULL;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length);
+        buffer.putLong(id);
+        buffer.putLong(writeTime);
+        buffer.put(flags);
+        buffer.putLong(price != null ? price.unscaledValue().longValue() : 0);
+        buffer.putInt(price != null ? price.scale() : 0);
+        buffer.putInt(product.getStockQuantity());
+        buffer.putLong(toEpochMillis(product.getCreatedAt()));
+        buffer.putLong(toEpochMillis(product.getUpdatedAt()));
+        putString(buffer, name);
+        putString(buffer, description);
+        putString(buffer, category);
+        putString(buffer, brand);
+        return buffer.array();
+    }
+
+    /**
+     * Декодирует товар из записи.
+     *
+     * @param slab слаб записи
+     * @param offset смещение записи
+     * @return товар
+     */
+    private static Product decode(ByteBuffer slab, int offset) {
+        byte flags = slab.get(offset + 20);
+        long unscaledPrice = slab.getLong(offset + 21);
+        int scale = slab.getInt(offset + 29);
+        int position = offset + HEADER_BYTES;
+
+        String name = getString(slab, position);
+        position += stringBytes(slab, position);
+        String description = getString(slab, position);
+        position += stringBytes(slab, position);
+        String category = getString(slab, position);
+        position += stringBytes(slab, position);
+        String brand = getString(slab, position);
+
+        return Product.builder()
+                .id(slab.getLong(offset + 4))
+                .name(name)
+                .description(description)
+                .price((flags & PRICE_NULL) != 0 ? null : new BigDecimal(BigInteger.valueOf(unscaledPrice), scale))
+                .category(category)
+                .brand(brand)
+                .stockQuantity(slab.getInt(offset + 33))
+                .createdAt((flags & CREATED_NULL) != 0 ? null : fromEpochMillis(slab.getLong(offset + 37)))
+                .updatedAt((flags & UPDATED_NULL) != 0 ? null : fromEpochMillis(slab.getLong(offset + 45)))
+                .build();
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringBytes(byte[] bytes) {
+        return 4 + (bytes != null ? bytes.length : 0);
+    }
+
+    private static int stringBytes(ByteBuffer slab, int position) {
+        return 4 + Math.max(0, slab.getInt(position));
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer slab, int position) {
+        int length = slab.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        slab.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static long location(int slab, int offset) {
+        return (long) slab << 32 | offset;
+    }
+
+    private static int slabOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
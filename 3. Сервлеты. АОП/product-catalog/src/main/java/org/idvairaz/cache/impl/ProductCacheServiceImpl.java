@@ -117,51 +117,132 @@ package org.idvairaz.cache.impl;
 import org.idvairaz.cache.CacheService;
 import org.idvairaz.cache.ProductCacheService;
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductSearchResult;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 /**
  * Реализация сервиса кэширования товаров с улучшенной логикой инвалидации.
- * Использует три отдельных кэша для разных типов данных о товарах с поддержкой TTL.
- * Обеспечивает умную инвалидацию кэша при изменениях товаров.
+ * Товары хранятся в одном кэше по ID. Кэши категорий, брендов и результатов поиска
+ * являются вторичными индексами: они хранят только записи {@link IndexEntry} с массивами
+ * идентификаторов в порядке выдачи, а товары при чтении берутся из кэша по ID.
+ *
+ * <p>Изменение товара не сбрасывает списки целиком: идентификатор удаляется из индексов
+ * прежних категории и бренда и вставляется на свое место в индексы новых.
+ * Если при чтении индекса какой-либо товар отсутствует в кэше по ID или уже не относится
+ * к категории (бренду), запись индекса считается устаревшей и загружается заново.</p>
+ *
+ * <p>Отсутствие товара с ID или названием запоминается в отдельном кэше с коротким TTL
+ * (негативное кэширование). Сохранение товара удаляет такие записи; поколение изменений
+ * не дает загрузке, начатой до сохранения, запомнить уже неверное отсутствие.</p>
+ *
+ * <p>Индекс названий (название в нижнем регистре - ID) позволяет находить товар по названию
+ * без обращения к базе данных. Найденный по индексу товар проверяется по кэшу по ID:
+ * если его там нет или название уже другое, запись индекса удаляется и товар ищется в базе.</p>
+ *
+ * <p>Записи индексов никогда не изменяются: любое изменение записи создает новую запись
+ * с новой версией, выданной при ее создании. Версия хранится в самой записи, поэтому
+ * ее чтение не требует общих блокировок. Если прежняя версия измененного или удаленного товара неизвестна
+ * (товар вытеснен из кэша по ID), из индексов удаляются все записи других категорий
+ * и брендов, содержащие его, чтобы их версии не пережили изменение списка.</p>
+ *
+ * <p>Релевантность результатов поиска (нужна для курсора следующей страницы) хранится
+ * в той же записи индекса, что и идентификаторы, и учитывается в ее весе.</p>
  *
  * @author idvavraz
- * @version 2.0
+ * @version 3.3
  */
 public class ProductCacheServiceImpl implements ProductCacheService {
 
+    /** Префикс ключа отсутствующего ID в кэше отсутствующих товаров */
+    private static final String MISSING_ID = "id:";
+
+    /** Префикс ключа отсутствующего названия в кэше отсутствующих товаров */
+    private static final String MISSING_NAME = "name:";
+
+    /** Максимальное количество отслеживаемых горячих ключей каждого вида */
+    private static final int HOT_KEYS_TRACKED = 10_000;
+
+    /** Пустой индекс */
+    private static final long[] NO_IDS = new long[0];
+
+    /** Длина общего префикса, при которой слово запроса и слово товара считаются совпавшими */
+    private static final int STEM_LENGTH = 4;
+
+    /** Разделитель слов поискового запроса и текстовых полей товара */
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Порядок товаров в списках категорий и брендов */
+    private static final Comparator<Product> BY_NAME =
+            Comparator.comparing(Product::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
     /** Кэш товаров по идентификаторам */
     private final CacheService<Long, Product> productCache;
 
-    /** Кэш товаров по категориям */
-    private final CacheService<String, List<Product>> categoryCache;
+    /** Индекс товаров по категориям */
+    private final CacheService<String, IndexEntry> categoryCache;
+
+    /** Индекс товаров по брендам */
+    private final CacheService<String, IndexEntry> brandCache;
+
+    /** Индекс результатов поисковых запросов */
+    private final CacheService<String, IndexEntry> searchCache;
+
+    /** Индекс названий товаров в нижнем регистре */
+    private final CacheService<String, Long> nameCache;
+
+    /** Кэш отсутствующих товаров: ключи "id:..." и "name:..." (название в нижнем регистре) */
+    private final CacheService<String, Boolean> missingCache;
+
+    /** Поколение изменений товаров; увеличивается при каждом сбросе отсутствующих ключей */
+    private long changeGeneration;
 
-    /** Кэш товаров по брендам */
-    private final CacheService<String, List<Product>> brandCache;
+    /** Последняя выданная версия записи индекса */
+    private final AtomicLong lastIndexVersion = new AtomicLong();
 
-    /** Кэш для результатов поисковых запросов */
-    private final CacheService<String, List<Product>> searchCache;
+    /** Частота запросов товаров по ID */
+    private final HotKeyTracker<Long> productAccesses = new HotKeyTracker<>(HOT_KEYS_TRACKED);
+
+    /** Частота запросов списков товаров по категориям */
+    private final HotKeyTracker<String> categoryAccesses = new HotKeyTracker<>(HOT_KEYS_TRACKED);
 
     /**
      * Создает сервис кэширования с указанными кэшами.
      *
      * @param productCache кэш для товаров по ID
-     * @param categoryCache кэш для товаров по категориям
-     * @param brandCache кэш для товаров по брендам
-     * @param searchCache кэш для результатов поиска
+     * @param categoryCache индекс идентификаторов товаров по категориям
+     * @param brandCache индекс идентификаторов товаров по брендам
+     * @param searchCache индекс идентификаторов товаров по поисковым запросам
+     * @param nameCache индекс идентификаторов товаров по названиям в нижнем регистре
+     * @param missingCache кэш отсутствующих ID и названий товаров
      * @throws IllegalArgumentException если любой из кэшей равен null
      */
     public ProductCacheServiceImpl(
             CacheService<Long, Product> productCache,
-            CacheService<String, List<Product>> categoryCache,
-            CacheService<String, List<Product>> brandCache,
-            CacheService<String, List<Product>> searchCache) {
+            CacheService<String, IndexEntry> categoryCache,
+            CacheService<String, IndexEntry> brandCache,
+            CacheService<String, IndexEntry> searchCache,
+            CacheService<String, Long> nameCache,
+            CacheService<String, Boolean> missingCache) {
 
-        if (productCache == null || categoryCache == null || brandCache == null || searchCache == null) {
+        if (productCache == null || categoryCache == null || brandCache == null || searchCache == null
+                || nameCache == null || missingCache == null) {
             throw new IllegalArgumentException("Должны быть предоставлены все виды кэширования");
         }
 
@@ -169,13 +250,14 @@ public class ProductCacheServiceImpl implements ProductCacheService {
         this.categoryCache = categoryCache;
         this.brandCache = brandCache;
         this.searchCache = searchCache;
+        this.nameCache = nameCache;
+        this.missingCache = missingCache;
     }
 
     @Override
     public void cacheProduct(Product product) {
         if (product != null && product.getId() != null) {
             productCache.put(product.getId(), product);
-            updateCategoryAndBrandCaches(product);
         }
     }
 
@@ -184,43 +266,151 @@ public class ProductCacheServiceImpl implements ProductCacheService {
         return productCache.get(id);
     }
 
+    @Override
+    public Optional<Product> getProduct(Long id, Function<Long, Optional<Product>> loader) {
+        productAccesses.record(id);
+        String missingKey = MISSING_ID + id;
+        if (missingCache.get(missingKey).isPresent()) {
+            return Optional.empty();
+        }
+
+        long generation = getChangeGeneration();
+        Product product = productCache.get(id, key -> loader.apply(key).orElse(null));
+        if (product == null) {
+            rememberMissing(missingKey, generation);
+        }
+        return Optional.ofNullable(product);
+    }
+
+    @Override
+    public Optional<Product> getProductByName(String name, Function<String, Optional<Product>> loader) {
+        String key = name.toLowerCase();
+        Optional<Long> id = nameCache.get(key);
+        if (id.isPresent()) {
+            Optional<Product> cached = productCache.get(id.get()).filter(product -> hasName(product, key));
+            if (cached.isPresent()) {
+                return cached;
+            }
+            nameCache.remove(key);
+        }
+
+        String missingKey = MISSING_NAME + key;
+        if (missingCache.get(missingKey).isPresent()) {
+            return Optional.empty();
+        }
+
+        long generation = getChangeGeneration();
+        Optional<Product> product = loader.apply(name);
+        if (product.isPresent()) {
+            rememberFound(key, product.get(), generation);
+        } else {
+            rememberMissing(missingKey, generation);
+        }
+        return product;
+    }
+
     @Override
     public void cacheProductsByCategory(String category, List<Product> products) {
         if (category != null && products != null) {
-            categoryCache.put(category.toLowerCase(), new ArrayList<>(products));
-            products.forEach(this::cacheProduct);
+            products.forEach(this::cacheIfNewer);
+            categoryCache.put(category.toLowerCase(), newIndexEntry(toIds(products)));
         }
     }
 
     @Override
     public Optional<List<Product>> getCachedProductsByCategory(String category) {
-        return categoryCache.get(category.toLowerCase());
+        String key = category.toLowerCase();
+        return getCachedIndexed(categoryCache, key, inCategory(key));
+    }
+
+    @Override
+    public List<Product> getProductsByCategory(String category, Function<String, List<Product>> loader) {
+        String key = category.toLowerCase();
+        categoryAccesses.record(key);
+        return getIndexed(categoryCache, key, inCategory(key), () -> loader.apply(category));
+    }
+
+    @Override
+    public OptionalLong getCategoryVersion(String category) {
+        String key = category.toLowerCase();
+        categoryAccesses.record(key);
+        return getIndexVersion(categoryCache, key);
     }
 
     @Override
     public void cacheProductsByBrand(String brand, List<Product> products) {
         if (brand != null && products != null) {
-            brandCache.put(brand.toLowerCase(), new ArrayList<>(products));
-            products.forEach(this::cacheProduct);
+            products.forEach(this::cacheIfNewer);
+            brandCache.put(brand.toLowerCase(), newIndexEntry(toIds(products)));
         }
     }
 
     @Override
     public Optional<List<Product>> getCachedProductsByBrand(String brand) {
-        return brandCache.get(brand.toLowerCase());
+        String key = brand.toLowerCase();
+        return getCachedIndexed(brandCache, key, inBrand(key));
+    }
+
+    @Override
+    public List<Product> getProductsByBrand(String brand, Function<String, List<Product>> loader) {
+        String key = brand.toLowerCase();
+        return getIndexed(brandCache, key, inBrand(key), () -> loader.apply(brand));
+    }
+
+    @Override
+    public OptionalLong getBrandVersion(String brand) {
+        return getIndexVersion(brandCache, brand.toLowerCase());
     }
 
     @Override
     public void cacheSearchResults(String searchKey, List<Product> products) {
         if (searchKey != null && products != null) {
-            searchCache.put(searchKey.toLowerCase(), new ArrayList<>(products));
-            products.forEach(this::cacheProduct);
+            products.forEach(this::cacheIfNewer);
+            searchCache.put(searchKey.toLowerCase(), newIndexEntry(toIds(products)));
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * Повторяет getIndexed для индекса поиска, дополнительно сохраняя и разрешая релевантность.
+     */
+    @Override
+    public ProductSearchResult getSearchResults(String searchKey, Function<String, ProductSearchResult> loader) {
+        String key = searchKey.toLowerCase();
+        AtomicReference<ProductSearchResult> loaded = new AtomicReference<>();
+        Function<String, IndexEntry> indexLoader = ignored -> {
+            long generation = getChangeGeneration();
+            ProductSearchResult result = loader.apply(searchKey);
+            loaded.set(result);
+            if (!cacheLoaded(result.getProducts(), generation)) {
+                return currentEntry(searchCache, key);
+            }
+            return newIndexEntry(toIds(result.getProducts()), result.getRanks());
+        };
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            IndexEntry entry = searchCache.get(key, indexLoader);
+            if (loaded.get() != null) {
+                return loaded.get();
+            }
+            if (entry == null) {
+                continue;
+            }
+            Optional<List<Product>> resolved = entry.getRanks() != null
+                    ? resolve(entry.getIds(), product -> true)
+                    : Optional.empty();
+            if (resolved.isPresent()) {
+                return new ProductSearchResult(resolved.get(), entry.getRanks());
+            }
+            searchCache.remove(key);
+        }
+
+        return loader.apply(searchKey);
+    }
+
     @Override
     public Optional<List<Product>> getCachedSearchResults(String searchKey) {
-        return searchCache.get(searchKey.toLowerCase());
+        return getCachedIndexed(searchCache, searchKey.toLowerCase(), product -> true);
     }
 
     @Override
@@ -229,6 +419,8 @@ public class ProductCacheServiceImpl implements ProductCacheService {
         categoryCache.clear();
         brandCache.clear();
         searchCache.clear();
+        nameCache.clear();
+        missingCache.clear();
         System.out.println("Все кэши товаров очищены");
     }
 
@@ -239,10 +431,15 @@ public class ProductCacheServiceImpl implements ProductCacheService {
         stats.put("categoryCache", categoryCache.getStats());
         stats.put("brandCache", brandCache.getStats());
         stats.put("searchCache", searchCache.getStats());
+        stats.put("nameCache", nameCache.getStats());
+        stats.put("missingCache", missingCache.getStats());
         stats.put("totalCachedProducts", getTotalCachedProducts());
         stats.put("totalCachedCategories", getTotalCachedCategories());
         stats.put("totalCachedBrands", getTotalCachedBrands());
         stats.put("totalCachedSearches", getTotalCachedSearches());
+        stats.put("totalCachedNames", nameCache.size());
+        stats.put("totalDeduplicatedLoads", getTotalDeduplicatedLoads());
+        stats.put("totalNegativeHits", getTotalNegativeHits());
         return stats;
     }
 
@@ -251,33 +448,615 @@ public class ProductCacheServiceImpl implements ProductCacheService {
         if (id == null) {
             return;
         }
+        applyProductChanges(List.of(), List.of(id));
+    }
+
+    @Override
+    public void cacheNewProduct(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        applyProductChanges(List.of(product), List.of());
+    }
+
+    @Override
+    public void applyProductChanges(Collection<Product> saved, Collection<Long> deletedIds) {
+        applyRemoteChanges(saved, deletedIds, List.of());
+    }
+
+    @Override
+    public void applyRemoteChanges(Collection<Product> saved, Collection<Long> deletedIds,
+                                   Collection<Product> knownPreviousVersions) {
+        if (saved.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        forgetMissing(saved);
+
+        Map<Long, Product> previousVersions = new HashMap<>();
+        for (Product previous : knownPreviousVersions) {
+            previousVersions.put(previous.getId(), previous);
+        }
+        for (Product product : saved) {
+            if (product.getId() != null) {
+                productCache.get(product.getId()).ifPresent(previous -> previousVersions.put(previous.getId(), previous));
+            }
+        }
+        for (Long id : deletedIds) {
+            productCache.get(id).ifPresent(previous -> previousVersions.put(previous.getId(), previous));
+        }
+
+        Map<Long, String> unknownCategories = new HashMap<>();
+        Map<Long, String> unknownBrands = new HashMap<>();
+        for (Long id : deletedIds) {
+            productCache.remove(id);
+            Product previous = previousVersions.get(id);
+            if (previous != null) {
+                removeFromIndex(categoryCache, previous.getCategory(), id);
+                removeFromIndex(brandCache, previous.getBrand(), id);
+                removeFromNameIndex(previous);
+            } else {
+                unknownCategories.put(id, null);
+                unknownBrands.put(id, null);
+            }
+        }
+
+        for (Product product : saved) {
+            if (product.getId() == null) {
+                continue;
+            }
+            productCache.put(product.getId(), product);
+
+            Product previous = previousVersions.get(product.getId());
+            if (previous != null) {
+                removeFromIndex(categoryCache, previous.getCategory(), product.getId());
+                removeFromIndex(brandCache, previous.getBrand(), product.getId());
+                removeFromNameIndex(previous);
+            } else {
+                unknownCategories.put(product.getId(), lowerCase(product.getCategory()));
+                unknownBrands.put(product.getId(), lowerCase(product.getBrand()));
+            }
+            insertIntoIndex(categoryCache, product.getCategory(), product);
+            insertIntoIndex(brandCache, product.getBrand(), product);
+            if (product.getName() != null) {
+                nameCache.put(product.getName().toLowerCase(), product.getId());
+            }
+        }
+        removeMisplaced(categoryCache, unknownCategories);
+        removeMisplaced(brandCache, unknownBrands);
+
+        List<Product> affected = new ArrayList<>(saved);
+        affected.addAll(previousVersions.values());
+        Set<Long> affectedIds = new HashSet<>(deletedIds);
+        saved.stream().map(Product::getId).filter(Objects::nonNull).forEach(affectedIds::add);
+        invalidateSearchResults(affected, affectedIds);
+    }
+
+    @Override
+    public List<Long> getHotProductIds(int limit) {
+        return productAccesses.top(limit);
+    }
+
+    @Override
+    public List<String> getHotCategories(int limit) {
+        return categoryAccesses.top(limit);
+    }
+
+    /**
+     * Возвращает текущее поколение изменений товаров.
+     *
+     * @return поколение изменений
+     */
+    private synchronized long getChangeGeneration() {
+        return changeGeneration;
+    }
+
+    /**
+     * Запоминает отсутствие товара, если с начала загрузки товары не сохранялись.
+     *
+     * @param missingKey ключ в кэше отсутствующих товаров
+     * @param generation поколение изменений на момент начала загрузки
+     */
+    private synchronized void rememberMissing(String missingKey, long generation) {
+        if (generation == changeGeneration) {
+            missingCache.put(missingKey, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Кэширует найденный по названию товар и добавляет его в индекс названий,
+     * если с начала загрузки товары не сохранялись (иначе загруженная версия могла устареть).
+     *
+     * @param key название в нижнем регистре
+     * @param product найденный товар
+     * @param generation поколение изменений на момент начала загрузки
+     */
+    private synchronized void rememberFound(String key, Product product, long generation) {
+        if (generation == changeGeneration && product.getId() != null) {
+            productCache.put(product.getId(), product);
+            nameCache.put(key, product.getId());
+        }
+    }
+
+    /**
+     * Кэширует товары, загруженные для индекса, если с начала загрузки товары не сохранялись
+     * и не удалялись. Иначе загруженные строки могли устареть: изменение, примененное к кэшу
+     * во время загрузки, было бы перезаписано старой версией до истечения TTL.
+     *
+     * @param products загруженные товары
+     * @param generation поколение изменений на момент начала загрузки
+     * @return true если товары закэшированы
+     */
+    private synchronized boolean cacheLoaded(List<Product> products, long generation) {
+        if (generation != changeGeneration) {
+            return false;
+        }
+        products.forEach(this::cacheProduct);
+        return true;
+    }
+
+    /**
+     * Кэширует товар, если его нет в кэше, или заменяет закэшированную версию,
+     * если переданная обновлена позже.
+     *
+     * @param product товар
+     */
+    private void cacheIfNewer(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Optional<Product> cached = productCache.get(product.getId());
+        if (cached.isEmpty()) {
+            productCache.put(product.getId(), product);
+        } else if (isNewer(product, cached.get())) {
+            productCache.computeIfPresent(product.getId(),
+                    (id, current) -> isNewer(product, current) ? product : current);
+        }
+    }
+
+    /**
+     * Проверяет, что версия товара обновлена позже другой версии.
+     *
+     * @param product проверяемая версия
+     * @param other другая версия
+     * @return true если время обновления product позже времени обновления other
+     */
+    private static boolean isNewer(Product product, Product other) {
+        return product.getUpdatedAt() != null
+                && (other.getUpdatedAt() == null || product.getUpdatedAt().isAfter(other.getUpdatedAt()));
+    }
+
+    /**
+     * Удаляет из индекса названий прежнее название товара, если оно еще указывает на этот товар.
+     *
+     * @param previous прежняя версия товара
+     */
+    private void removeFromNameIndex(Product previous) {
+        if (previous.getName() != null) {
+            nameCache.computeIfPresent(previous.getName().toLowerCase(),
+                    (name, id) -> id.equals(previous.getId()) ? null : id);
+        }
+    }
+
+    /**
+     * Проверяет, что товар называется указанным названием без учета регистра.
+     *
+     * @param product товар
+     * @param key название в нижнем регистре
+     * @return true если название товара совпадает
+     */
+    private static boolean hasName(Product product, String key) {
+        return product.getName() != null && product.getName().toLowerCase().equals(key);
+    }
+
+    /**
+     * Сбрасывает запомненное отсутствие ID и названий сохраненных товаров
+     * и начинает новое поколение изменений.
+     *
+     * @param saved созданные и измененные товары
+     */
+    private synchronized void forgetMissing(Collection<Product> saved) {
+        changeGeneration++;
+        for (Product product : saved) {
+            if (product.getId() != null) {
+                missingCache.remove(MISSING_ID + product.getId());
+            }
+            if (product.getName() != null) {
+                missingCache.remove(MISSING_NAME + product.getName().toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Возвращает товары по индексу, при промахе загружая их через loader.
+     * Поток, выполнивший загрузку, возвращает загруженный список без обращения к кэшу по ID.
+     * Товары неизменяемы, поэтому ни загруженный, ни разрешенный список не копируются.
+     * Если во время загрузки товары изменялись, загруженный список возвращается,
+     * но ни товары, ни запись индекса не кэшируются; фоновое обновление в этом случае
+     * оставляет прежнюю запись индекса.
+     * Если индекс не удалось разрешить, он загружается заново один раз; если и после этого
+     * товары вытеснены из кэша по ID (кэш товаров меньше индексов), список загружается напрямую.
+     *
+     * @param index кэш индекса
+     * @param key ключ индекса в нижнем регистре
+     * @param belongs проверка, что товар по-прежнему относится к ключу
+     * @param loader загрузка списка товаров из базы данных
+     * @return список товаров
+     */
+    private List<Product> getIndexed(CacheService<String, IndexEntry> index, String key,
+                                     Predicate<Product> belongs, Supplier<List<Product>> loader) {
+        AtomicReference<List<Product>> loaded = new AtomicReference<>();
+        Function<String, IndexEntry> indexLoader = ignored -> {
+            long generation = getChangeGeneration();
+            List<Product> products = loader.get();
+            loaded.set(products);
+            return cacheLoaded(products, generation) ? newIndexEntry(toIds(products)) : currentEntry(index, key);
+        };
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            IndexEntry entry = index.get(key, indexLoader);
+            if (loaded.get() != null) {
+                return loaded.get();
+            }
+            if (entry == null) {
+                // Совместная загрузка другого потока не закэширована: товары изменялись во время нее
+                continue;
+            }
+            Optional<List<Product>> resolved = resolve(entry.getIds(), belongs);
+            if (resolved.isPresent()) {
+                return resolved.get();
+            }
+            index.remove(key);
+        }
+
+        return loader.get();
+    }
+
+    /**
+     * Возвращает товары по индексу без загрузки.
+     * Неразрешимая запись индекса удаляется.
+     *
+     * @param index кэш индекса
+     * @param key ключ индекса в нижнем регистре
+     * @param belongs проверка, что товар по-прежнему относится к ключу
+     * @return Optional со списком товаров или empty если индекса нет в кэше
+     */
+    private Optional<List<Product>> getCachedIndexed(CacheService<String, IndexEntry> index, String key,
+                                                     Predicate<Product> belongs) {
+        Optional<IndexEntry> entry = index.get(key);
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<List<Product>> resolved = resolve(entry.get().getIds(), belongs);
+        if (resolved.isEmpty()) {
+            index.remove(key);
+        }
+        return resolved;
+    }
+
+    /**
+     * Возвращает текущую запись индекса как результат загрузки, которую нельзя кэшировать.
+     * При промахе записи нет и загрузка ничего не сохраняет; при фоновом обновлении
+     * возврат той же записи оставляет ее в кэше, а не удаляет, как результат null.
+     *
+     * @param index кэш индекса
+     * @param key ключ индекса в нижнем регистре
+     * @return текущая запись или null если ее нет в кэше
+     */
+    private static IndexEntry currentEntry(CacheService<String, IndexEntry> index, String key) {
+        return index.get(key).orElse(null);
+    }
+
+    /**
+     * Возвращает версию записи индекса.
+     *
+     * @param index кэш индекса
+     * @param key ключ индекса в нижнем регистре
+     * @return OptionalLong с версией или empty если записи нет в кэше
+     */
+    private OptionalLong getIndexVersion(CacheService<String, IndexEntry> index, String key) {
+        Optional<IndexEntry> entry = index.get(key);
+        return entry.isPresent() ? OptionalLong.of(entry.get().getVersion()) : OptionalLong.empty();
+    }
+
+    /**
+     * Создает запись индекса с новой версией.
+     *
+     * @param ids идентификаторы товаров в порядке выдачи
+     * @return новая запись индекса
+     */
+    private IndexEntry newIndexEntry(long[] ids) {
+        return new IndexEntry(ids, lastIndexVersion.incrementAndGet());
+    }
+
+    /**
+     * Создает запись индекса результатов поиска с релевантностью и новой версией.
+     *
+     * @param ids идентификаторы товаров по убыванию релевантности
+     * @param ranks релевантность товаров в порядке ids
+     * @return новая запись индекса
+     */
+    private IndexEntry newIndexEntry(long[] ids, float[] ranks) {
+        return new IndexEntry(ids, lastIndexVersion.incrementAndGet(), ranks);
+    }
+
+    /**
+     * Разрешает идентификаторы индекса в товары из кэша по ID.
+     *
+     * @param ids идентификаторы в порядке выдачи
+     * @param belongs проверка, что товар по-прежнему относится к ключу индекса
+     * @return Optional с новым списком товаров или empty если какой-либо товар отсутствует
+     *         в кэше или больше не относится к ключу
+     */
+    private Optional<List<Product>> resolve(long[] ids, Predicate<Product> belongs) {
+        List<Product> products = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Optional<Product> product = productCache.get(id);
+            if (product.isEmpty() || !belongs.test(product.get())) {
+                return Optional.empty();
+            }
+            products.add(product.get());
+        }
+        return Optional.of(products);
+    }
+
+    /**
+     * Удаляет идентификатор товара из записи индекса, если она есть в кэше.
+     *
+     * @param index кэш индекса
+     * @param value категория или бренд
+     * @param id идентификатор товара
+     */
+    private void removeFromIndex(CacheService<String, IndexEntry> index, String value, long id) {
+        if (value == null) {
+            return;
+        }
+        index.computeIfPresent(value.toLowerCase(), (key, entry) -> {
+            long[] ids = without(entry.getIds(), id);
+            return ids == entry.getIds() ? entry : newIndexEntry(ids);
+        });
+    }
 
-        Optional<Product> productOpt = productCache.get(id);
+    /**
+     * Удаляет записи индекса, содержащие товары с неизвестной прежней версией,
+     * кроме записи текущего значения товара.
+     *
+     * @param index кэш индекса
+     * @param currentKeys текущие категории (бренды) товаров в нижнем регистре по ID; null для удаленных
+     */
+    private void removeMisplaced(CacheService<String, IndexEntry> index, Map<Long, String> currentKeys) {
+        if (currentKeys.isEmpty()) {
+            return;
+        }
+        index.removeIf((key, entry) -> {
+            for (long id : entry.getIds()) {
+                if (currentKeys.containsKey(id) && !key.equals(currentKeys.get(id))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
 
-        productCache.remove(id);
+    /**
+     * Вставляет идентификатор товара в запись индекса на место по порядку названий,
+     * если запись есть в кэше. Если товар уже есть в записи, он перемещается
+     * (название могло измениться). Место ищется двоичным поиском по товарам из кэша по ID;
+     * если нужный для сравнения товар вытеснен, запись индекса удаляется.
+     *
+     * @param index кэш индекса
+     * @param value категория или бренд
+     * @param product товар
+     */
+    private void insertIntoIndex(CacheService<String, IndexEntry> index, String value, Product product) {
+        if (value == null) {
+            return;
+        }
+        index.computeIfPresent(value.toLowerCase(), (key, current) -> {
+            long id = product.getId();
+            long[] ids = without(current.getIds(), id);
 
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            categoryCache.remove(product.getCategory().toLowerCase());
-            brandCache.remove(product.getBrand().toLowerCase());
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                Optional<Product> other = productCache.get(ids[middle]);
+                if (other.isEmpty()) {
+                    return null;
+                }
+                if (BY_NAME.compare(other.get(), product) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
 
-            searchCache.clear();
+            long[] result = new long[ids.length + 1];
+            System.arraycopy(ids, 0, result, 0, low);
+            result[low] = id;
+            System.arraycopy(ids, low, result, low + 1, ids.length - low);
+            return newIndexEntry(result);
+        });
+    }
+
+    /**
+     * Удаляет из индекса поиска результаты, которые могли измениться из-за товаров:
+     * результаты, содержащие один из товаров, и запросы, под которые товар может подходить.
+     * Слова товаров разбираются один раз до обхода индекса, а для каждой записи
+     * проверяются только слова ее запроса.
+     *
+     * @param products созданные и измененные товары, а также прежние версии измененных и удаленных
+     * @param ids идентификаторы всех затронутых товаров
+     */
+    private void invalidateSearchResults(Collection<Product> products, Set<Long> ids) {
+        Set<String> stems = new HashSet<>();
+        Set<String> shortWords = new HashSet<>();
+        for (Product product : products) {
+            for (String field : new String[] {
+                    product.getName(), product.getDescription(), product.getCategory(), product.getBrand()}) {
+                if (field != null) {
+                    addWords(field.toLowerCase(), stems, shortWords);
+                }
+            }
         }
+
+        searchCache.removeIf((searchKey, results) -> containsAny(results.getIds(), ids)
+                || matchesSearchQuery(searchQuery(searchKey), stems, shortWords));
     }
 
     /**
-     * Обновляет кэши категорий и брендов при добавлении товара.
+     * Добавляет слова текста в наборы для проверки поисковых запросов:
+     * префиксы каждого слова длиной до STEM_LENGTH и отдельно слова короче STEM_LENGTH.
      *
-     * @param product товар для обновления кэшей
+     * @param text текст в нижнем регистре
+     * @param stems префиксы слов
+     * @param shortWords короткие слова
      */
-    private void updateCategoryAndBrandCaches(Product product) {
+    private static void addWords(String text, Set<String> stems, Set<String> shortWords) {
+        for (String word : WORD_SEPARATOR.split(text)) {
+            for (int length = 1; length <= Math.min(STEM_LENGTH, word.length()); length++) {
+                stems.add(word.substring(0, length));
+            }
+            if (!word.isEmpty() && word.length() < STEM_LENGTH) {
+                shortWords.add(word);
+            }
+        }
+    }
 
-        if (product.getCategory() != null) {
-            categoryCache.remove(product.getCategory().toLowerCase());
+    /**
+     * Проверяет, содержит ли запись индекса хотя бы один из идентификаторов.
+     *
+     * @param results идентификаторы записи индекса
+     * @param ids искомые идентификаторы
+     * @return true если есть пересечение
+     */
+    private static boolean containsAny(long[] results, Set<Long> ids) {
+        for (long id : results) {
+            if (ids.contains(id)) {
+                return true;
+            }
         }
-        if (product.getBrand() != null) {
-            brandCache.remove(product.getBrand().toLowerCase());
+        return false;
+    }
+
+    /**
+     * Возвращает текст запроса из поискового ключа без размера страницы и курсора:
+     * ключ имеет вид "запрос #limit" или "запрос #limit @rank:id" (см. ProductService.searchProducts).
+     *
+     * @param searchKey поисковый ключ
+     * @return текст запроса
+     */
+    private static String searchQuery(String searchKey) {
+        int suffix = searchKey.lastIndexOf(" #");
+        return suffix >= 0 ? searchKey.substring(0, suffix) : searchKey;
+    }
+
+    /**
+     * Консервативно проверяет, могут ли слова товаров попасть в результаты поискового запроса.
+     * Слово запроса считается совпавшим со словом из названия, описания, категории или бренда,
+     * если у них общий префикс длиной не меньше min(STEM_LENGTH, длина более короткого слова),
+     * что покрывает поиск по подстроке и по разным формам слова. Лишнее совпадение
+     * лишь удаляет запись из кэша, пропущенное - оставило бы устаревший результат.
+     *
+     * @param query текст запроса в нижнем регистре
+     * @param stems префиксы слов товаров длиной до STEM_LENGTH
+     * @param shortWords слова товаров короче STEM_LENGTH
+     * @return true если результат запроса может измениться из-за товаров
+     */
+    private static boolean matchesSearchQuery(String query, Set<String> stems, Set<String> shortWords) {
+        for (String token : WORD_SEPARATOR.split(query)) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int stemLength = Math.min(STEM_LENGTH, token.length());
+            // Слово товара не короче stemLength должно начинаться с тех же stemLength символов
+            if (stems.contains(token.substring(0, stemLength))) {
+                return true;
+            }
+            // Более короткое слово товара должно быть префиксом слова запроса
+            for (int length = 1; length < stemLength; length++) {
+                if (shortWords.contains(token.substring(0, length))) {
+                    return true;
+                }
+            }
         }
+        return false;
+    }
+
+    /**
+     * Возвращает проверку принадлежности товара категории.
+     *
+     * @param key категория в нижнем регистре
+     * @return проверка для разрешения индекса категории
+     */
+    private static Predicate<Product> inCategory(String key) {
+        return product -> product.getCategory() != null && key.equals(product.getCategory().toLowerCase());
+    }
+
+    /**
+     * Возвращает проверку принадлежности товара бренду.
+     *
+     * @param key бренд в нижнем регистре
+     * @return проверка для разрешения индекса бренда
+     */
+    private static Predicate<Product> inBrand(String key) {
+        return product -> product.getBrand() != null && key.equals(product.getBrand().toLowerCase());
+    }
+
+    /**
+     * Приводит значение к нижнему регистру.
+     *
+     * @param value категория или бренд
+     * @return значение в нижнем регистре или null
+     */
+    private static String lowerCase(String value) {
+        return value != null ? value.toLowerCase() : null;
+    }
+
+    /**
+     * Преобразует список товаров в массив идентификаторов в том же порядке.
+     *
+     * @param products список товаров
+     * @return идентификаторы товаров
+     */
+    private static long[] toIds(List<Product> products) {
+        if (products.isEmpty()) {
+            return NO_IDS;
+        }
+        return products.stream().mapToLong(Product::getId).toArray();
+    }
+
+    /**
+     * Возвращает запись индекса без указанного идентификатора.
+     *
+     * @param ids идентификаторы записи индекса
+     * @param id удаляемый идентификатор
+     * @return тот же массив, если идентификатора в нем нет, иначе новый массив
+     */
+    private static long[] without(long[] ids, long id) {
+        int position = indexOf(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    /**
+     * Ищет позицию идентификатора в записи индекса.
+     *
+     * @param ids идентификаторы записи индекса
+     * @param id искомый идентификатор
+     * @return позиция или -1 если идентификатора нет
+     */
+    private static int indexOf(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -315,4 +1094,31 @@ public class ProductCacheServiceImpl implements ProductCacheService {
     private int getTotalCachedSearches() {
         return searchCache.size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Возвращает количество загрузок из базы данных, сэкономленных объединением
+     * одновременных промахов, по всем кэшам.
+     *
+     * @return количество объединенных загрузок
+     */
+    private long getTotalDeduplicatedLoads() {
+        long total = 0;
+        for (CacheService<?, ?> cache : List.of(productCache, categoryCache, brandCache, searchCache)) {
+            Object value = cache.getStats().get("deduplicatedLoads");
+            if (value instanceof Number number) {
+                total += number.longValue();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает количество запросов несуществующих товаров, на которые ответил
+     * кэш отсутствующих товаров без обращения к базе данных.
+     *
+     * @return количество негативных попаданий
+     */
+    private long getTotalNegativeHits() {
+        return missingCache.getStats().get("hits") instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,147 @@
+package org.idvairaz.cache.impl;
+
+import org.idvairaz.cache.CacheService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Двухуровневый кэш: небольшой быстрый первый уровень (обычно InMemoryCacheService в куче)
+ * и более емкий второй (обычно OffHeapProductCache вне кучи).
+ * Промах первого уровня проверяет второй и поднимает найденное значение наверх,
+ * загрузка из источника выполняется только при промахе обоих уровней.
+ * Записи и удаления применяются к обоим уровням: сначала ко второму, затем к первому.
+ *
+ * <p>Подъем значения со второго уровня выполняется как загрузка первого уровня
+ * (get(key, loader)), поэтому запись или удаление ключа во время подъема отменяет его,
+ * и прочитанное до записи значение не попадает в первый уровень. Порядок "второй, затем
+ * первый" закрывает оставшийся случай: если запись в первый уровень прошла до начала
+ * подъема, то второй уровень к этому моменту уже обновлен и подъем читает новое значение.</p>
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ * @author idvavraz
+ * @version 1.0
+ */
+public class TieredCacheService<K, V> implements CacheService<K, V> {
+
+    /** Первый уровень кэша */
+    private final CacheService<K, V> firstLevel;
+
+    /** Второй уровень кэша */
+    private final CacheService<K, V> secondLevel;
+
+    /**
+     * Создает двухуровневый кэш.
+     *
+     * @param firstLevel первый уровень
+     * @param secondLevel второй уровень
+     */
+    public TieredCacheService(CacheService<K, V> firstLevel, CacheService<K, V> secondLevel) {
+        this.firstLevel = firstLevel;
+        this.secondLevel = secondLevel;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        secondLevel.put(key, value);
+        firstLevel.put(key, value);
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        return Optional.ofNullable(firstLevel.get(key, k -> secondLevel.get(k).orElse(null)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Одновременные промахи объединяет первый уровень, поэтому второй уровень
+     * и источник опрашиваются один раз на ключ. Явная запись или удаление во время загрузки
+     * отменяют сохранение ее результата на обоих уровнях: put и remove вызываются
+     * у каждого уровня, и каждый из них отменяет свою загрузку.
+     */
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return firstLevel.get(key, k -> secondLevel.get(k, loader));
+    }
+
+    @Override
+    public void remove(K key) {
+        secondLevel.remove(key);
+        firstLevel.remove(key);
+    }
+
+    @Override
+    public void computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        secondLevel.computeIfPresent(key, remapping);
+        firstLevel.computeIfPresent(key, remapping);
+    }
+
+    @Override
+    public void removeIf(BiPredicate<? super K, ? super V> predicate) {
+        secondLevel.removeIf(predicate);
+        firstLevel.removeIf(predicate);
+    }
+
+    @Override
+    public void clear() {
+        secondLevel.clear();
+        firstLevel.clear();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return firstLevel.containsKey(key) || secondLevel.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Уровни пересекаются, поэтому возвращается размер большего из них.
+     */
+    @Override
+    public int size() {
+        return Math.max(firstLevel.size(), secondLevel.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Попадания - сумма попаданий обоих уровней, промахи - промахи второго уровня
+     * (т.е. обращения, дошедшие до источника). Статистика уровней доступна
+     * в разделах "onHeap" и "offHeap".
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> firstStats = firstLevel.getStats();
+        Map<String, Object> secondStats = secondLevel.getStats();
+
+        long hits = count(firstStats, "hits") + count(secondStats, "hits");
+        long misses = count(secondStats, "misses");
+        long total = hits + misses;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("hitRate", total > 0 ? (double) hits / total * 100 : 0);
+        result.put("totalRequests", total);
+        result.put("currentSize", size());
+        result.put("deduplicatedLoads", count(firstStats, "deduplicatedLoads"));
+        result.put("onHeap", firstStats);
+        result.put("offHeap", secondStats);
+        return result;
+    }
+
+    /**
+     * Возвращает числовое значение статистики или 0, если его нет.
+     *
+     * @param stats статистика уровня
+     * @param name название показателя
+     * @return значение показателя
+     */
+    private static long count(Map<String, Object> stats, String name) {
+        return stats.get(name) instanceof Number number ? number.longValue() : 0;
+    }
+}
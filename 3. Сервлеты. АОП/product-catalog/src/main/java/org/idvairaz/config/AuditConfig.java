@@ -0,0 +1,52 @@
+package org.idvairaz.config;
+
+import org.idvairaz.repository.AuditRepository;
+import org.idvairaz.service.AsyncAuditWriter;
+import org.idvairaz.service.AsyncAuditWriter.OverflowPolicy;
+import org.idvairaz.service.AuditService;
+
+/**
+ * Конфигурационный класс для настройки журнала аудита.
+ * Параметры асинхронной записи читаются из ключей audit.async.* в application.properties.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class AuditConfig {
+
+    /** Включена ли асинхронная пакетная запись */
+    private final boolean asyncEnabled =
+            Boolean.parseBoolean(DatabaseConfig.getProperty("audit.async.enabled", "true"));
+
+    /** Емкость очереди записей аудита */
+    private final int queueCapacity =
+            Integer.parseInt(DatabaseConfig.getProperty("audit.async.queueCapacity", "10000"));
+
+    /** Максимальный размер пакета */
+    private final int flushSize =
+            Integer.parseInt(DatabaseConfig.getProperty("audit.async.flushSize", "100"));
+
+    /** Максимальная задержка записи пакета, мс */
+    private final long flushIntervalMillis =
+            Long.parseLong(DatabaseConfig.getProperty("audit.async.flushIntervalMillis", "500"));
+
+    /** Политика при переполнении очереди */
+    private final OverflowPolicy overflowPolicy =
+            OverflowPolicy.valueOf(DatabaseConfig.getProperty("audit.async.overflowPolicy", "BLOCK").toUpperCase());
+
+    /**
+     * Создает и настраивает сервис аудита.
+     *
+     * @param auditRepository репозиторий для сохранения записей аудита
+     * @return настроенный экземпляр AuditService
+     */
+    public AuditService createAuditService(AuditRepository auditRepository) {
+        if (!asyncEnabled) {
+            return new AuditService(auditRepository);
+        }
+
+        AsyncAuditWriter writer = new AsyncAuditWriter(auditRepository, queueCapacity, flushSize,
+                flushIntervalMillis, overflowPolicy);
+        return new AuditService(auditRepository, writer);
+    }
+}
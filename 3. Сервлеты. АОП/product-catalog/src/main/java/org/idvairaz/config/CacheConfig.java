@@ -3,10 +3,17 @@ package org.idvairaz.config;
 import org.idvairaz.cache.CacheService;
 import org.idvairaz.cache.ProductCacheService;
 import org.idvairaz.cache.impl.InMemoryCacheService;
+import org.idvairaz.cache.impl.IndexEntry;
+import org.idvairaz.cache.impl.OffHeapProductCache;
 import org.idvairaz.cache.impl.ProductCacheServiceImpl;
+import org.idvairaz.cache.impl.TieredCacheService;
 import org.idvairaz.model.Product;
+import org.idvairaz.repository.ProductRepository;
+import org.idvairaz.service.CacheWarmupService;
+import org.idvairaz.service.ProductCacheNotifier;
+import org.idvairaz.web.JsonResponseCache;
 
-import java.util.List;
+import java.nio.file.Path;
 
 /**
  * Конфигурационный класс для настройки системы кэширования.
@@ -29,17 +36,197 @@ public class CacheConfig {
     /** Время жизни поисковых результатов в кэше (10 минут) */
     private final long searchTtlMillis = 10 * 60 * 1000;
 
+    /** Время жизни записей об отсутствующих товарах (30 секунд) */
+    private final long missingTtlMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.missing.ttlMillis", "30000"));
+
+    /** Максимальное количество товаров в кэше по ID */
+    private final long productMaximumSize =
+            Long.parseLong(DatabaseConfig.getProperty("cache.product.maximumSize", "10000"));
+
+    /** Максимальное количество названий в индексе названий товаров */
+    private final long nameMaximumSize =
+            Long.parseLong(DatabaseConfig.getProperty("cache.name.maximumSize", "10000"));
+
+    /** Максимальное количество запомненных отсутствующих ID и названий товаров */
+    private final long missingMaximumSize =
+            Long.parseLong(DatabaseConfig.getProperty("cache.missing.maximumSize", "10000"));
+
+    /** Максимальное суммарное количество идентификаторов в индексах категорий */
+    private final long categoryMaximumWeight =
+            Long.parseLong(DatabaseConfig.getProperty("cache.category.maximumWeight", "50000"));
+
+    /** Максимальное суммарное количество идентификаторов в индексах брендов */
+    private final long brandMaximumWeight =
+            Long.parseLong(DatabaseConfig.getProperty("cache.brand.maximumWeight", "50000"));
+
+    /** Максимальное суммарное количество идентификаторов в индексах результатов поиска */
+    private final long searchMaximumWeight =
+            Long.parseLong(DatabaseConfig.getProperty("cache.search.maximumWeight", "20000"));
+
+    /** Возраст товара в кэше, после которого он обновляется в фоне при чтении (25 минут) */
+    private final long productRefreshAfterMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.product.refreshAfterMillis", "1500000"));
+
+    /** Возраст списка категории, после которого он обновляется в фоне при чтении (12 минут) */
+    private final long categoryRefreshAfterMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.category.refreshAfterMillis", "720000"));
+
+    /** Возраст списка бренда, после которого он обновляется в фоне при чтении (12 минут) */
+    private final long brandRefreshAfterMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.brand.refreshAfterMillis", "720000"));
+
+    /** Возраст результатов поиска, после которого они обновляются в фоне при чтении (0 - не обновляются) */
+    private final long searchRefreshAfterMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.search.refreshAfterMillis", "0"));
+
+    /** Объем памяти вне кучи под второй уровень кэша товаров, байт (0 - второй уровень отключен) */
+    private final long productOffHeapMaximumBytes =
+            Long.parseLong(DatabaseConfig.getProperty("cache.product.offHeap.maxBytes", "67108864"));
+
+    /** Размер слаба второго уровня кэша товаров, байт */
+    private final int productOffHeapSlabBytes =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.product.offHeap.slabBytes", "4194304"));
+
+    /** Включен ли прогрев кэша при запуске */
+    private final boolean warmupEnabled =
+            Boolean.parseBoolean(DatabaseConfig.getProperty("cache.warmup.enabled", "true"));
+
+    /** Файл снимка горячих ключей */
+    private final String warmupSnapshotFile =
+            DatabaseConfig.getProperty("cache.warmup.snapshotFile", "cache-hot-keys.dat");
+
+    /** Количество потоков (и соединений пула), загружающих данные при прогреве */
+    private final int warmupThreads =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.warmup.threads", "4"));
+
+    /** Максимальное время прогрева, мс */
+    private final long warmupTimeoutMillis =
+            Long.parseLong(DatabaseConfig.getProperty("cache.warmup.timeoutMillis", "30000"));
+
+    /** Максимальное количество товаров в снимке горячих ключей */
+    private final int warmupMaxProducts =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.warmup.maxProducts", "5000"));
+
+    /** Максимальное количество категорий в снимке горячих ключей */
+    private final int warmupMaxCategories =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.warmup.maxCategories", "100"));
+
+    /** Включено ли оповещение других экземпляров приложения об изменениях товаров */
+    private final boolean invalidationEnabled =
+            Boolean.parseBoolean(DatabaseConfig.getProperty("cache.invalidation.enabled", "true"));
+
+    /** Канал PostgreSQL LISTEN/NOTIFY для оповещений об изменениях товаров */
+    private final String invalidationChannel =
+            DatabaseConfig.getProperty("cache.invalidation.channel", "product_cache_invalidation");
+
+    /** Максимальное время ожидания оповещений за один опрос, мс */
+    private final int invalidationPollMillis =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.invalidation.pollMillis", "500"));
+
+    /** Включен ли кэш готовых JSON ответов списков товаров */
+    private final boolean responseCacheEnabled =
+            Boolean.parseBoolean(DatabaseConfig.getProperty("cache.response.enabled", "true"));
+
+    /** Максимальный суммарный размер готовых ответов, байт */
+    private final long responseMaximumBytes =
+            Long.parseLong(DatabaseConfig.getProperty("cache.response.maxBytes", "16777216"));
+
+    /** Минимальный размер ответа, который хранится также сжатым gzip, байт */
+    private final int responseGzipMinBytes =
+            Integer.parseInt(DatabaseConfig.getProperty("cache.response.gzipMinBytes", "1024"));
+
+    /** Время, в течение которого HTTP кэши и клиенты отдают ответы о товарах без проверки, секунд */
+    private final int httpMaxAgeSeconds =
+            Integer.parseInt(DatabaseConfig.getProperty("http.cache.maxAgeSeconds", "5"));
+
     /**
      * Создает и настраивает сервис кэширования товаров.
+     * Кэш товаров ограничен количеством записей. Кэши категорий, брендов и поиска хранят
+     * массивы идентификаторов товаров и ограничены их суммарной длиной (вес записи - длина массива;
+     * релевантность результатов поиска добавляет половину длины).
+     * Записи старше порога refreshAfterMillis обновляются в фоне при чтении,
+     * не дожидаясь истечения TTL.
+     * Под кэшем товаров в куче может быть включен второй уровень вне кучи: его записи живут
+     * до порога обновления, чтобы фоновое обновление первого уровня читало базу данных,
+     * а не собственную копию из второго уровня.
+     * Индекс названий хранит ID товаров по названиям в нижнем регистре и живет столько же, сколько кэш товаров.
+     * Отсутствие товаров по ID и названию запоминается на короткое время в отдельном кэше.
      *
      * @return настроенный экземпляр ProductCacheService
      */
     public ProductCacheService createProductCacheService() {
-        CacheService<Long, Product> productCache = new InMemoryCacheService<>(productTtlMillis);
-        CacheService<String, List<Product>> categoryCache = new InMemoryCacheService<>(categoryTtlMillis);
-        CacheService<String, List<Product>> brandCache = new InMemoryCacheService<>(brandTtlMillis);
-        CacheService<String, List<Product>> searchCache = new InMemoryCacheService<>(searchTtlMillis);
+        CacheService<Long, Product> productCache = new InMemoryCacheService<>(
+                productTtlMillis, productMaximumSize, product -> 1, productRefreshAfterMillis);
+        if (productOffHeapMaximumBytes > 0) {
+            long offHeapTtlMillis = productRefreshAfterMillis > 0 ? productRefreshAfterMillis : productTtlMillis;
+            productCache = new TieredCacheService<>(productCache, new OffHeapProductCache(
+                    offHeapTtlMillis, productOffHeapMaximumBytes, productOffHeapSlabBytes));
+        }
+        CacheService<String, IndexEntry> categoryCache = new InMemoryCacheService<>(
+                categoryTtlMillis, categoryMaximumWeight, IndexEntry::getWeight, categoryRefreshAfterMillis);
+        CacheService<String, IndexEntry> brandCache = new InMemoryCacheService<>(
+                brandTtlMillis, brandMaximumWeight, IndexEntry::getWeight, brandRefreshAfterMillis);
+        CacheService<String, IndexEntry> searchCache = new InMemoryCacheService<>(
+                searchTtlMillis, searchMaximumWeight, IndexEntry::getWeight, searchRefreshAfterMillis);
+
+        CacheService<String, Long> nameCache = new InMemoryCacheService<>(productTtlMillis, nameMaximumSize);
+        CacheService<String, Boolean> missingCache = new InMemoryCacheService<>(missingTtlMillis, missingMaximumSize);
+
+        return new ProductCacheServiceImpl(
+                productCache, categoryCache, brandCache, searchCache, nameCache, missingCache);
+    }
+
+    /**
+     * Создает кэш готовых JSON ответов списков товаров.
+     * Ответы живут не дольше списков категорий, по версиям которых они проверяются.
+     *
+     * @return кэш ответов или null если он отключен
+     */
+    public JsonResponseCache createJsonResponseCache() {
+        if (!responseCacheEnabled) {
+            return null;
+        }
+        return new JsonResponseCache(categoryTtlMillis, responseMaximumBytes, responseGzipMinBytes);
+    }
 
-        return new ProductCacheServiceImpl(productCache, categoryCache, brandCache, searchCache);
+    /**
+     * Возвращает значение max-age заголовка Cache-Control ответов о товарах.
+     *
+     * @return время, в течение которого ответ можно отдавать без проверки, секунд (0 - проверять всегда)
+     */
+    public int getHttpMaxAgeSeconds() {
+        return Math.max(0, httpMaxAgeSeconds);
+    }
+
+    /**
+     * Создает и запускает оповещение других экземпляров приложения об изменениях товаров.
+     *
+     * @param productRepository репозиторий для перечитывания измененных товаров
+     * @param cacheService локальный кэш товаров
+     * @return запущенный слушатель оповещений или null если оповещения отключены
+     */
+    public ProductCacheNotifier createProductCacheNotifier(ProductRepository productRepository,
+                                                           ProductCacheService cacheService) {
+        if (!invalidationEnabled) {
+            return null;
+        }
+        return new ProductCacheNotifier(productRepository, cacheService, invalidationChannel, invalidationPollMillis);
+    }
+
+    /**
+     * Создает сервис прогрева кэша товаров по снимку горячих ключей.
+     *
+     * @param productRepository репозиторий для загрузки товаров
+     * @param cacheService прогреваемый кэш товаров
+     * @return сервис прогрева или null если прогрев отключен
+     */
+    public CacheWarmupService createCacheWarmupService(ProductRepository productRepository,
+                                                       ProductCacheService cacheService) {
+        if (!warmupEnabled) {
+            return null;
+        }
+        return new CacheWarmupService(productRepository, cacheService, Path.of(warmupSnapshotFile),
+                warmupThreads, warmupTimeoutMillis, warmupMaxProducts, warmupMaxCategories);
     }
 }
\ No newline at end of file
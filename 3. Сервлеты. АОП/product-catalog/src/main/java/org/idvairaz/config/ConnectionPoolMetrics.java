@@ -0,0 +1,116 @@
+package org.idvairaz.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сборщик метрик пула соединений HikariCP.
+ * Подключается к пулу через MetricsTrackerFactory и накапливает гистограмму
+ * времени получения соединения из пула, время использования соединений
+ * и количество отказов по таймауту. Все счетчики потокобезопасны и не блокируют
+ * потоки, запрашивающие соединения.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class ConnectionPoolMetrics implements IMetricsTracker {
+
+    /** Верхние границы интервалов гистограммы времени получения соединения, мс */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000};
+
+    /** Счетчики интервалов гистограммы; последний интервал - больше максимальной границы */
+    private final LongAdder[] acquireBuckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+    /** Количество полученных соединений */
+    private final LongAdder acquireCount = new LongAdder();
+
+    /** Суммарное время получения соединений, нс */
+    private final LongAdder acquireNanosTotal = new LongAdder();
+
+    /** Максимальное время получения соединения, нс */
+    private final LongAccumulator acquireNanosMax = new LongAccumulator(Math::max, 0);
+
+    /** Суммарное время использования соединений, мс */
+    private final LongAdder usageMillisTotal = new LongAdder();
+
+    /** Количество возвратов соединений в пул */
+    private final LongAdder usageCount = new LongAdder();
+
+    /** Количество таймаутов ожидания соединения */
+    private final LongAdder timeouts = new LongAdder();
+
+    /** Количество созданных физических соединений */
+    private final LongAdder connectionsCreated = new LongAdder();
+
+    /**
+     * Создает сборщик метрик с пустой гистограммой.
+     */
+    public ConnectionPoolMetrics() {
+        for (int i = 0; i < acquireBuckets.length; i++) {
+            acquireBuckets[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        connectionsCreated.increment();
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireCount.increment();
+        acquireNanosTotal.add(elapsedAcquiredNanos);
+        acquireNanosMax.accumulate(elapsedAcquiredNanos);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis >= BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        acquireBuckets[bucket].increment();
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageCount.increment();
+        usageMillisTotal.add(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Возвращает накопленные метрики пула.
+     * Гистограмма содержит количество получений соединения в интервалах
+     * "&lt;1ms", "&lt;2ms", ..., "&gt;=5000ms".
+     *
+     * @return карта с метриками получения и использования соединений
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = acquireCount.sum();
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            histogram.put("<" + BUCKET_BOUNDS_MILLIS[i] + "ms", acquireBuckets[i].sum());
+        }
+        histogram.put(">=" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms",
+                acquireBuckets[BUCKET_BOUNDS_MILLIS.length].sum());
+
+        stats.put("acquireCount", count);
+        stats.put("acquireAvgMicros", count > 0 ? acquireNanosTotal.sum() / count / 1000 : 0);
+        stats.put("acquireMaxMicros", acquireNanosMax.get() / 1000);
+        stats.put("acquireHistogram", histogram);
+        stats.put("usageAvgMillis", usageCount.sum() > 0 ? usageMillisTotal.sum() / usageCount.sum() : 0);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("connectionsCreated", connectionsCreated.sum());
+        return stats;
+    }
+}
@@ -2,11 +2,15 @@ package org.idvairaz.config;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -33,6 +37,17 @@ import java.util.Properties;
      */
     private static HikariDataSource dataSource;
 
+    /**
+     * Префикс свойств, которые передаются драйверу PostgreSQL без изменений
+     * (например, db.datasource.prepareThreshold).
+     */
+    private static final String DATASOURCE_PROPERTY_PREFIX = "db.datasource.";
+
+    /**
+     * Метрики пула соединений: гистограмма времени получения соединения и таймауты.
+     */
+    private static final ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+
     /**
      * Статический блок инициализации, выполняемый при первой загрузке класса.
      * Загружает конфигурационные параметры из файла application.properties
@@ -58,7 +73,10 @@ import java.util.Properties;
 
     /**
      * Инициализирует и настраивает пул соединений HikariCP с параметрами
-     * из конфигурационного файла. Использует оптимальные настройки для PostgreSQL.
+     * из конфигурационного файла.
+     * Размеры и таймауты пула берутся из ключей db.pool.*, свойства драйвера PostgreSQL -
+     * из ключей db.datasource.*. Схема по умолчанию передается драйверу как currentSchema
+     * и устанавливается один раз при открытии физического соединения.
      *
      * @throws RuntimeException если не удалось инициализировать пул соединений
      */
@@ -66,15 +84,31 @@ import java.util.Properties;
         try {
             HikariConfig config = new HikariConfig();
 
+            config.setPoolName("product-catalog-pool");
             config.setJdbcUrl(properties.getProperty("db.url"));
             config.setUsername(properties.getProperty("db.username"));
             config.setPassword(properties.getProperty("db.password"));
 
-            config.setMaximumPoolSize(3);
-            config.setMinimumIdle(1);
-            config.setConnectionTimeout(5000);
+            config.setMaximumPoolSize(Integer.parseInt(properties.getProperty("db.pool.maximumPoolSize", "10")));
+            config.setMinimumIdle(Integer.parseInt(properties.getProperty("db.pool.minimumIdle", "2")));
+            config.setConnectionTimeout(Long.parseLong(properties.getProperty("db.pool.connectionTimeout", "30000")));
+            config.setIdleTimeout(Long.parseLong(properties.getProperty("db.pool.idleTimeout", "600000")));
+            config.setMaxLifetime(Long.parseLong(properties.getProperty("db.pool.maxLifetime", "1800000")));
+
+            config.addDataSourceProperty("currentSchema", getSchema());
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(DATASOURCE_PROPERTY_PREFIX)) {
+                    config.addDataSourceProperty(key.substring(DATASOURCE_PROPERTY_PREFIX.length()),
+                            properties.getProperty(key));
+                }
+            }
+
+            config.setMetricsTrackerFactory((poolName, poolStats) -> poolMetrics);
 
             dataSource = new HikariDataSource(config);
+            System.out.printf("Пул соединений %s: maximumPoolSize=%d, minimumIdle=%d, свойства драйвера=%s%n",
+                    config.getPoolName(), config.getMaximumPoolSize(), config.getMinimumIdle(),
+                    config.getDataSourceProperties());
 
         } catch (Exception e) {
             throw new RuntimeException("Ошибка инициализации пула соединений", e);
@@ -82,8 +116,9 @@ import java.util.Properties;
     }
 
     /**
-     * Устанавливает и возвращает соединение с базой данных PostgreSQL из пула.
-     * Автоматически устанавливает схему по умолчанию для каждого соединения.
+     * Возвращает соединение с базой данных PostgreSQL из пула.
+     * Схема по умолчанию уже установлена драйвером при открытии физического соединения
+     * (свойство currentSchema), поэтому дополнительных запросов при выдаче соединения нет.
      *
      * @return активное соединение с базой данных
      * @throws SQLException если произошла ошибка при установлении соединения:
@@ -93,13 +128,45 @@ import java.util.Properties;
      *         - превышен лимит соединений в пуле
      */
     public static Connection getConnection() throws SQLException {
-        Connection connection = dataSource.getConnection();
+        return dataSource.getConnection();
+    }
 
-        try (var stmt = connection.createStatement()) {
-            stmt.execute("SET search_path TO " + getSchema());
-        }
+    /**
+     * Открывает отдельное соединение с базой данных в обход пула.
+     * Используется для долгоживущих соединений (например, LISTEN), которые иначе
+     * постоянно занимали бы одно из соединений пула. Вызывающий код обязан закрыть соединение.
+     *
+     * @return новое соединение с базой данных
+     * @throws SQLException если не удалось установить соединение
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user", properties.getProperty("db.username"));
+        connectionProperties.setProperty("password", properties.getProperty("db.password"));
+        connectionProperties.setProperty("currentSchema", getSchema());
+        return DriverManager.getConnection(properties.getProperty("db.url"), connectionProperties);
+    }
 
-        return connection;
+    /**
+     * Возвращает статистику пула соединений для подбора его размера под нагрузкой.
+     * Включает текущее состояние пула (активные, простаивающие, ожидающие потоки)
+     * и накопленные метрики: гистограмму времени получения соединения, таймауты.
+     *
+     * @return карта со статистикой пула соединений
+     */
+    public static Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("total", pool.getTotalConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+        }
+        stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        stats.put("minimumIdle", dataSource.getMinimumIdle());
+        stats.putAll(poolMetrics.getStats());
+        return stats;
     }
 
     /**
@@ -146,6 +213,19 @@ import java.util.Properties;
     public static String getAuditSchema() {
         return properties.getProperty("liquibase.audit-schema", "audit");
     }
+
+    /**
+     * Возвращает значение произвольного свойства из application.properties.
+     * Используется конфигурационными классами других подсистем (аудит, кэш),
+     * чтобы не загружать файл конфигурации повторно.
+     *
+     * @param key имя свойства
+     * @param defaultValue значение по умолчанию, если свойство не задано
+     * @return значение свойства или значение по умолчанию
+     */
+    public static String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
 }
 
 
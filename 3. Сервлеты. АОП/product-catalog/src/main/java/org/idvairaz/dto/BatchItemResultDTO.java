@@ -0,0 +1,35 @@
+package org.idvairaz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO класс с результатом обработки одного элемента пакета.
+ * Статус соответствует HTTP статусу, который вернула бы одиночная операция.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDTO {
+
+    /** Операция: create, update или delete */
+    private String operation;
+
+    /** Позиция элемента в соответствующем списке запроса */
+    private int index;
+
+    /** Идентификатор товара (для созданных - присвоенный) */
+    private Long id;
+
+    /** HTTP статус обработки элемента */
+    private int status;
+
+    /** Сообщение об ошибке или null при успехе */
+    private String error;
+}
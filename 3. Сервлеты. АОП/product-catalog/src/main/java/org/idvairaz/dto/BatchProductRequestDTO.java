@@ -0,0 +1,36 @@
+package org.idvairaz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO класс для пакетной обработки товаров.
+ * Объединяет в одном запросе создание, обновление и удаление товаров.
+ * Любой из списков может отсутствовать.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchProductRequestDTO {
+
+    /** Товары для создания */
+    @Builder.Default
+    private List<CreateProductDTO> create = new ArrayList<>();
+
+    /** Товары для обновления */
+    @Builder.Default
+    private List<BatchUpdateProductDTO> update = new ArrayList<>();
+
+    /** Идентификаторы товаров для удаления */
+    @Builder.Default
+    private List<Long> delete = new ArrayList<>();
+}
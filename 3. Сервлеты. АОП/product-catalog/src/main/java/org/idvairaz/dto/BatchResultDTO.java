@@ -0,0 +1,31 @@
+package org.idvairaz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO класс с итогом пакетной обработки товаров.
+ * Содержит результаты по каждому элементу и сводные счетчики.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResultDTO {
+
+    /** Результаты по элементам в порядке: создание, обновление, удаление */
+    private List<BatchItemResultDTO> results;
+
+    /** Количество успешно обработанных элементов */
+    private int succeeded;
+
+    /** Количество элементов, обработанных с ошибкой */
+    private int failed;
+}
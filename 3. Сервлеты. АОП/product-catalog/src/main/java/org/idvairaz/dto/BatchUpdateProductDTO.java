@@ -0,0 +1,26 @@
+package org.idvairaz.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * DTO класс для обновления товара в составе пакета.
+ * Дополняет UpdateProductDTO идентификатором обновляемого товара,
+ * остальные поля опциональны для частичного обновления.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class BatchUpdateProductDTO extends UpdateProductDTO {
+
+    /** Идентификатор обновляемого товара */
+    @NotNull(message = "Идентификатор товара обязателен")
+    private Long id;
+}
@@ -0,0 +1,32 @@
+package org.idvairaz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO класс для передачи страницы товаров.
+ * Используется для постраничных операций ЧТЕНИЯ - содержит товары страницы
+ * и курсор для запроса следующей страницы.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageDTO {
+
+    /** Товары текущей страницы */
+    private List<ProductDTO> items;
+
+    /** Размер страницы */
+    private int limit;
+
+    /** Курсор следующей страницы (параметр after) или null если страница последняя */
+    private String nextCursor;
+}
@@ -0,0 +1,35 @@
+package org.idvairaz.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Класс представляющий запись журнала аудита.
+ * Фиксирует время действия в момент его совершения, а не в момент записи в базу данных,
+ * поэтому может накапливаться в очереди и сохраняться пакетами.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditEntry {
+
+    /** Имя пользователя, выполнившего действие */
+    private String username;
+
+    /** Тип выполненного действия */
+    private String action;
+
+    /** Дополнительные детали действия */
+    private String details;
+
+    /** Дата и время совершения действия */
+    private LocalDateTime createdAt;
+}
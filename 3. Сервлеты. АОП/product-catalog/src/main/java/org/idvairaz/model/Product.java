@@ -2,10 +2,10 @@ package org.idvairaz.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
 import lombok.ToString;
+import lombok.Value;
+import lombok.With;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -15,12 +15,16 @@ import java.time.LocalDateTime;
  * Класс представляющий товар в каталоге маркетплейса.
  * Содержит информацию о товаре: название, описание, цену, категорию, бренд и количество.
  *
+ * <p>Товар неизменяем: один и тот же экземпляр хранится в кэше и без копирования
+ * передается всем читающим потокам. Измененная версия создается через toBuilder()
+ * или методы with*, например при присвоении идентификатора или обновлении товара.</p>
+ *
  * @author idvavraz
- * @version 2.0
+ * @version 3.0
  */
-@Data
-@Builder
-@NoArgsConstructor
+@Value
+@With
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @ToString
@@ -69,6 +73,7 @@ public class Product implements Serializable {
      */
     public Product(String name, String description, BigDecimal price,
                    String category, String brand, int stockQuantity) {
+        this.id = null;
         this.name = name;
         this.description = description;
         this.price = price;
@@ -0,0 +1,84 @@
+package org.idvairaz.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Изменение товара, о котором оповещаются другие экземпляры приложения
+ * для сброса их локальных кэшей. Прежние категория и бренд позволяют убрать товар
+ * из закэшированных списков, даже если прежней версии товара нет в локальном кэше.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChange {
+
+    /** Идентификатор товара */
+    private Long id;
+
+    /** Признак удаления товара */
+    private boolean deleted;
+
+    /** Категория до изменения или null если неизвестна (товар создан или не был в кэше) */
+    private String oldCategory;
+
+    /** Категория после изменения или null при удалении */
+    private String newCategory;
+
+    /** Бренд до изменения или null если неизвестен */
+    private String oldBrand;
+
+    /** Бренд после изменения или null при удалении */
+    private String newBrand;
+
+    /**
+     * Создает описание сохранения товара.
+     *
+     * @param previous прежняя версия товара или null если она неизвестна
+     * @param saved сохраненная версия товара
+     * @return изменение товара
+     */
+    public static ProductChange saved(Product previous, Product saved) {
+        return ProductChange.builder()
+                .id(saved.getId())
+                .oldCategory(previous != null ? previous.getCategory() : null)
+                .newCategory(saved.getCategory())
+                .oldBrand(previous != null ? previous.getBrand() : null)
+                .newBrand(saved.getBrand())
+                .build();
+    }
+
+    /**
+     * Создает описание удаления товара.
+     *
+     * @param id идентификатор удаленного товара
+     * @param previous удаленная версия товара или null если она неизвестна
+     * @return изменение товара
+     */
+    public static ProductChange deleted(Long id, Product previous) {
+        return ProductChange.builder()
+                .id(id)
+                .deleted(true)
+                .oldCategory(previous != null ? previous.getCategory() : null)
+                .oldBrand(previous != null ? previous.getBrand() : null)
+                .build();
+    }
+
+    /**
+     * Возвращает прежнюю версию товара с известными полями (ID, категория, бренд).
+     *
+     * @return частичная прежняя версия или null если прежние категория и бренд неизвестны
+     */
+    public Product toPreviousVersion() {
+        if (oldCategory == null && oldBrand == null) {
+            return null;
+        }
+        return Product.builder().id(id).category(oldCategory).brand(oldBrand).build();
+    }
+}
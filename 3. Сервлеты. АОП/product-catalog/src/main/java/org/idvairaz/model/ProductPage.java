@@ -0,0 +1,51 @@
+package org.idvairaz.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница товаров при постраничной выборке по ключу (keyset pagination).
+ * Содержит товары, упорядоченные по идентификатору (для результатов поиска - по релевантности),
+ * и идентификатор последнего товара, после которого начинается следующая страница.
+ * Для результатов поиска страница также содержит релевантность этого товара: следующая
+ * страница начинается после пары (релевантность, идентификатор).
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPage {
+
+    /** Товары текущей страницы в порядке выборки */
+    private List<Product> items;
+
+    /** Идентификатор последнего товара страницы или null если страница последняя */
+    private Long nextAfterId;
+
+    /** Релевантность последнего товара страницы результатов поиска или null для других страниц */
+    private Float nextAfterRank;
+
+    /**
+     * Создает страницу товаров, упорядоченных по идентификатору.
+     *
+     * @param items товары страницы
+     * @param nextAfterId идентификатор последнего товара или null если страница последняя
+     */
+    public ProductPage(List<Product> items, Long nextAfterId) {
+        this(items, nextAfterId, null);
+    }
+
+    /**
+     * Проверяет, есть ли следующая страница.
+     *
+     * @return true если после текущей страницы есть еще товары
+     */
+    public boolean hasNext() {
+        return nextAfterId != null;
+    }
+}
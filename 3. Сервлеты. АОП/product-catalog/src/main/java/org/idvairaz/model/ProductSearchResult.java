@@ -0,0 +1,25 @@
+package org.idvairaz.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Порция результатов полнотекстового поиска: найденные товары по убыванию релевантности
+ * и релевантность (ts_rank) каждого из них в том же порядке.
+ * Релевантность последнего товара страницы входит в курсор следующей страницы.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@Value
+@AllArgsConstructor
+public class ProductSearchResult {
+
+    /** Найденные товары по убыванию релевантности */
+    List<Product> products;
+
+    /** Релевантность товаров в порядке products */
+    float[] ranks;
+}
@@ -1,5 +1,7 @@
 package org.idvairaz.repository;
 
+import org.idvairaz.model.AuditEntry;
+
 import java.util.List;
 
 /**
@@ -20,6 +22,13 @@ public interface AuditRepository {
      */
     void save(String username, String action, String details);
 
+    /**
+     * Сохраняет пакет записей аудита в базу данных одной транзакцией.
+     *
+     * @param entries записи аудита для сохранения
+     */
+    void saveAll(List<AuditEntry> entries);
+
     /**
      * Возвращает все записи аудита из базы данных.
      *
@@ -1,9 +1,12 @@
 package org.idvairaz.repository;
 
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductSearchResult;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс репозитория для работы с товарами.
@@ -23,6 +26,26 @@ public interface ProductRepository {
      */
     Product save(Product product);
 
+    /**
+     * Сохраняет пакет товаров в одной транзакции.
+     * Новым товарам (id = null) присваиваются идентификаторы, существующие обновляются.
+     * Если сохранить не удалось хотя бы один товар, не сохраняется ни один.
+     *
+     * @param products товары для сохранения
+     * @return сохраненные товары с присвоенными ID
+     */
+    List<Product> saveAll(List<Product> products);
+
+    /**
+     * Сохраняет и удаляет пакет товаров в одной транзакции.
+     * Если не удалась хотя бы одна операция, не применяется ни одна.
+     *
+     * @param toSave товары для сохранения (id = null - новые)
+     * @param deleteIds идентификаторы удаляемых товаров
+     * @return сохраненные товары с присвоенными ID в порядке переданных
+     */
+    List<Product> applyBatch(List<Product> toSave, Collection<Long> deleteIds);
+
     /**
      * Находит товар по идентификатору.
      *
@@ -31,6 +54,14 @@ public interface ProductRepository {
      */
     Optional<Product> findById(Long id);
 
+    /**
+     * Находит товары по списку идентификаторов.
+     *
+     * @param ids идентификаторы товаров
+     * @return список найденных товаров (отсутствующие идентификаторы пропускаются)
+     */
+    List<Product> findAllById(Collection<Long> ids);
+
     /**
      * Находит товар по точному совпадению названия.
      * Поиск выполняется без учета регистра.
@@ -54,6 +85,14 @@ public interface ProductRepository {
      */
     void delete(Long id);
 
+    /**
+     * Удаляет товары по списку идентификаторов.
+     *
+     * @param ids идентификаторы товаров для удаления
+     * @return количество удаленных товаров
+     */
+    int deleteAll(Collection<Long> ids);
+
     /**
      * Находит все товары указанной категории.
      *
@@ -70,6 +109,83 @@ public interface ProductRepository {
      */
     List<Product> findByBrand(String brand);
 
+    /**
+     * Передает все товары обработчику по одному, в порядке идентификаторов,
+     * не загружая весь каталог в память.
+     *
+     * @param action обработчик товара
+     */
+    void forEach(Consumer<? super Product> action);
+
+    /**
+     * Передает товары указанной категории обработчику по одному, в порядке названий.
+     *
+     * @param category категория для поиска
+     * @param action обработчик товара
+     */
+    void forEachByCategory(String category, Consumer<? super Product> action);
+
+    /**
+     * Передает товары указанного бренда обработчику по одному, в порядке названий.
+     *
+     * @param brand бренд для поиска
+     * @param action обработчик товара
+     */
+    void forEachByBrand(String brand, Consumer<? super Product> action);
+
+    /**
+     * Возвращает порцию товаров, найденных полнотекстовым поиском, по убыванию релевантности.
+     *
+     * @param query поисковый запрос
+     * @param afterRank релевантность последнего товара предыдущей порции (null - с начала)
+     * @param afterId идентификатор последнего товара предыдущей порции (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return найденные товары и их релевантность
+     */
+    ProductSearchResult search(String query, Float afterRank, Long afterId, int limit);
+
+    /**
+     * Находит товары с названиями, похожими на указанное (с учетом опечаток).
+     *
+     * @param name название товара, возможно с опечатками
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию сходства названия
+     */
+    List<Product> findSimilarByName(String name, int limit);
+
+    /**
+     * Возвращает порцию товаров с идентификатором больше указанного.
+     * Товары упорядочены по идентификатору, что позволяет листать каталог
+     * по ключу с постоянной стоимостью запроса на страницу.
+     *
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров, упорядоченный по идентификатору
+     */
+    List<Product> findAllAfter(Long afterId, int limit);
+
+    /**
+     * Возвращает порцию товаров указанной категории с идентификатором больше указанного.
+     * Поиск выполняется без учета регистра, товары упорядочены по идентификатору.
+     *
+     * @param category категория для поиска
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров категории, упорядоченный по идентификатору
+     */
+    List<Product> findByCategoryAfter(String category, Long afterId, int limit);
+
+    /**
+     * Возвращает порцию товаров указанного бренда с идентификатором больше указанного.
+     * Поиск выполняется без учета регистра, товары упорядочены по идентификатору.
+     *
+     * @param brand бренд для поиска
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров бренда, упорядоченный по идентификатору
+     */
+    List<Product> findByBrandAfter(String brand, Long afterId, int limit);
+
     /**
      * Возвращает общее количество товаров в каталоге.
      *
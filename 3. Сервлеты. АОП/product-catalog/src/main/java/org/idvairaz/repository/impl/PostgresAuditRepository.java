@@ -1,6 +1,7 @@
 package org.idvairaz.repository.impl;
 
 import org.idvairaz.config.DatabaseConfig;
+import org.idvairaz.model.AuditEntry;
 import org.idvairaz.repository.AuditRepository;
 
 import java.sql.Connection;
@@ -23,6 +24,9 @@ public class PostgresAuditRepository implements AuditRepository {
     /** Имя схемы базы данных для таблиц аудита */
     private final String auditSchema = DatabaseConfig.getAuditSchema();
 
+    /** Распределитель идентификаторов записей аудита блоками из sequence audit_log_seq */
+    private final SequenceIdAllocator idAllocator = SequenceIdAllocator.forSequence(auditSchema, "audit_log_seq");
+
     /**
      * Сохраняет запись аудита в таблицу audit.logs.
      * Автоматически устанавливает временную метку создания.
@@ -37,7 +41,7 @@ public class PostgresAuditRepository implements AuditRepository {
         String sql = "INSERT INTO " + auditSchema + ".logs (id, username, action, details, created_at) VALUES (?, ?, ?, ?, ?)";
 
         try (Connection conn = DatabaseConfig.getConnection()) {
-            long nextId = getNextIdFromSequence(conn);
+            long nextId = idAllocator.nextId(conn);
 
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setLong(1, nextId);
@@ -53,6 +57,50 @@ public class PostgresAuditRepository implements AuditRepository {
         }
     }
 
+    /**
+     * Сохраняет пакет записей аудита одним JDBC batch в рамках одной транзакции.
+     * Идентификаторы выделяются из блоков sequence audit_log_seq, поэтому
+     * отдельный запрос к sequence для каждой записи не выполняется.
+     *
+     * @param entries записи аудита для сохранения
+     * @throws RuntimeException если произошла ошибка при сохранении пакета
+     */
+    @Override
+    public void saveAll(List<AuditEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO " + auditSchema + ".logs (id, username, action, details, created_at) "
+                + "VALUES (?, ?, ?, ?, ?)";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+
+            long[] ids = idAllocator.nextIds(conn, entries.size());
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < entries.size(); i++) {
+                    AuditEntry entry = entries.get(i);
+                    stmt.setLong(1, ids[i]);
+                    stmt.setString(2, entry.getUsername());
+                    stmt.setString(3, entry.getAction());
+                    stmt.setString(4, entry.getDetails());
+                    stmt.setTimestamp(5, Timestamp.valueOf(entry.getCreatedAt()));
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка пакетного сохранения записей аудита (" + entries.size() + " шт.)", e);
+        }
+    }
+
     /**
      * Возвращает все записи аудита, отсортированные по дате создания (новые сначала).
      * Форматирует записи в читаемый вид.
@@ -100,23 +148,4 @@ public class PostgresAuditRepository implements AuditRepository {
             throw new RuntimeException("Ошибка очистки журнала аудита", e);
         }
     }
-
-    /**
-     * Получает следующий идентификатор из sequence audit_log_seq.
-     *
-     * @param conn активное соединение с базой данных
-     * @return следующий уникальный идентификатор из sequence
-     * @throws SQLException если произошла ошибка при обращении к sequence
-     */
-    private long getNextIdFromSequence(Connection conn) throws SQLException {
-        String sequenceSql = "SELECT nextval('audit.audit_log_seq')";
-        try (PreparedStatement seqStmt = conn.prepareStatement(sequenceSql);
-             ResultSet rs = seqStmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getLong(1);
-            } else {
-                throw new SQLException("Не удалось получить значение из sequence audit_log_seq");
-            }
-        }
-    }
 }
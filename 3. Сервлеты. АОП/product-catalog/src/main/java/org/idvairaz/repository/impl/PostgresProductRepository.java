@@ -2,7 +2,10 @@ package org.idvairaz.repository.impl;
 
 import org.idvairaz.config.DatabaseConfig;
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductSearchResult;
 import org.idvairaz.repository.ProductRepository;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,14 +13,30 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Реализация репозитория товаров для работы с PostgreSQL.
  * Обеспечивает сохранение, поиск и управление товарами в базе данных.
  * Использует JDBC для прямого взаимодействия с PostgreSQL.
- * Идентификаторы товаров генерируются через sequence product_seq.
+ * Идентификаторы товаров выделяются блоками из sequence product_seq через SequenceIdAllocator.
+ *
+ * <p>Полные выборки читаются порциями, а не всем результатом целиком. Весь каталог
+ * выгружается выборкой по ключу (findAllAfter): соединение занято только на время чтения
+ * порции, поэтому медленный получатель выгрузки не удерживает соединение пула.
+ * Категория и бренд читаются потоково: запрос выполняется в транзакции с заданным размером
+ * выборки, и драйвер получает строки через курсор. Методы forEach передают товары
+ * обработчику по мере чтения; списочные методы построены на них же.</p>
+ *
+ * <p>Названия товаров уникальны без учета регистра (уникальный индекс idx_products_lower_name):
+ * нарушение индекса при сохранении превращается в IllegalArgumentException.</p>
+ *
+ * <p>Запросы перечисляют столбцы товара явно: столбец search_vector для полнотекстового
+ * поиска заполняет триггер базы данных, в приложение он не передается.</p>
  *
  *  @author idvavraz
  *  @version 1.0
@@ -27,13 +46,33 @@ public class PostgresProductRepository implements ProductRepository {
     /** Имя схемы базы данных, используемой приложением */
     private final String schema = DatabaseConfig.getSchema();
 
+    /** Распределитель идентификаторов товаров блоками из sequence product_seq */
+    private final SequenceIdAllocator idAllocator = SequenceIdAllocator.forSequence(schema, "product_seq");
+
+    /** Количество строк в одной порции при потоковом чтении и выгрузке каталога */
+    private final int streamFetchSize = Integer.parseInt(DatabaseConfig.getProperty("db.stream.fetchSize", "500"));
+
+    /** Столбцы товара, читаемые в Product */
+    private static final String COLUMNS =
+            "id, name, description, price, category, brand, stock_quantity, created_at, updated_at";
+
+    /** Конфигурация полнотекстового поиска, по которой построен столбец search_vector */
+    private static final String SEARCH_CONFIG = "russian";
+
+    /** Уникальный индекс названий товаров без учета регистра */
+    private static final String NAME_INDEX = "idx_products_lower_name";
+
+    /** SQLSTATE нарушения уникальности */
+    private static final String UNIQUE_VIOLATION = "23505";
+
     /**
      * Сохраняет или обновляет товар в базе данных.
-     * Для новых товаров (id = null) генерирует идентификатор через sequence product_seq.
+     * Для новых товаров (id = null) выделяет идентификатор из блока sequence product_seq.
      * Для существующих товаров обновляет все поля, кроме created_at.
      *
      * @param product товар для сохранения или обновления
      * @return сохраненный товар с присвоенным ID (для новых) или обновленными данными
+     * @throws IllegalArgumentException если товар с таким названием (без учета регистра) уже существует
      * @throws RuntimeException если произошла ошибка SQL или товар для обновления не найден
      */
      @Override
@@ -43,8 +82,8 @@ public class PostgresProductRepository implements ProductRepository {
 
         try (Connection conn = DatabaseConfig.getConnection()) {
             if (isNew) {
-                long newId = getNextIdFromSequence(conn);
-                product.setId(newId);
+                long newId = idAllocator.nextId(conn);
+                product = product.withId(newId);
 
                 sql = "INSERT INTO " + schema + ".products (id, name, description, price, category, brand, stock_quantity, created_at, updated_at) " +
                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
@@ -78,7 +117,7 @@ public class PostgresProductRepository implements ProductRepository {
                 int affectedRows = stmt.executeUpdate();
 
                 if (isNew) {
-                    System.out.println("Создан товар с ID: " + product.getId() + " (из sequence)");
+                    System.out.println("Создан товар с ID: " + product.getId());
                 } else if (affectedRows == 0) {
                     throw new RuntimeException("Товар с ID " + product.getId() + " не найден для обновления");
                 }
@@ -87,29 +126,165 @@ public class PostgresProductRepository implements ProductRepository {
             }
 
         } catch (SQLException e) {
+            if (findNameConflict(e) != null) {
+                throw new IllegalArgumentException("Товар с именем '" + product.getName() + "' уже существует", e);
+            }
             throw new RuntimeException("Ошибка сохранения товара '" + product.getName() + "'", e);
         }
     }
 
     /**
-     * Получает следующий идентификатор из sequence product_seq.
-     * Используется для генерации уникальных ID новых товаров.
+     * Сохраняет пакет товаров в одной транзакции.
+     * При любой ошибке транзакция откатывается.
      *
-     * @param conn активное соединение с базой данных
-     * @return следующий уникальный идентификатор из sequence
-     * @throws SQLException если произошла ошибка при обращении к sequence
+     * @param products товары для сохранения или обновления
+     * @return сохраненные товары с присвоенными ID в порядке переданных
+     * @throws IllegalArgumentException если название товара (без учета регистра) уже занято
+     * @throws RuntimeException если произошла ошибка SQL или товар для обновления не найден
+     * @see #applyBatch(List, Collection)
+     */
+    @Override
+    public List<Product> saveAll(List<Product> products) {
+        return applyBatch(products, List.of());
+    }
+
+    /**
+     * Сохраняет и удаляет пакет товаров в одной транзакции на одном соединении.
+     * Новые товары (id = null) вставляются одним JDBC-пакетом, идентификаторы для них
+     * выделяются блоками из sequence product_seq. Существующие товары
+     * обновляются вторым JDBC-пакетом, удаляемые удаляются одним запросом.
+     * При включенном в драйвере reWriteBatchedInserts пакет вставок отправляется
+     * на сервер как многострочный INSERT. При любой ошибке транзакция откатывается
+     * и не применяется ни одна операция пакета.
      *
+     * @param toSave товары для сохранения или обновления
+     * @param deleteIds идентификаторы удаляемых товаров
+     * @return сохраненные товары с присвоенными ID в порядке переданных
+     * @throws IllegalArgumentException если название товара (без учета регистра) уже занято
+     * @throws RuntimeException если произошла ошибка SQL или товар для обновления не найден
      */
-    private long getNextIdFromSequence(Connection conn) throws SQLException {
-        String sequenceSql = "SELECT nextval('" + schema + ".product_seq')";
-        try (PreparedStatement seqStmt = conn.prepareStatement(sequenceSql);
-             ResultSet rs = seqStmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getLong(1);
+    @Override
+    public List<Product> applyBatch(List<Product> toSave, Collection<Long> deleteIds) {
+        if (toSave.isEmpty() && deleteIds.isEmpty()) {
+            return toSave;
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Product> saved = saveBatch(conn, toSave);
+                int deleted = deleteBatch(conn, deleteIds);
+
+                conn.commit();
+                System.out.println("Пакетно сохранено товаров: " + toSave.size() + ", удалено: " + deleted);
+                return saved;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            ServerErrorMessage conflict = findNameConflict(e);
+            if (conflict != null) {
+                throw new IllegalArgumentException("Товар с таким именем уже существует: " + conflict.getDetail(), e);
+            }
+            throw new RuntimeException("Ошибка пакетной обработки товаров (сохранение: " + toSave.size()
+                    + " шт., удаление: " + deleteIds.size() + " шт.)", e);
+        }
+    }
+
+    /**
+     * Вставляет новые и обновляет существующие товары JDBC-пакетами в текущей транзакции соединения.
+     *
+     * @param conn соединение с открытой транзакцией
+     * @param products товары для сохранения или обновления
+     * @return сохраненные товары с присвоенными ID в порядке переданных
+     * @throws SQLException если произошла ошибка SQL
+     * @throws RuntimeException если товар для обновления не найден
+     */
+    private List<Product> saveBatch(Connection conn, List<Product> products) throws SQLException {
+        List<Integer> newPositions = new ArrayList<>();
+        List<Product> existingProducts = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i).getId() == null) {
+                newPositions.add(i);
             } else {
-                throw new SQLException("Не удалось получить значение из sequence product_seq");
+                existingProducts.add(products.get(i));
+            }
+        }
+        List<Product> saved = new ArrayList<>(products);
+
+        String insertSql = "INSERT INTO " + schema + ".products (id, name, description, price, category, brand, stock_quantity, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String updateSql = "UPDATE " + schema + ".products SET name = ?, description = ?, price = ?, category = ?, brand = ?, stock_quantity = ?, updated_at = ? " +
+                "WHERE id = ?";
+
+        if (!newPositions.isEmpty()) {
+            long[] ids = idAllocator.nextIds(conn, newPositions.size());
+            try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                for (int i = 0; i < newPositions.size(); i++) {
+                    int position = newPositions.get(i);
+                    Product product = products.get(position).withId(ids[i]);
+                    saved.set(position, product);
+                    stmt.setLong(1, product.getId());
+                    stmt.setString(2, product.getName());
+                    stmt.setString(3, product.getDescription());
+                    stmt.setBigDecimal(4, product.getPrice());
+                    stmt.setString(5, product.getCategory());
+                    stmt.setString(6, product.getBrand());
+                    stmt.setInt(7, product.getStockQuantity());
+                    stmt.setTimestamp(8, Timestamp.valueOf(product.getCreatedAt()));
+                    stmt.setTimestamp(9, Timestamp.valueOf(product.getUpdatedAt()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        if (!existingProducts.isEmpty()) {
+            try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                for (Product product : existingProducts) {
+                    stmt.setString(1, product.getName());
+                    stmt.setString(2, product.getDescription());
+                    stmt.setBigDecimal(3, product.getPrice());
+                    stmt.setString(4, product.getCategory());
+                    stmt.setString(5, product.getBrand());
+                    stmt.setInt(6, product.getStockQuantity());
+                    stmt.setTimestamp(7, Timestamp.valueOf(product.getUpdatedAt()));
+                    stmt.setLong(8, product.getId());
+                    stmt.addBatch();
+                }
+                int[] affectedRows = stmt.executeBatch();
+                for (int i = 0; i < affectedRows.length; i++) {
+                    if (affectedRows[i] == 0) {
+                        throw new RuntimeException("Товар с ID " + existingProducts.get(i).getId() + " не найден для обновления");
+                    }
+                }
             }
         }
+        return saved;
+    }
+
+    /**
+     * Удаляет товары по списку идентификаторов одним запросом на переданном соединении.
+     *
+     * @param conn соединение
+     * @param ids идентификаторы товаров для удаления
+     * @return количество удаленных товаров
+     * @throws SQLException если произошла ошибка SQL
+     */
+    private int deleteBatch(Connection conn, Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "DELETE FROM " + schema + ".products WHERE id = ANY(?)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            return stmt.executeUpdate();
+        }
     }
 
     /**
@@ -121,7 +296,7 @@ public class PostgresProductRepository implements ProductRepository {
      */
     @Override
     public Optional<Product> findById(Long id) {
-        String sql = "SELECT * FROM " + schema + ".products WHERE id = ?";
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE id = ?";
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -140,6 +315,38 @@ public class PostgresProductRepository implements ProductRepository {
         return Optional.empty();
     }
 
+    /**
+     * Находит товары по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы товаров
+     * @return список найденных товаров, упорядоченный по идентификатору
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public List<Product> findAllById(Collection<Long> ids) {
+        List<Product> products = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE id = ANY(?) ORDER BY id";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapResultSetToProduct(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка поиска товаров по списку ID", e);
+        }
+
+        return products;
+    }
+
     /**
      * Находит товар по точному совпадению названия без учета регистра.
      *
@@ -149,7 +356,7 @@ public class PostgresProductRepository implements ProductRepository {
      */
     @Override
     public Optional<Product> findByName(String name) {
-        String sql = "SELECT * FROM " + schema + ".products WHERE LOWER(name) = LOWER(?)";
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE LOWER(name) = LOWER(?)";
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -178,21 +385,32 @@ public class PostgresProductRepository implements ProductRepository {
     @Override
     public List<Product> findAll() {
         List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM " + schema + ".products ORDER BY id";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        forEach(products::add);
+        return products;
+    }
 
-            while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+    /**
+     * Передает все товары обработчику по одному в порядке их идентификаторов.
+     * Товары читаются порциями по db.stream.fetchSize выборкой по ключу, поэтому память
+     * не зависит от размера каталога. Соединение возвращается в пул до передачи порции
+     * обработчику: медленная запись ответа клиенту не удерживает соединение и транзакцию.
+     * Выгрузка не является снимком каталога: товар, измененный во время выгрузки,
+     * попадает в нее в состоянии на момент чтения своей порции.
+     *
+     * @param action обработчик товара
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        Long afterId = null;
+        List<Product> chunk;
+        do {
+            chunk = findAllAfter(afterId, streamFetchSize);
+            chunk.forEach(action);
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
             }
-
-        } catch (SQLException e) {
-            throw new RuntimeException("Ошибка получения всех товаров", e);
-        }
-
-        return products;
+        } while (chunk.size() == streamFetchSize);
     }
 
     /**
@@ -224,6 +442,29 @@ public class PostgresProductRepository implements ProductRepository {
         }
     }
 
+    /**
+     * Удаляет товары по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы товаров для удаления
+     * @return количество удаленных товаров
+     * @throws RuntimeException если произошла ошибка при выполнении SQL запроса
+     */
+    @Override
+    public int deleteAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            int affectedRows = deleteBatch(conn, ids);
+            System.out.println("Пакетно удалено товаров: " + affectedRows);
+            return affectedRows;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка пакетного удаления товаров (" + ids.size() + " шт.)", e);
+        }
+    }
+
     /**
      * Находит все товары указанной категории.
      * Поиск выполняется без учета регистра.
@@ -235,50 +476,275 @@ public class PostgresProductRepository implements ProductRepository {
     @Override
     public List<Product> findByCategory(String category) {
         List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM " + schema + ".products WHERE LOWER(category) = LOWER(?) ORDER BY name";
+        forEachByCategory(category, products::add);
+        return products;
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Передает товары указанной категории обработчику по одному в порядке названий.
+     * Поиск выполняется без учета регистра.
+     *
+     * @param category категория для поиска
+     * @param action обработчик товара
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public void forEachByCategory(String category, Consumer<? super Product> action) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE LOWER(category) = LOWER(?) ORDER BY name";
+        stream(sql, category, action, "Ошибка поиска товаров по категории: " + category);
+    }
 
-            stmt.setString(1, category);
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * Находит все товары указанного бренда.
+     * Поиск выполняется без учета регистра.
+     *
+     * @param brand бренд для поиска
+     * @return список товаров указанного бренда, может быть пустым
+     * @throws RuntimeException если произошла ошибка при выполнении SQL запроса
+     */
+    @Override
+    public List<Product> findByBrand(String brand) {
+        List<Product> products = new ArrayList<>();
+        forEachByBrand(brand, products::add);
+        return products;
+    }
+
+    /**
+     * Передает товары указанного бренда обработчику по одному в порядке названий.
+     * Поиск выполняется без учета регистра.
+     *
+     * @param brand бренд для поиска
+     * @param action обработчик товара
+     * @throws RuntimeException если произошла ошибка при выполнении SQL запроса
+     */
+    @Override
+    public void forEachByBrand(String brand, Consumer<? super Product> action) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE LOWER(brand) = LOWER(?) ORDER BY name";
+        stream(sql, brand, action, "Ошибка поиска товаров по бренду: " + brand);
+    }
 
-            while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+    /**
+     * Выполняет запрос и передает товары обработчику по мере чтения.
+     * PostgreSQL драйвер читает результат порциями через курсор только вне режима autocommit
+     * и при ненулевом размере выборки, поэтому запрос выполняется в отдельной транзакции,
+     * которая завершается после обработки последней строки. Соединение занято из пула
+     * на все время обработки, поэтому обработчик не должен выполнять долгих операций
+     * (в том числе записи ответа клиенту): выборки категорий и брендов собираются в список.
+     *
+     * @param sql SQL запрос с одним параметром фильтра или без параметров
+     * @param filterValue значение фильтра или null если запрос без фильтра
+     * @param action обработчик товара
+     * @param errorMessage сообщение об ошибке при сбое запроса
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    private void stream(String sql, String filterValue, Consumer<? super Product> action, String errorMessage) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                stmt.setFetchSize(streamFetchSize);
+                if (filterValue != null) {
+                    stmt.setString(1, filterValue);
+                }
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(mapResultSetToProduct(rs));
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
 
         } catch (SQLException e) {
-            throw new RuntimeException("Ошибка поиска товаров по категории: " + category, e);
+            throw new RuntimeException(errorMessage, e);
         }
+    }
 
-        return products;
+    /**
+     * Возвращает порцию товаров с идентификатором больше указанного.
+     * Использует выборку по ключу (WHERE id &gt; ? ORDER BY id LIMIT ?) по первичному ключу,
+     * поэтому стоимость запроса не зависит от номера страницы.
+     *
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров, упорядоченный по идентификатору
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public List<Product> findAllAfter(Long afterId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE id > ? ORDER BY id LIMIT ?";
+        return findPage(sql, null, afterId, limit, "Ошибка постраничного получения товаров");
     }
 
     /**
-     * Находит все товары указанного бренда.
+     * Возвращает порцию товаров указанной категории с идентификатором больше указанного.
+     * Поиск выполняется без учета регистра.
+     *
+     * @param category категория для поиска
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров категории, упорядоченный по идентификатору
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public List<Product> findByCategoryAfter(String category, Long afterId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE LOWER(category) = LOWER(?) AND id > ? "
+                + "ORDER BY id LIMIT ?";
+        return findPage(sql, category, afterId, limit, "Ошибка постраничного поиска товаров по категории: " + category);
+    }
+
+    /**
+     * Возвращает порцию товаров указанного бренда с идентификатором больше указанного.
      * Поиск выполняется без учета регистра.
      *
      * @param brand бренд для поиска
-     * @return список товаров указанного бренда, может быть пустым
-     * @throws RuntimeException если произошла ошибка при выполнении SQL запроса
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return список товаров бренда, упорядоченный по идентификатору
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
      */
     @Override
-    public List<Product> findByBrand(String brand) {
-        List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM " + schema + ".products WHERE LOWER(brand) = LOWER(?) ORDER BY name";
+    public List<Product> findByBrandAfter(String brand, Long afterId, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE LOWER(brand) = LOWER(?) AND id > ? "
+                + "ORDER BY id LIMIT ?";
+        return findPage(sql, brand, afterId, limit, "Ошибка постраничного поиска товаров по бренду: " + brand);
+    }
+
+    /**
+     * Возвращает порцию товаров, найденных полнотекстовым поиском, по убыванию релевантности.
+     * Запрос разбирается websearch_to_tsquery (слова, "фразы", OR, -исключение) и ищется
+     * по GIN индексу столбца search_vector; релевантность - ts_rank с весами: название,
+     * затем бренд и категория, затем описание.
+     *
+     * <p>Выборка по ключу: следующая порция начинается после пары (afterRank, afterId)
+     * в порядке (релевантность по убыванию, id по возрастанию). Релевантность последнего
+     * товара берется из курсора, а не вычисляется заново по его строке, поэтому удаление
+     * или изменение этого товара не сдвигает и не обрывает выдачу. ts_rank имеет тип real,
+     * и значение из курсора сравнивается с ним точно.</p>
+     *
+     * @param query поисковый запрос
+     * @param afterRank релевантность последнего товара предыдущей порции (null - с начала)
+     * @param afterId идентификатор последнего товара предыдущей порции (null - с начала)
+     * @param limit максимальное количество товаров
+     * @return найденные товары по убыванию релевантности и их релевантность
+     * @throws IllegalArgumentException если задан только один из afterRank и afterId
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public ProductSearchResult search(String query, Float afterRank, Long afterId, int limit) {
+        if ((afterRank == null) != (afterId == null)) {
+            throw new IllegalArgumentException("Search cursor requires both rank and id");
+        }
+        String sql = "SELECT " + COLUMNS + ", ts_rank(p.search_vector, q) AS search_rank FROM "
+                + schema + ".products p, websearch_to_tsquery('" + SEARCH_CONFIG + "', ?) q "
+                + "WHERE p.search_vector @@ q "
+                + (afterId != null ? "AND (ts_rank(p.search_vector, q), -p.id) < (?, ?) " : "")
+                + "ORDER BY search_rank DESC, p.id LIMIT ?";
+        List<Product> products = new ArrayList<>(limit);
+        float[] ranks = new float[limit];
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setString(1, brand);
-            ResultSet rs = stmt.executeQuery();
+            int index = 1;
+            stmt.setString(index++, query);
+            if (afterId != null) {
+                stmt.setFloat(index++, afterRank);
+                stmt.setLong(index++, -afterId);
+            }
+            stmt.setInt(index, limit);
 
-            while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ranks[products.size()] = rs.getFloat("search_rank");
+                    products.add(mapResultSetToProduct(rs));
+                }
             }
 
         } catch (SQLException e) {
-            throw new RuntimeException("Ошибка поиска товаров по бренду: " + brand, e);
+            throw new RuntimeException("Ошибка полнотекстового поиска товаров: " + query, e);
+        }
+
+        return new ProductSearchResult(products, Arrays.copyOf(ranks, products.size()));
+    }
+
+    /**
+     * Находит товары с названиями, похожими на указанное, по сходству триграмм (pg_trgm).
+     * Оператор % отбирает кандидатов по GIN индексу idx_products_name_trgm с порогом
+     * pg_trgm.similarity_threshold сервера (по умолчанию 0.3), затем лучшие limit из них
+     * упорядочиваются по similarity(). Регистр букв не учитывается.
+     *
+     * @param name название товара, возможно с опечатками
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию сходства названия, может быть пустым
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    @Override
+    public List<Product> findSimilarByName(String name, int limit) {
+        String sql = "SELECT " + COLUMNS + " FROM " + schema + ".products WHERE name % ? "
+                + "ORDER BY similarity(name, ?) DESC, id LIMIT ?";
+        List<Product> products = new ArrayList<>(limit);
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, name);
+            stmt.setString(2, name);
+            stmt.setInt(3, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapResultSetToProduct(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка поиска товаров по похожему имени: " + name, e);
+        }
+
+        return products;
+    }
+
+    /**
+     * Выполняет постраничный запрос по ключу.
+     * Параметры запроса: [значение фильтра], идентификатор начала выборки, размер страницы.
+     *
+     * @param sql SQL запрос с параметрами фильтра (необязательно), id и limit
+     * @param filterValue значение фильтра или null если запрос без фильтра
+     * @param afterId идентификатор, после которого начинается выборка (null - с начала)
+     * @param limit максимальное количество товаров
+     * @param errorMessage сообщение об ошибке при сбое запроса
+     * @return список товаров страницы
+     * @throws RuntimeException если произошла ошибка при выполнении запроса
+     */
+    private List<Product> findPage(String sql, String filterValue, Long afterId, int limit, String errorMessage) {
+        List<Product> products = new ArrayList<>(limit);
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            if (filterValue != null) {
+                stmt.setString(index++, filterValue);
+            }
+            stmt.setLong(index++, afterId != null ? afterId : 0L);
+            stmt.setInt(index, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(mapResultSetToProduct(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException(errorMessage, e);
         }
 
         return products;
@@ -359,6 +825,24 @@ public class PostgresProductRepository implements ProductRepository {
         return 0;
     }
 
+    /**
+     * Ищет среди ошибки и следующих за ней (для JDBC-пакетов) нарушение уникальности названия товара.
+     *
+     * @param e ошибка SQL
+     * @return сообщение сервера о нарушении или null если ошибка вызвана другой причиной
+     */
+    private static ServerErrorMessage findNameConflict(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (UNIQUE_VIOLATION.equals(current.getSQLState()) && current instanceof PSQLException psqlException) {
+                ServerErrorMessage message = psqlException.getServerErrorMessage();
+                if (message != null && NAME_INDEX.equals(message.getConstraint())) {
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Преобразует ResultSet в объект Product.
      * Вспомогательный метод для маппинга данных из базы в Java-объект.
@@ -371,16 +855,16 @@ public class PostgresProductRepository implements ProductRepository {
      * убедиться что rs.next() был вызван и вернул true
      */
     private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
-        Product product = new Product();
-        product.setId(rs.getLong("id"));
-        product.setName(rs.getString("name"));
-        product.setDescription(rs.getString("description"));
-        product.setPrice(rs.getBigDecimal("price"));
-        product.setCategory(rs.getString("category"));
-        product.setBrand(rs.getString("brand"));
-        product.setStockQuantity(rs.getInt("stock_quantity"));
-        product.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-        product.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
-        return product;
+        return Product.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .price(rs.getBigDecimal("price"))
+                .category(rs.getString("category"))
+                .brand(rs.getString("brand"))
+                .stockQuantity(rs.getInt("stock_quantity"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .updatedAt(rs.getTimestamp("updated_at").toLocalDateTime())
+                .build();
     }
 }
@@ -25,9 +25,12 @@ public class PostgresUserRepository implements UserRepository {
     /** Имя схемы базы данных, используемой приложением */
     private final String schema = DatabaseConfig.getSchema();
 
+    /** Распределитель идентификаторов пользователей блоками из sequence user_seq */
+    private final SequenceIdAllocator idAllocator = SequenceIdAllocator.forSequence(schema, "user_seq");
+
     /**
      * Сохраняет или обновляет пользователя в базе данных.
-     * Для новых пользователей генерирует идентификатор через sequence user_seq.
+     * Для новых пользователей выделяет идентификатор из блока sequence user_seq.
      * Для существующих пользователей обновляет все поля.
      *
      * @param user пользователь для сохранения или обновления
@@ -35,7 +38,7 @@ public class PostgresUserRepository implements UserRepository {
      * @throws RuntimeException если произошла ошибка SQL или пользователь для обновления не найден
      *
      *  Для новых пользователей:
-     * 1. Получает следующий ID из sequence user_seq
+     * 1. Получает следующий ID из блока sequence user_seq (SequenceIdAllocator)
      * 2. Выполняет INSERT с указанием всех полей
      * 3. Возвращает пользователя без изменения объекта
      *
@@ -51,7 +54,7 @@ public class PostgresUserRepository implements UserRepository {
 
         try (Connection conn = DatabaseConfig.getConnection()) {
             if (isNew) {
-                long newId = getNextIdFromSequence(conn);
+                long newId = idAllocator.nextId(conn);
                 user.setId(newId);
 
                 sql = "INSERT INTO " + schema + ".users (id, username, password, role, is_logged_in) " +
@@ -325,30 +328,6 @@ public class PostgresUserRepository implements UserRepository {
         return 0;
     }
 
-    /**
-     * Получает следующий идентификатор из sequence user_seq.
-     * Используется для генерации уникальных ID новых пользователей.
-     *
-     * @param conn активное соединение с базой данных
-     * @return следующий уникальный идентификатор из sequence
-     * @throws SQLException если произошла ошибка при обращении к sequence
-     *
-     *  Sequence должна быть создана в той же схеме, что и таблица users
-     * @see #save(User)
-     */
-    private long getNextIdFromSequence(Connection conn) throws SQLException {
-        String sequenceSql = "SELECT nextval('" + schema + ".user_seq')";
-
-        try (PreparedStatement seqStmt = conn.prepareStatement(sequenceSql);
-             ResultSet rs = seqStmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getLong(1);
-            } else {
-                throw new SQLException("Не удалось получить значение из sequence user_seq");
-            }
-        }
-    }
-
     /**
      * Преобразует ResultSet в объект User.
      * Вспомогательный метод для маппинга данных из базы в Java-объект.
@@ -0,0 +1,247 @@
+package org.idvairaz.repository.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Распределитель идентификаторов блоками (hi/lo) поверх sequence PostgreSQL.
+ * Один вызов nextval резервирует за экземпляром приложения блок
+ * [значение, значение + INCREMENT), после чего идентификаторы выдаются из памяти
+ * атомарным счетчиком без обращения к базе данных.
+ *
+ * <p>Размер блока берется из INCREMENT самой sequence, поэтому блоки разных экземпляров
+ * приложения, работающих с одной базой, никогда не пересекаются. Если INCREMENT равен 1,
+ * распределитель вырождается в обычный nextval на каждый идентификатор.
+ * Неиспользованный остаток блока при остановке приложения теряется - в идентификаторах
+ * возможны пропуски, как и при обычной работе с sequence.</p>
+ *
+ * <p>Экземпляры разделяются между репозиториями: на каждую sequence приходится один распределитель.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class SequenceIdAllocator {
+
+    /** Распределители по полным именам sequence (schema.sequence) */
+    private static final Map<String, SequenceIdAllocator> ALLOCATORS = new ConcurrentHashMap<>();
+
+    /** Схема sequence */
+    private final String schemaName;
+
+    /** Имя sequence без схемы */
+    private final String sequenceName;
+
+    /** Текущий блок, из которого выдаются идентификаторы */
+    private volatile Block current = new Block(0, 0);
+
+    /** Размер блока (INCREMENT sequence), 0 - еще не прочитан из базы данных */
+    private volatile int blockSize;
+
+    /**
+     * Создает распределитель для указанной sequence.
+     *
+     * @param schemaName схема sequence
+     * @param sequenceName имя sequence без схемы
+     */
+    private SequenceIdAllocator(String schemaName, String sequenceName) {
+        this.schemaName = schemaName;
+        this.sequenceName = sequenceName;
+    }
+
+    /**
+     * Возвращает общий распределитель для sequence, создавая его при первом обращении.
+     *
+     * @param schemaName схема sequence
+     * @param sequenceName имя sequence без схемы
+     * @return распределитель идентификаторов
+     */
+    static SequenceIdAllocator forSequence(String schemaName, String sequenceName) {
+        return ALLOCATORS.computeIfAbsent(schemaName + "." + sequenceName,
+                key -> new SequenceIdAllocator(schemaName, sequenceName));
+    }
+
+    /**
+     * Выдает следующий идентификатор.
+     * Обращается к базе данных только когда текущий блок исчерпан.
+     *
+     * @param conn соединение для резервирования нового блока
+     * @return уникальный идентификатор
+     * @throws SQLException если не удалось зарезервировать блок
+     */
+    long nextId(Connection conn) throws SQLException {
+        while (true) {
+            Block block = current;
+            long id = block.take();
+            if (id != Block.NO_ID) {
+                return id;
+            }
+            refill(conn, block);
+        }
+    }
+
+    /**
+     * Выдает пакет идентификаторов.
+     * Сначала использует остаток текущего блока, недостающие блоки резервирует
+     * одним запросом к базе данных. Остаток последнего блока становится текущим.
+     *
+     * @param conn соединение для резервирования новых блоков
+     * @param count количество идентификаторов
+     * @return массив уникальных идентификаторов
+     * @throws SQLException если не удалось зарезервировать блоки
+     */
+    long[] nextIds(Connection conn, int count) throws SQLException {
+        long[] ids = new long[count];
+        int filled = 0;
+
+        Block block = current;
+        while (filled < count) {
+            long id = block.take();
+            if (id == Block.NO_ID) {
+                break;
+            }
+            ids[filled++] = id;
+        }
+
+        if (filled < count) {
+            synchronized (this) {
+                int size = getBlockSize(conn);
+                int blocks = (count - filled + size - 1) / size;
+
+                for (long start : reserveBlocks(conn, blocks)) {
+                    long end = start + size;
+                    long id = start;
+                    while (id < end && filled < count) {
+                        ids[filled++] = id++;
+                    }
+                    if (id < end && current.isExhausted()) {
+                        current = new Block(id, end);
+                    }
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Резервирует новый блок, если текущий блок все еще исчерпанный.
+     * Потоки, пришедшие за блоком одновременно, выполняют только одно резервирование.
+     *
+     * @param conn соединение с базой данных
+     * @param exhausted блок, который был исчерпан на момент вызова
+     * @throws SQLException если не удалось зарезервировать блок
+     */
+    private synchronized void refill(Connection conn, Block exhausted) throws SQLException {
+        if (current != exhausted) {
+            return;
+        }
+        int size = getBlockSize(conn);
+        long start = reserveBlocks(conn, 1)[0];
+        current = new Block(start, start + size);
+    }
+
+    /**
+     * Резервирует указанное количество блоков одним запросом к sequence.
+     *
+     * @param conn соединение с базой данных
+     * @param blocks количество блоков
+     * @return начальные значения зарезервированных блоков
+     * @throws SQLException если sequence вернула меньше значений, чем запрошено
+     */
+    private long[] reserveBlocks(Connection conn, int blocks) throws SQLException {
+        String sql = "SELECT nextval('" + schemaName + "." + sequenceName + "') FROM generate_series(1, ?)";
+        long[] starts = new long[blocks];
+        int reserved = 0;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, blocks);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next() && reserved < blocks) {
+                    starts[reserved++] = rs.getLong(1);
+                }
+            }
+        }
+
+        if (reserved != blocks) {
+            throw new SQLException("Не удалось получить значения из sequence " + sequenceName);
+        }
+        return starts;
+    }
+
+    /**
+     * Возвращает размер блока, при первом обращении читая INCREMENT sequence.
+     *
+     * @param conn соединение с базой данных
+     * @return размер блока
+     * @throws SQLException если sequence не найдена
+     */
+    private int getBlockSize(Connection conn) throws SQLException {
+        int size = blockSize;
+        if (size > 0) {
+            return size;
+        }
+
+        String sql = "SELECT increment_by FROM pg_sequences WHERE schemaname = ? AND sequencename = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, schemaName);
+            stmt.setString(2, sequenceName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Sequence " + schemaName + "." + sequenceName + " не найдена");
+                }
+                size = (int) Math.max(1, rs.getLong(1));
+            }
+        }
+
+        blockSize = size;
+        System.out.println("Идентификаторы " + sequenceName + " выделяются блоками по " + size);
+        return size;
+    }
+
+    /**
+     * Зарезервированный блок идентификаторов [next, end).
+     */
+    private static final class Block {
+
+        /** Признак исчерпанного блока */
+        static final long NO_ID = Long.MIN_VALUE;
+
+        /** Следующий свободный идентификатор блока */
+        private final AtomicLong next;
+
+        /** Граница блока (не входит в блок) */
+        private final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+
+        /**
+         * Забирает следующий идентификатор блока.
+         *
+         * @return идентификатор или NO_ID если блок исчерпан
+         */
+        long take() {
+            if (next.get() >= end) {
+                return NO_ID;
+            }
+            long id = next.getAndIncrement();
+            return id < end ? id : NO_ID;
+        }
+
+        /**
+         * Проверяет, исчерпан ли блок.
+         *
+         * @return true если в блоке не осталось идентификаторов
+         */
+        boolean isExhausted() {
+            return next.get() >= end;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.idvairaz.service;
+
+import org.idvairaz.model.AuditEntry;
+import org.idvairaz.repository.AuditRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Асинхронный пакетный писатель журнала аудита.
+ * Принимает записи в ограниченную очередь в памяти и сохраняет их в базу данных
+ * из отдельного фонового потока пакетами через {@link AuditRepository#saveAll(List)}.
+ * Пакет записывается, когда набрано flushSize записей или истек flushIntervalMillis.
+ *
+ * <p>Постановка в очередь и остановка взаимно исключены блокировкой stateLock: submit
+ * кладет запись в очередь под блокировкой чтения, а close снимает признак running под
+ * блокировкой записи. Поэтому после остановки в очередь не попадает ни одна запись,
+ * и дозапись очереди в close не теряет записи, поставленные одновременно с ней.
+ * Поток, ожидающий места по политике BLOCK, ждет порциями по BLOCK_RETRY_MILLIS
+ * и между ними отпускает блокировку, чтобы не задерживать остановку.</p>
+ *
+ * <p>Фоновый поток не прерывается при остановке: прерывание во время записи пакета
+ * оборвало бы ее и потеряло пакет. Поток ждет записи порциями не дольше STOP_CHECK_MILLIS
+ * и завершается, заметив снятие признака running, после записи собранного пакета.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class AsyncAuditWriter implements AutoCloseable {
+
+    /**
+     * Политика поведения при переполнении очереди.
+     */
+    public enum OverflowPolicy {
+        /** Поток запроса ждет освобождения места в очереди */
+        BLOCK,
+        /** Запись отбрасывается и учитывается в счетчике dropped */
+        DROP,
+        /** Запись сохраняется синхронно в потоке запроса, минуя очередь */
+        SPILL
+    }
+
+    /** Максимальное время ожидания дозаписи очереди при остановке, мс */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    /** Время одного ожидания места в очереди по политике BLOCK, мс */
+    private static final long BLOCK_RETRY_MILLIS = 100;
+
+    /** Максимальное время одного ожидания записи фоновым потоком, за которое он замечает остановку, мс */
+    private static final long STOP_CHECK_MILLIS = 100;
+
+    /** Репозиторий для пакетного сохранения записей */
+    private final AuditRepository auditRepository;
+
+    /** Ограниченная очередь записей, ожидающих сохранения */
+    private final BlockingQueue<AuditEntry> queue;
+
+    /** Максимальный размер одного пакета */
+    private final int flushSize;
+
+    /** Максимальное время нахождения записи в очереди до сброса, мс */
+    private final long flushIntervalMillis;
+
+    /** Политика поведения при переполнении очереди */
+    private final OverflowPolicy overflowPolicy;
+
+    /** Фоновый поток, выполняющий запись пакетов */
+    private final Thread writerThread;
+
+    /** Признак того, что писатель принимает новые записи */
+    private volatile boolean running = true;
+
+    /** Блокировка, исключающая постановку записей в очередь во время остановки */
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    /** Количество записей, поставленных в очередь */
+    private final LongAdder queued = new LongAdder();
+
+    /** Количество записей, сохраненных в базу данных */
+    private final LongAdder flushed = new LongAdder();
+
+    /** Количество отброшенных записей */
+    private final LongAdder dropped = new LongAdder();
+
+    /** Количество записей, сохраненных синхронно при переполнении */
+    private final LongAdder spilled = new LongAdder();
+
+    /** Количество записанных пакетов */
+    private final LongAdder batches = new LongAdder();
+
+    /** Количество записей, потерянных из-за ошибок записи пакета */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Создает и запускает асинхронный писатель журнала аудита.
+     *
+     * @param auditRepository репозиторий для пакетного сохранения записей
+     * @param queueCapacity емкость очереди
+     * @param flushSize максимальный размер пакета
+     * @param flushIntervalMillis максимальная задержка записи, мс
+     * @param overflowPolicy политика при переполнении очереди
+     * @throws IllegalArgumentException если параметры некорректны
+     */
+    public AsyncAuditWriter(AuditRepository auditRepository, int queueCapacity, int flushSize,
+                            long flushIntervalMillis, OverflowPolicy overflowPolicy) {
+        if (auditRepository == null || overflowPolicy == null) {
+            throw new IllegalArgumentException("Репозиторий аудита и политика переполнения обязательны");
+        }
+        if (queueCapacity <= 0 || flushSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Параметры очереди аудита должны быть положительными");
+        }
+
+        this.auditRepository = auditRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+
+        this.writerThread = new Thread(this::runWriter, "audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Ставит запись в очередь на сохранение.
+     * При переполнении очереди поступает согласно политике {@link OverflowPolicy}.
+     * После остановки писателя записи сохраняются синхронно.
+     *
+     * @param entry запись аудита
+     */
+    public void submit(AuditEntry entry) {
+        Lock readLock = stateLock.readLock();
+        while (true) {
+            readLock.lock();
+            try {
+                if (!running) {
+                    writeSynchronously(entry);
+                    return;
+                }
+
+                if (queue.offer(entry)) {
+                    queued.increment();
+                    return;
+                }
+
+                switch (overflowPolicy) {
+                    case BLOCK -> {
+                        if (queue.offer(entry, BLOCK_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                            queued.increment();
+                            return;
+                        }
+                    }
+                    case DROP -> {
+                        dropped.increment();
+                        return;
+                    }
+                    case SPILL -> {
+                        writeSynchronously(entry);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return;
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Останавливает прием записей, дописывает содержимое очереди и завершает фоновый поток.
+     * Ждет завершения submit, которые уже кладут запись в очередь; записи, поданные
+     * после остановки, сохраняются синхронно. Фоновый поток не прерывается:
+     * пакет, который он записывает в момент остановки, дописывается полностью.
+     */
+    @Override
+    public void close() {
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<AuditEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        flush(rest);
+        System.out.println("Асинхронный журнал аудита остановлен: " + getStats());
+    }
+
+    /**
+     * Возвращает статистику работы писателя.
+     *
+     * @return карта со счетчиками queued, flushed, dropped, spilled, failed, batches и текущим размером очереди
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queued.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("spilled", spilled.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("pending", queue.size());
+        stats.put("flushSize", flushSize);
+        stats.put("flushIntervalMillis", flushIntervalMillis);
+        stats.put("overflowPolicy", overflowPolicy.name());
+        return stats;
+    }
+
+    /**
+     * Основной цикл фонового потока: собирает пакет до flushSize записей
+     * или до истечения flushIntervalMillis и сохраняет его.
+     */
+    private void runWriter() {
+        List<AuditEntry> batch = new ArrayList<>(flushSize);
+        long deadline = System.currentTimeMillis() + flushIntervalMillis;
+
+        while (running) {
+            try {
+                long waitMillis = Math.min(STOP_CHECK_MILLIS, Math.max(1, deadline - System.currentTimeMillis()));
+                AuditEntry entry = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    batch.add(entry);
+                    queue.drainTo(batch, flushSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            if (batch.size() >= flushSize || System.currentTimeMillis() >= deadline) {
+                flush(batch);
+                batch.clear();
+                deadline = System.currentTimeMillis() + flushIntervalMillis;
+            }
+        }
+
+        flush(batch);
+    }
+
+    /**
+     * Сохраняет пакет записей, разбивая его на части не больше flushSize.
+     *
+     * @param entries записи для сохранения
+     */
+    private void flush(List<AuditEntry> entries) {
+        for (int from = 0; from < entries.size(); from += flushSize) {
+            List<AuditEntry> chunk = entries.subList(from, Math.min(entries.size(), from + flushSize));
+            try {
+                auditRepository.saveAll(chunk);
+                flushed.add(chunk.size());
+                batches.increment();
+            } catch (RuntimeException e) {
+                failed.add(chunk.size());
+                System.err.println("Ошибка записи пакета аудита: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Сохраняет запись синхронно в потоке вызывающего.
+     *
+     * @param entry запись аудита
+     */
+    private void writeSynchronously(AuditEntry entry) {
+        try {
+            auditRepository.saveAll(List.of(entry));
+            spilled.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            System.err.println("Ошибка записи аудита: " + e.getMessage());
+        }
+    }
+}
@@ -1,29 +1,53 @@
 package org.idvairaz.service;
 
-import lombok.AllArgsConstructor;
+import org.idvairaz.model.AuditEntry;
 import org.idvairaz.repository.AuditRepository;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 
 
 /**
  * Сервис для ведения журнала аудита действий пользователей.
  * Использует репозиторий для сохранения записей в базу данных PostgreSQL.
+ * Если задан асинхронный писатель, записи сохраняются пакетами в фоновом потоке,
+ * не задерживая поток обработки запроса.
  *
  * @author idvavraz
- * @version 2.0
+ * @version 3.0
  */
-@AllArgsConstructor
 public class AuditService {
 
     /** Репозиторий для работы с записями аудита */
     private final AuditRepository auditRepository;
 
+    /** Асинхронный пакетный писатель, null если запись выполняется синхронно */
+    private final AsyncAuditWriter auditWriter;
+
+    /**
+     * Создает сервис аудита с синхронной записью в базу данных.
+     *
+     * @param auditRepository репозиторий для работы с записями аудита
+     */
+    public AuditService(AuditRepository auditRepository) {
+        this(auditRepository, null);
+    }
+
+    /**
+     * Создает сервис аудита с асинхронной пакетной записью.
+     *
+     * @param auditRepository репозиторий для работы с записями аудита
+     * @param auditWriter асинхронный писатель или null для синхронной записи
+     */
+    public AuditService(AuditRepository auditRepository, AsyncAuditWriter auditWriter) {
+        this.auditRepository = auditRepository;
+        this.auditWriter = auditWriter;
+    }
 
     /**
      * Записывает действие пользователя в журнал аудита.
-     * Сохраняет запись в базу данных через репозиторий.
+     * Ставит запись в очередь асинхронного писателя либо сохраняет ее через репозиторий.
      * Также выводит запись в консоль для немедленного отображения.
      *
      * @param username имя пользователя, выполнившего действие
@@ -31,12 +55,35 @@ public class AuditService {
      * @param details дополнительные детали действия
      */
     public void logAction(String username, String action, String details) {
-        auditRepository.save(username, action, details);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (auditWriter != null) {
+            auditWriter.submit(new AuditEntry(username, action, details, now));
+        } else {
+            auditRepository.save(username, action, details);
+        }
 
-        String timestamp = LocalDateTime.now().toString();
         String logEntry = String.format("[%s] Пользователь: %s | Действие: %s | Детали: %s",
-                timestamp, username, action, details);
+                now, username, action, details);
         System.out.println(" - " + logEntry);
     }
 
+    /**
+     * Возвращает статистику асинхронной записи журнала аудита.
+     *
+     * @return карта со счетчиками писателя или пустая карта при синхронной записи
+     */
+    public Map<String, Object> getStats() {
+        return auditWriter != null ? auditWriter.getStats() : Map.of();
+    }
+
+    /**
+     * Дописывает накопленные записи и останавливает асинхронный писатель.
+     * Должен вызываться при завершении работы приложения.
+     */
+    public void shutdown() {
+        if (auditWriter != null) {
+            auditWriter.close();
+        }
+    }
 }
@@ -0,0 +1,257 @@
+package org.idvairaz.service;
+
+import org.idvairaz.cache.ProductCacheService;
+import org.idvairaz.model.Product;
+import org.idvairaz.repository.ProductRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогрев кэша товаров при запуске приложения.
+ * При остановке самые часто запрашиваемые ID товаров и категории сохраняются в файл снимка,
+ * при следующем запуске они загружаются в кэш до начала приема запросов.
+ * Товары загружаются пакетами по ID, категории - по одной, параллельно в нескольких потоках,
+ * каждый из которых использует свое соединение из пула.
+ *
+ * <p>Формат файла снимка - строки "product&lt;TAB&gt;id" и "category&lt;TAB&gt;название",
+ * строки, начинающиеся с '#', пропускаются.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class CacheWarmupService {
+
+    /** Тип строки снимка: товар */
+    private static final String PRODUCT_KEY = "product";
+
+    /** Тип строки снимка: категория */
+    private static final String CATEGORY_KEY = "category";
+
+    /** Количество товаров, загружаемых одним запросом */
+    private static final int PRODUCT_BATCH_SIZE = 500;
+
+    /** Репозиторий для загрузки товаров */
+    private final ProductRepository productRepository;
+
+    /** Прогреваемый кэш товаров */
+    private final ProductCacheService cacheService;
+
+    /** Файл снимка горячих ключей */
+    private final Path snapshotFile;
+
+    /** Количество потоков прогрева */
+    private final int threads;
+
+    /** Максимальное время прогрева, мс */
+    private final long timeoutMillis;
+
+    /** Максимальное количество товаров в снимке */
+    private final int maxProducts;
+
+    /** Максимальное количество категорий в снимке */
+    private final int maxCategories;
+
+    /** Результат последнего прогрева */
+    private volatile Map<String, Object> lastWarmup = Map.of();
+
+    /**
+     * Создает сервис прогрева кэша.
+     *
+     * @param productRepository репозиторий для загрузки товаров
+     * @param cacheService прогреваемый кэш товаров
+     * @param snapshotFile файл снимка горячих ключей
+     * @param threads количество потоков прогрева
+     * @param timeoutMillis максимальное время прогрева, мс
+     * @param maxProducts максимальное количество товаров в снимке
+     * @param maxCategories максимальное количество категорий в снимке
+     * @throws IllegalArgumentException если threads или timeoutMillis не положительны
+     */
+    public CacheWarmupService(ProductRepository productRepository, ProductCacheService cacheService,
+                              Path snapshotFile, int threads, long timeoutMillis,
+                              int maxProducts, int maxCategories) {
+        if (threads <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Threads and timeout must be positive");
+        }
+        this.productRepository = productRepository;
+        this.cacheService = cacheService;
+        this.snapshotFile = snapshotFile;
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+        this.maxProducts = maxProducts;
+        this.maxCategories = maxCategories;
+    }
+
+    /**
+     * Загружает в кэш товары и категории из файла снимка.
+     * Отсутствие или ошибка чтения файла не мешают запуску: кэш остается пустым.
+     * Задачи, не успевшие за timeoutMillis, отменяются.
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        List<Long> productIds = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        if (!readSnapshot(productIds, categories)) {
+            return;
+        }
+
+        AtomicInteger productsLoaded = new AtomicInteger();
+        AtomicInteger categoriesLoaded = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < productIds.size(); from += PRODUCT_BATCH_SIZE) {
+            List<Long> batch = productIds.subList(from, Math.min(from + PRODUCT_BATCH_SIZE, productIds.size()));
+            tasks.add(() -> {
+                List<Product> products = productRepository.findAllById(batch);
+                products.forEach(cacheService::cacheProduct);
+                productsLoaded.addAndGet(products.size());
+                return null;
+            });
+        }
+        for (String category : categories) {
+            tasks.add(() -> {
+                cacheService.getProductsByCategory(category, productRepository::findByCategory);
+                categoriesLoaded.incrementAndGet();
+                return null;
+            });
+        }
+
+        int failedTasks = runAll(tasks);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("durationMillis", durationMillis);
+        result.put("productsRequested", productIds.size());
+        result.put("productsLoaded", productsLoaded.get());
+        result.put("categoriesRequested", categories.size());
+        result.put("categoriesLoaded", categoriesLoaded.get());
+        result.put("failedTasks", failedTasks);
+        result.put("threads", threads);
+        lastWarmup = result;
+
+        System.out.printf("Кэш прогрет за %d мс: товаров %d из %d, категорий %d из %d, ошибок %d%n",
+                durationMillis, productsLoaded.get(), productIds.size(),
+                categoriesLoaded.get(), categories.size(), failedTasks);
+    }
+
+    /**
+     * Сохраняет самые часто запрашиваемые ключи в файл снимка.
+     * Если с момента запуска запросов не было, прежний снимок сохраняется.
+     * Файл записывается во временный файл и переименовывается, чтобы остановка
+     * во время записи не оставила поврежденный снимок.
+     */
+    public void saveSnapshot() {
+        List<Long> productIds = cacheService.getHotProductIds(maxProducts);
+        List<String> categories = cacheService.getHotCategories(maxCategories);
+        if (productIds.isEmpty() && categories.isEmpty()) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("# Горячие ключи кэша товаров по убыванию частоты запросов");
+        productIds.forEach(id -> lines.add(PRODUCT_KEY + "\t" + id));
+        categories.forEach(category -> lines.add(CATEGORY_KEY + "\t" + category));
+
+        try {
+            Path directory = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "cache-hot-keys", ".tmp");
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Снимок горячих ключей сохранен: товаров %d, категорий %d%n",
+                    productIds.size(), categories.size());
+        } catch (IOException e) {
+            System.err.println("Ошибка сохранения снимка горячих ключей: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает результат последнего прогрева.
+     *
+     * @return карта с длительностью прогрева и количеством загруженных ключей
+     */
+    public Map<String, Object> getStats() {
+        return lastWarmup;
+    }
+
+    /**
+     * Читает файл снимка.
+     *
+     * @param productIds список для идентификаторов товаров
+     * @param categories список для категорий
+     * @return true если снимок прочитан и содержит ключи
+     */
+    private boolean readSnapshot(List<Long> productIds, List<String> categories) {
+        if (!Files.isRegularFile(snapshotFile)) {
+            System.out.println("Снимок горячих ключей не найден, прогрев кэша пропущен: " + snapshotFile);
+            return false;
+        }
+
+        try {
+            for (String line : Files.readAllLines(snapshotFile, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 2);
+                if (line.startsWith("#") || parts.length < 2) {
+                    continue;
+                }
+                if (PRODUCT_KEY.equals(parts[0]) && productIds.size() < maxProducts) {
+                    productIds.add(Long.parseLong(parts[1]));
+                } else if (CATEGORY_KEY.equals(parts[0]) && categories.size() < maxCategories) {
+                    categories.add(parts[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ошибка чтения снимка горячих ключей, прогрев кэша пропущен: " + e.getMessage());
+            return false;
+        }
+        return !productIds.isEmpty() || !categories.isEmpty();
+    }
+
+    /**
+     * Выполняет задачи прогрева в пуле потоков и дожидается их завершения.
+     *
+     * @param tasks задачи прогрева
+     * @return количество задач, завершившихся ошибкой или не успевших выполниться
+     */
+    private int runAll(List<Callable<Void>> tasks) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "cache-warmup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int failed = 0;
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println("Ошибка прогрева кэша: " + e.getCause().getMessage());
+                } catch (CancellationException e) {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = tasks.size();
+        } finally {
+            executor.shutdownNow();
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,376 @@
+package org.idvairaz.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.idvairaz.cache.ProductCacheService;
+import org.idvairaz.config.DatabaseConfig;
+import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductChange;
+import org.idvairaz.repository.ProductRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Согласование кэшей товаров между экземплярами приложения через PostgreSQL LISTEN/NOTIFY.
+ * После записи товаров экземпляр публикует описания изменений в канал через pg_notify,
+ * а фоновый поток каждого экземпляра слушает канал на отдельном соединении (вне пула)
+ * и применяет чужие изменения к своим кэшам: сохраненные товары перечитываются из базы
+ * одним запросом на пачку оповещений, удаленные убираются из кэшей.
+ *
+ * <p>Оповещения, пришедшие пока соединение было разорвано, теряются, поэтому после
+ * переподключения кэши очищаются целиком.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class ProductCacheNotifier implements AutoCloseable {
+
+    /** Допустимое имя канала (используется в LISTEN без параметров) */
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    /** Максимальный размер оповещения в байтах UTF-8 (PostgreSQL принимает строку короче 8000 байт) */
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+
+    /** Время простоя, после которого проверяется живость соединения, мс */
+    private static final long VALIDATION_INTERVAL_MILLIS = 30_000;
+
+    /** Пауза перед повторным подключением, мс */
+    private static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+    /** Репозиторий для перечитывания измененных товаров */
+    private final ProductRepository productRepository;
+
+    /** Локальный кэш товаров */
+    private final ProductCacheService cacheService;
+
+    /** Канал оповещений */
+    private final String channel;
+
+    /** Максимальное время ожидания оповещений за один опрос, мс */
+    private final int pollMillis;
+
+    /** Идентификатор экземпляра приложения, чтобы не применять собственные оповещения */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /** Объект для работы с JSON */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Поток, слушающий канал */
+    private final Thread listenerThread;
+
+    /** Признак работы слушателя */
+    private volatile boolean running = true;
+
+    /** Соединение слушателя */
+    private volatile Connection listenConnection;
+
+    /** Количество опубликованных оповещений */
+    private final LongAdder published = new LongAdder();
+
+    /** Количество оповещений, которые не удалось опубликовать */
+    private final LongAdder publishFailures = new LongAdder();
+
+    /** Количество полученных чужих оповещений */
+    private final LongAdder received = new LongAdder();
+
+    /** Количество примененных чужих изменений товаров */
+    private final LongAdder applied = new LongAdder();
+
+    /** Количество переподключений слушателя */
+    private final LongAdder reconnects = new LongAdder();
+
+    /**
+     * Сообщение оповещения.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Message {
+
+        /** Идентификатор экземпляра-отправителя */
+        private String origin;
+
+        /** Изменения товаров */
+        private List<ProductChange> changes;
+    }
+
+    /**
+     * Создает и запускает слушатель оповещений.
+     *
+     * @param productRepository репозиторий для перечитывания измененных товаров
+     * @param cacheService локальный кэш товаров
+     * @param channel имя канала (строчные латинские буквы, цифры и '_')
+     * @param pollMillis максимальное время ожидания оповещений за один опрос, мс
+     * @throws IllegalArgumentException если имя канала недопустимо или pollMillis не положительно
+     */
+    public ProductCacheNotifier(ProductRepository productRepository, ProductCacheService cacheService,
+                                String channel, int pollMillis) {
+        if (channel == null || !CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel name: " + channel);
+        }
+        if (pollMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive");
+        }
+        this.productRepository = productRepository;
+        this.cacheService = cacheService;
+        this.channel = channel;
+        this.pollMillis = pollMillis;
+
+        this.listenerThread = new Thread(this::runListener, "cache-invalidation-listener");
+        this.listenerThread.setDaemon(true);
+        this.listenerThread.start();
+    }
+
+    /**
+     * Оповещает другие экземпляры об изменениях товаров.
+     * Вызывается после успешной записи в базу данных. Ошибка публикации не отменяет запись:
+     * она учитывается в статистике, а кэши других экземпляров обновятся по истечении TTL.
+     *
+     * @param changes изменения товаров
+     */
+    public void publish(List<ProductChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        String sql = "SELECT pg_notify(?, ?)";
+        try (Connection connection = DatabaseConfig.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (String payload : toPayloads(changes)) {
+                statement.setString(1, channel);
+                statement.setString(2, payload);
+                statement.execute();
+                published.increment();
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            publishFailures.increment();
+            System.err.println("Ошибка публикации оповещения об изменении товаров: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Делит изменения на сообщения не длиннее MAX_PAYLOAD_BYTES байт UTF-8.
+     * Размер сообщения складывается из размера пустого сообщения, сериализованных изменений
+     * и запятых между ними. Изменение, которое не помещается даже в пустое сообщение
+     * (очень длинные названия категорий или брендов), отправляется без названий:
+     * получатель сам найдет прежние записи индексов.
+     *
+     * @param changes изменения товаров
+     * @return сериализованные сообщения
+     * @throws JsonProcessingException если изменения не удалось сериализовать
+     */
+    private List<String> toPayloads(List<ProductChange> changes) throws JsonProcessingException {
+        int envelopeBytes = objectMapper.writeValueAsBytes(new Message(instanceId, List.of())).length;
+        List<String> payloads = new ArrayList<>();
+        List<ProductChange> part = new ArrayList<>();
+        int partBytes = envelopeBytes;
+
+        for (ProductChange change : changes) {
+            int changeBytes = objectMapper.writeValueAsBytes(change).length;
+            if (envelopeBytes + changeBytes > MAX_PAYLOAD_BYTES) {
+                change = ProductChange.builder().id(change.getId()).deleted(change.isDeleted()).build();
+                changeBytes = objectMapper.writeValueAsBytes(change).length;
+            }
+            if (!part.isEmpty() && partBytes + 1 + changeBytes > MAX_PAYLOAD_BYTES) {
+                payloads.add(objectMapper.writeValueAsString(new Message(instanceId, part)));
+                part = new ArrayList<>();
+                partBytes = envelopeBytes;
+            }
+            partBytes += part.isEmpty() ? changeBytes : 1 + changeBytes;
+            part.add(change);
+        }
+        payloads.add(objectMapper.writeValueAsString(new Message(instanceId, part)));
+        return payloads;
+    }
+
+    /**
+     * Останавливает слушатель и закрывает его соединение.
+     */
+    @Override
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+        closeListenConnection();
+        try {
+            listenerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Возвращает статистику оповещений.
+     *
+     * @return карта со счетчиками опубликованных и полученных оповещений
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("channel", channel);
+        stats.put("instanceId", instanceId);
+        stats.put("listening", listenConnection != null);
+        stats.put("published", published.sum());
+        stats.put("publishFailures", publishFailures.sum());
+        stats.put("received", received.sum());
+        stats.put("applied", applied.sum());
+        stats.put("reconnects", reconnects.sum());
+        return stats;
+    }
+
+    /**
+     * Основной цикл слушателя: подключается, подписывается на канал и применяет оповещения.
+     * При разрыве соединения переподключается и очищает кэши, так как часть оповещений могла быть потеряна.
+     */
+    private void runListener() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DatabaseConfig.openDedicatedConnection()) {
+                listenConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    reconnects.increment();
+                    cacheService.clear();
+                }
+                connectedBefore = true;
+                listen(connection);
+            } catch (SQLException e) {
+                if (running) {
+                    System.err.println("Слушатель оповещений кэша отключен: " + e.getMessage());
+                    sleepBeforeReconnect();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка применения оповещений кэша: " + e.getMessage());
+                cacheService.clear();
+                sleepBeforeReconnect();
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Получает оповещения, пока соединение живо.
+     *
+     * @param connection соединение с подпиской на канал
+     * @throws SQLException если соединение разорвано
+     */
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastActivity = System.currentTimeMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+            if (notifications != null && notifications.length > 0) {
+                apply(notifications);
+                lastActivity = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastActivity > VALIDATION_INTERVAL_MILLIS) {
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Соединение слушателя недоступно");
+                }
+                lastActivity = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Применяет пачку оповещений к локальным кэшам.
+     * Сохраненные товары перечитываются из базы данных одним запросом;
+     * не найденные при перечитывании считаются удаленными. Если перечитать товары
+     * не удалось, они просто удаляются из локальных кэшей.
+     *
+     * @param notifications полученные оповещения
+     */
+    private void apply(PGNotification[] notifications) {
+        Set<Long> savedIds = new LinkedHashSet<>();
+        Set<Long> deletedIds = new LinkedHashSet<>();
+        List<Product> previousVersions = new ArrayList<>();
+
+        for (PGNotification notification : notifications) {
+            Message message;
+            try {
+                message = objectMapper.readValue(notification.getParameter(), Message.class);
+            } catch (JsonProcessingException e) {
+                System.err.println("Некорректное оповещение кэша: " + e.getMessage());
+                continue;
+            }
+            if (instanceId.equals(message.getOrigin()) || message.getChanges() == null) {
+                continue;
+            }
+            received.increment();
+
+            for (ProductChange change : message.getChanges()) {
+                if (change.isDeleted()) {
+                    savedIds.remove(change.getId());
+                    deletedIds.add(change.getId());
+                } else {
+                    deletedIds.remove(change.getId());
+                    savedIds.add(change.getId());
+                }
+                Product previous = change.toPreviousVersion();
+                if (previous != null) {
+                    previousVersions.add(previous);
+                }
+            }
+        }
+        if (savedIds.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+
+        List<Product> saved = List.of();
+        if (!savedIds.isEmpty()) {
+            try {
+                saved = productRepository.findAllById(savedIds);
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка перечитывания измененных товаров: " + e.getMessage());
+            }
+        }
+        saved.forEach(product -> savedIds.remove(product.getId()));
+        deletedIds.addAll(savedIds);
+
+        cacheService.applyRemoteChanges(saved, deletedIds, previousVersions);
+        applied.add(saved.size() + deletedIds.size());
+    }
+
+    /**
+     * Ждет перед повторным подключением.
+     */
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Закрывает соединение слушателя, прерывая ожидание оповещений.
+     */
+    private void closeListenConnection() {
+        Connection connection = listenConnection;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Ошибка закрытия соединения слушателя: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -4,18 +4,27 @@ import lombok.AllArgsConstructor;
 import org.idvairaz.aspect.Auditable;
 import org.idvairaz.cache.ProductCacheService;
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductChange;
+import org.idvairaz.model.ProductPage;
+import org.idvairaz.model.ProductSearchResult;
 import org.idvairaz.repository.ProductRepository;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
 /**
  * Сервис для управления товарами в каталоге.
  * Предоставляет бизнес-логику для операций с товарами, включая кэширование и метрики.
+ * После каждой записи другие экземпляры приложения оповещаются об измененных товарах,
+ * чтобы сбросить их локальные кэши.
  *
  * @author idvavraz
  * @version 2.0
@@ -32,9 +41,13 @@ public class ProductService {
     /** Сервис для кэширования товаров */
     private final ProductCacheService cacheService;
 
+    /** Оповещение других экземпляров об изменениях товаров; null если оповещения отключены */
+    private final ProductCacheNotifier cacheNotifier;
+
     /**
      * Добавляет новый товар в каталог.
-     * Очищает кэш после добавления.
+     * Добавляет товар в закэшированные списки его категории и бренда
+     * и удаляет только затронутые результаты поиска, остальной кэш сохраняется.
      *
      * @param product товар для добавления
      * @return сохраненный товар с присвоенным ID
@@ -44,7 +57,8 @@ public class ProductService {
         LocalDateTime start = LocalDateTime.now();
 
         Product savedProduct = productRepository.save(product);
-        cacheService.clear();
+        cacheService.cacheNewProduct(savedProduct);
+        publishChanges(List.of(ProductChange.saved(null, savedProduct)));
         metricsService.recordOperation("ДОБАВИТЬ_ТОВАР", Duration.between(start, LocalDateTime.now()));
 
         return savedProduct;
@@ -53,6 +67,8 @@ public class ProductService {
     /**
      * Находит товар по его идентификатору.
      * Сначала проверяет кэш, если нет - обращается к базе данных.
+     * Одновременные запросы одного отсутствующего в кэше товара выполняют один запрос к базе данных.
+     * Несуществующий ID запоминается на короткое время и повторно в базе данных не ищется.
      *
      * @param id идентификатор товара
      * @return Optional с найденным товаром или empty если товар не найден
@@ -61,16 +77,8 @@ public class ProductService {
     public Optional<Product> getProductById(Long id) {
         LocalDateTime start = LocalDateTime.now();
 
-        Optional<Product> cachedProduct = cacheService.getCachedProduct(id);
-        if (cachedProduct.isPresent()) {
-            System.out.println("Данные из кэша (ID: " + id + ")");
-            metricsService.recordOperation("ПОИСК_ПО_ID", Duration.between(start, LocalDateTime.now()));
-
-            return cachedProduct;
-        }
-
-        Optional<Product> product = productRepository.findById(id);
-        product.ifPresent(cacheService::cacheProduct);
+        Optional<Product> product = cacheService.getProduct(id, productRepository::findById);
+        metricsService.recordOperation("ПОИСК_ПО_ID", Duration.between(start, LocalDateTime.now()));
 
         return product;
     }
@@ -85,8 +93,10 @@ public class ProductService {
     public void deleteProduct(Long id) {
         LocalDateTime start = LocalDateTime.now();
 
+        Product previous = cacheService.getCachedProduct(id).orElse(null);
         productRepository.delete(id);
         cacheService.invalidateProduct(id);
+        publishChanges(List.of(ProductChange.deleted(id, previous)));
         metricsService.recordOperation("УДАЛИТЬ_ТОВАР", Duration.between(start, LocalDateTime.now()));
 
     }
@@ -94,6 +104,7 @@ public class ProductService {
     /**
      * Находит товар по точному совпадению названия.
      * Поиск выполняется без учета регистра.
+     * Найденный товар кэшируется, отсутствие товара с таким названием запоминается на короткое время.
      *
      * @param name название товара для поиска
      * @return Optional с найденным товаром или empty если товар не найден
@@ -102,12 +113,31 @@ public class ProductService {
     public Optional<Product> getProductByName(String name) {
         LocalDateTime start = LocalDateTime.now();
 
-        Optional<Product> product = productRepository.findByName(name);
+        Optional<Product> product = cacheService.getProductByName(name, productRepository::findByName);
         metricsService.recordOperation("ПОИСК_ПО_ИМЕНИ", Duration.between(start, LocalDateTime.now()));
 
         return product;
     }
 
+    /**
+     * Находит товары с названиями, похожими на указанное, с учетом опечаток.
+     * Результаты не кэшируются: название с опечаткой может не иметь общих слов с товаром,
+     * поэтому сброс кэша поиска по словам запроса не гарантировал бы актуальность.
+     *
+     * @param name название товара, возможно с опечатками
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию сходства названия
+     */
+    @Auditable("ПОИСК_ТОВАРОВ_ПО_ПОХОЖЕМУ_ИМЕНИ")
+    public List<Product> findProductsBySimilarName(String name, int limit) {
+        LocalDateTime start = LocalDateTime.now();
+
+        List<Product> products = productRepository.findSimilarByName(name.trim(), limit);
+        metricsService.recordOperation("ПОИСК_ПО_ПОХОЖЕМУ_ИМЕНИ", Duration.between(start, LocalDateTime.now()));
+
+        return products;
+    }
+
 
     /**
      * Находит все товары указанной категории.
@@ -120,16 +150,7 @@ public class ProductService {
     public List<Product> getProductsByCategory(String category) {
         LocalDateTime start = LocalDateTime.now();
 
-        Optional<List<Product>> cachedProducts = cacheService.getCachedProductsByCategory(category);
-        if (cachedProducts.isPresent()) {
-            System.out.println("Данные из кэша (категория: " + category + ")");
-            metricsService.recordOperation("ПОИСК_ПО_КАТЕГОРИИ", Duration.between(start, LocalDateTime.now()));
-
-            return new ArrayList<>(cachedProducts.get());
-        }
-
-        List<Product> products = productRepository.findByCategory(category);
-        cacheService.cacheProductsByCategory(category, products);
+        List<Product> products = cacheService.getProductsByCategory(category, productRepository::findByCategory);
         metricsService.recordOperation("ПОИСК_ПО_КАТЕГОРИИ", Duration.between(start, LocalDateTime.now()));
 
         return products;
@@ -146,51 +167,119 @@ public class ProductService {
     public List<Product> getProductsByBrand(String brand) {
         LocalDateTime start = LocalDateTime.now();
 
-        Optional<List<Product>> cachedProducts = cacheService.getCachedProductsByBrand(brand);
-        if (cachedProducts.isPresent()) {
-            System.out.println("Данные из кэша (бренд: " + brand + ")");
-            metricsService.recordOperation("ПОИСК_ПО_БРЕНДУ", Duration.between(start, LocalDateTime.now()));
-            return new ArrayList<>(cachedProducts.get());
-        }
-
-        List<Product> products = productRepository.findByBrand(brand);
-        cacheService.cacheProductsByBrand(brand, products);
+        List<Product> products = cacheService.getProductsByBrand(brand, productRepository::findByBrand);
+        metricsService.recordOperation("ПОИСК_ПО_БРЕНДУ", Duration.between(start, LocalDateTime.now()));
 
         return products;
     }
 
+    /**
+     * Возвращает версию закэшированного списка товаров категории.
+     * Не обращается к базе данных; версия меняется при любом изменении списка.
+     *
+     * @param category категория товаров
+     * @return OptionalLong с версией или empty если список категории не закэширован
+     */
+    public OptionalLong getCategoryVersion(String category) {
+        return cacheService.getCategoryVersion(category);
+    }
+
+    /**
+     * Возвращает версию закэшированного списка товаров бренда.
+     * Не обращается к базе данных; версия меняется при любом изменении списка.
+     *
+     * @param brand бренд товаров
+     * @return OptionalLong с версией или empty если список бренда не закэширован
+     */
+    public OptionalLong getBrandVersion(String brand) {
+        return cacheService.getBrandVersion(brand);
+    }
+
     /**
      * Обновляет существующий товар.
-     * Очищает кэш после обновления.
+     * Текущая версия товара проверяется по кэшу, база данных опрашивается только при промахе.
+     * Уникальность названия обеспечивает индекс idx_products_lower_name: занятое название
+     * отклоняется самим запросом обновления, без отдельного поиска товара по названию.
+     * Заменяет товар в кэше и переносит его между индексами категорий и брендов.
      *
      * @param id идентификатор товара для обновления
      * @param updatedProduct обновленные данные товара
      * @return обновленный товар
+     * @throws IllegalArgumentException если товар не найден или название занято другим товаром
      */
     @Auditable("ОБНОВЛЕНИЕ_ТОВАРА")
     public Product updateProduct(Long id, Product updatedProduct) {
         LocalDateTime start = LocalDateTime.now();
 
-        Optional<Product> existingProduct = productRepository.findById(id);
+        Optional<Product> existingProduct = cacheService.getProduct(id, productRepository::findById);
         if (existingProduct.isEmpty()) {
             throw new IllegalArgumentException("Товар с ID " + id + " не найден");
         }
 
-        if (!existingProduct.get().getName().equals(updatedProduct.getName())) {
-            Optional<Product> productWithSameName = productRepository.findByName(updatedProduct.getName());
-            if (productWithSameName.isPresent()) {
-                throw new IllegalArgumentException("Товар с именем '" + updatedProduct.getName() + "' уже существует");
+        Product savedProduct = productRepository.save(updatedProduct.toBuilder()
+                .id(id)
+                .updatedAt(LocalDateTime.now())
+                .build());
+        cacheService.applyProductChanges(List.of(savedProduct), List.of());
+        publishChanges(List.of(ProductChange.saved(existingProduct.get(), savedProduct)));
+        metricsService.recordOperation("ОБНОВИТЬ_ТОВАР", Duration.between(start, LocalDateTime.now()));
+
+        return savedProduct;
+    }
+
+    /**
+     * Находит товары по списку идентификаторов одним запросом к базе данных.
+     *
+     * @param ids идентификаторы товаров
+     * @return список найденных товаров
+     */
+    @Auditable("ПОИСК_ТОВАРОВ_ПО_СПИСКУ_ID")
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        LocalDateTime start = LocalDateTime.now();
+
+        List<Product> products = productRepository.findAllById(ids);
+        metricsService.recordOperation("ПОИСК_ПО_СПИСКУ_ID", Duration.between(start, LocalDateTime.now()));
+
+        return products;
+    }
+
+    /**
+     * Выполняет пакетное сохранение и удаление товаров.
+     * Сохранение и удаление выполняются одной транзакцией: либо применяется весь пакет,
+     * либо ни одна операция. Изменения применяются к кэшу и публикуются другим экземплярам
+     * один раз на весь пакет, только после фиксации и только для затронутых товаров.
+     *
+     * @param toSave новые (id = null) и измененные товары
+     * @param toDelete удаляемые товары
+     * @return сохраненные товары с присвоенными ID
+     */
+    @Auditable("ПАКЕТНАЯ_ОБРАБОТКА_ТОВАРОВ")
+    public List<Product> applyBatch(List<Product> toSave, List<Product> toDelete) {
+        LocalDateTime start = LocalDateTime.now();
+
+        List<Product> stamped = toSave.stream()
+                .map(product -> product.getId() != null ? product.withUpdatedAt(start) : product)
+                .toList();
+
+        Map<Long, Product> previousVersions = new HashMap<>();
+        for (Product product : toSave) {
+            if (product.getId() != null) {
+                cacheService.getCachedProduct(product.getId())
+                        .ifPresent(previous -> previousVersions.put(previous.getId(), previous));
             }
         }
 
-        updatedProduct.setId(id);
-        updatedProduct.setUpdatedAt(LocalDateTime.now());
+        List<Long> deletedIds = toDelete.stream().map(Product::getId).toList();
+        List<Product> savedProducts = productRepository.applyBatch(stamped, deletedIds);
+        cacheService.applyProductChanges(savedProducts, deletedIds);
 
-        Product savedProduct = productRepository.save(updatedProduct);
-        cacheService.invalidateProduct(id);
-        metricsService.recordOperation("ОБНОВИТЬ_ТОВАР", Duration.between(start, LocalDateTime.now()));
+        List<ProductChange> changes = new ArrayList<>();
+        savedProducts.forEach(saved -> changes.add(ProductChange.saved(previousVersions.get(saved.getId()), saved)));
+        toDelete.forEach(deleted -> changes.add(ProductChange.deleted(deleted.getId(), deleted)));
+        publishChanges(changes);
+        metricsService.recordOperation("ПАКЕТНАЯ_ОБРАБОТКА", Duration.between(start, LocalDateTime.now()));
 
-        return savedProduct;
+        return savedProducts;
     }
 
     /**
@@ -208,6 +297,154 @@ public class ProductService {
         return products;
     }
 
+    /**
+     * Передает все товары каталога обработчику по одному, не загружая каталог в память.
+     * Товары читаются из базы данных напрямую, минуя кэш, порциями по ключу;
+     * соединение с базой данных не удерживается между порциями.
+     *
+     * @param action обработчик товара
+     */
+    @Auditable("ПОЛУЧЕНИЕ_ВСЕХ_ТОВАРОВ")
+    public void forEachProduct(Consumer<? super Product> action) {
+        LocalDateTime start = LocalDateTime.now();
+
+        productRepository.forEach(action);
+        metricsService.recordOperation("ПОЛУЧЕНИЕ_ВСЕХ_ТОВАРОВ", Duration.between(start, LocalDateTime.now()));
+    }
+
+    /**
+     * Возвращает страницу товаров каталога, начиная после указанного идентификатора.
+     *
+     * @param afterId идентификатор, после которого начинается страница (null - с начала)
+     * @param limit размер страницы
+     * @return страница товаров с курсором следующей страницы
+     */
+    @Auditable("ПОЛУЧЕНИЕ_СТРАНИЦЫ_ТОВАРОВ")
+    public ProductPage getProductsPage(Long afterId, int limit) {
+        LocalDateTime start = LocalDateTime.now();
+
+        ProductPage page = toPage(productRepository.findAllAfter(afterId, limit + 1), limit);
+        metricsService.recordOperation("ПОЛУЧЕНИЕ_ВСЕХ_ТОВАРОВ", Duration.between(start, LocalDateTime.now()));
+
+        return page;
+    }
+
+    /**
+     * Возвращает страницу товаров указанной категории, начиная после указанного идентификатора.
+     *
+     * @param category категория для поиска
+     * @param afterId идентификатор, после которого начинается страница (null - с начала)
+     * @param limit размер страницы
+     * @return страница товаров категории с курсором следующей страницы
+     */
+    @Auditable("ПОИСК_СТРАНИЦЫ_ТОВАРОВ_ПО_КАТЕГОРИИ")
+    public ProductPage getProductsByCategoryPage(String category, Long afterId, int limit) {
+        LocalDateTime start = LocalDateTime.now();
+
+        ProductPage page = toPage(productRepository.findByCategoryAfter(category, afterId, limit + 1), limit);
+        metricsService.recordOperation("ПОИСК_ПО_КАТЕГОРИИ", Duration.between(start, LocalDateTime.now()));
+
+        return page;
+    }
+
+    /**
+     * Возвращает страницу товаров указанного бренда, начиная после указанного идентификатора.
+     *
+     * @param brand бренд для поиска
+     * @param afterId идентификатор, после которого начинается страница (null - с начала)
+     * @param limit размер страницы
+     * @return страница товаров бренда с курсором следующей страницы
+     */
+    @Auditable("ПОИСК_СТРАНИЦЫ_ТОВАРОВ_ПО_БРЕНДУ")
+    public ProductPage getProductsByBrandPage(String brand, Long afterId, int limit) {
+        LocalDateTime start = LocalDateTime.now();
+
+        ProductPage page = toPage(productRepository.findByBrandAfter(brand, afterId, limit + 1), limit);
+        metricsService.recordOperation("ПОИСК_ПО_БРЕНДУ", Duration.between(start, LocalDateTime.now()));
+
+        return page;
+    }
+
+    /**
+     * Выполняет полнотекстовый поиск товаров и возвращает страницу результатов по убыванию релевантности.
+     * Страницы кэшируются в кэше результатов поиска по запросу, курсору и размеру страницы;
+     * изменение товара, который входит в результат или может под него подойти, сбрасывает запись.
+     * Курсор следующей страницы - релевантность и идентификатор ее последнего товара.
+     *
+     * @param query поисковый запрос
+     * @param afterRank релевантность последнего товара предыдущей страницы (null - с начала)
+     * @param afterId идентификатор последнего товара предыдущей страницы (null - с начала)
+     * @param limit размер страницы
+     * @return страница найденных товаров с курсором следующей страницы
+     */
+    @Auditable("ПОЛНОТЕКСТОВЫЙ_ПОИСК_ТОВАРОВ")
+    public ProductPage searchProducts(String query, Float afterRank, Long afterId, int limit) {
+        LocalDateTime start = LocalDateTime.now();
+
+        String normalizedQuery = query.trim().replaceAll("\\s+", " ");
+        String searchKey = normalizedQuery + " #" + limit
+                + (afterId != null ? " @" + afterRank + ":" + afterId : "");
+        ProductSearchResult result = cacheService.getSearchResults(searchKey,
+                ignored -> productRepository.search(normalizedQuery, afterRank, afterId, limit + 1));
+        ProductPage page = toSearchPage(result, limit);
+        metricsService.recordOperation("ПОЛНОТЕКСТОВЫЙ_ПОИСК", Duration.between(start, LocalDateTime.now()));
+
+        return page;
+    }
+
+    /**
+     * Оповещает другие экземпляры приложения об изменениях товаров, если оповещения включены.
+     *
+     * @param changes изменения товаров
+     */
+    private void publishChanges(List<ProductChange> changes) {
+        if (cacheNotifier != null) {
+            cacheNotifier.publish(changes);
+        }
+    }
+
+    /**
+     * Формирует страницу из выборки размером до limit + 1 товаров.
+     * Лишний товар служит признаком наличия следующей страницы и в результат не попадает.
+     *
+     * @param products выборка товаров в порядке страниц (по идентификатору или по релевантности)
+     * @param limit размер страницы
+     * @return страница товаров
+     */
+    private ProductPage toPage(List<Product> products, int limit) {
+        if (products.size() <= limit) {
+            return new ProductPage(products, null);
+        }
+
+        List<Product> items = products.subList(0, limit);
+        return new ProductPage(new ArrayList<>(items), items.get(limit - 1).getId());
+    }
+
+    /**
+     * Формирует страницу результатов поиска из выборки размером до limit + 1 товаров,
+     * добавляя к курсору релевантность последнего товара страницы.
+     *
+     * @param result выборка товаров по убыванию релевантности и их релевантность
+     * @param limit размер страницы
+     * @return страница найденных товаров
+     */
+    private ProductPage toSearchPage(ProductSearchResult result, int limit) {
+        ProductPage page = toPage(result.getProducts(), limit);
+        if (page.hasNext()) {
+            page.setNextAfterRank(result.getRanks()[limit - 1]);
+        }
+        return page;
+    }
+
+    /**
+     * Возвращает статистику кэшей товаров.
+     *
+     * @return карта со статистикой кэширования
+     */
+    public Map<String, Object> getCacheStats() {
+        return cacheService.getStats();
+    }
+
     /**
      * Выводит статистику кэширования в консоль.
      * Включает информацию о размерах кэшей, эффективности попаданий и детали по категориям и брендам.
@@ -221,15 +458,19 @@ public class ProductService {
                - Товаров в кэше: %d
                - Категорий в кэше: %d
                - Брендов в кэше: %d
+               - Объединенных загрузок из БД: %d
+               - Ответов об отсутствии товара из кэша: %d
             """,
                 stats.get("totalCachedProducts"),
                 stats.get("totalCachedCategories"),
-                stats.get("totalCachedBrands"));
+                stats.get("totalCachedBrands"),
+                stats.get("totalDeduplicatedLoads"),
+                stats.get("totalNegativeHits"));
 
         Map<String, Object> productStats = (Map<String, Object>) stats.get("productCache");
-        int hits = (Integer) productStats.get("hits");
-        int misses = (Integer) productStats.get("misses");
-        int totalRequests = hits + misses;
+        long hits = ((Number) productStats.get("hits")).longValue();
+        long misses = ((Number) productStats.get("misses")).longValue();
+        long totalRequests = hits + misses;
         if (totalRequests > 0) {
             double hitRate = (double) hits / totalRequests * 100;
             System.out.printf("""
@@ -0,0 +1,148 @@
+package org.idvairaz.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.idvairaz.model.Product;
+
+import java.security.SecureRandom;
+import java.time.ZoneId;
+
+/**
+ * Условные GET запросы: валидаторы ETag и Last-Modified, заголовок Cache-Control
+ * и проверка If-None-Match / If-Modified-Since для ответа 304 Not Modified.
+ *
+ * <p>ETag товара строится из ID и времени последнего обновления (с точностью до миллисекунд,
+ * с которой время хранится во всех уровнях кэша). ETag списка строится из версии списка
+ * в кэше товаров и случайной метки экземпляра приложения: версии списков выдаются заново
+ * после каждого запуска и в каждом экземпляре свои, поэтому без метки одинаковые версии
+ * разных экземпляров могли бы совпасть при разном содержимом.</p>
+ *
+ * <p>ETag списка слабый: один и тот же список отдается сжатым gzip или несжатым в зависимости
+ * от Accept-Encoding клиента, а сильный ETag обещал бы побайтно одинаковое тело у обоих вариантов.
+ * If-None-Match все равно сравнивается слабым сравнением, поэтому 304 работает для обоих.</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+final class ConditionalGet {
+
+    /** Метка экземпляра приложения в ETag списков */
+    private static final String INSTANCE_TAG =
+            Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+
+    /**
+     * Возвращает ETag товара.
+     *
+     * @param product товар
+     * @return сильный ETag или null если время обновления товара неизвестно
+     */
+    static String productTag(Product product) {
+        if (product.getId() == null || product.getUpdatedAt() == null) {
+            return null;
+        }
+        return "\"p" + product.getId() + "-" + Long.toString(lastModified(product), Character.MAX_RADIX) + "\"";
+    }
+
+    /**
+     * Возвращает ETag списка товаров.
+     *
+     * @param kind вид списка (например, "c" для категории, "b" для бренда)
+     * @param version версия списка в кэше товаров
+     * @return слабый ETag
+     */
+    static String listTag(String kind, long version) {
+        return "W/\"" + kind + INSTANCE_TAG + "-" + Long.toString(version, Character.MAX_RADIX) + "\"";
+    }
+
+    /**
+     * Возвращает время последнего обновления товара.
+     *
+     * @param product товар с известным временем обновления
+     * @return время обновления в миллисекундах от начала эпохи
+     */
+    static long lastModified(Product product) {
+        return product.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Устанавливает заголовки валидаторов и кэширования ответа.
+     * При maxAgeSeconds = 0 ответ можно хранить, но перед каждым использованием
+     * его нужно подтвердить условным запросом.
+     *
+     * @param resp HTTP ответ
+     * @param etag ETag ответа
+     * @param lastModified время последнего изменения в миллисекундах или -1 если неизвестно
+     * @param maxAgeSeconds время, в течение которого ответ можно отдавать без проверки, секунд
+     */
+    static void setValidators(HttpServletResponse resp, String etag, long lastModified, int maxAgeSeconds) {
+        resp.setHeader("ETag", etag);
+        if (lastModified >= 0) {
+            resp.setDateHeader("Last-Modified", lastModified);
+        }
+        resp.setHeader("Cache-Control", maxAgeSeconds > 0 ? "public, max-age=" + maxAgeSeconds : "no-cache");
+    }
+
+    /**
+     * Проверяет, не изменился ли ответ с версии, которая есть у клиента.
+     * If-None-Match имеет приоритет; If-Modified-Since учитывается только без него.
+     *
+     * @param req HTTP запрос
+     * @param etag текущий ETag ответа
+     * @param lastModified время последнего изменения в миллисекундах или -1 если неизвестно
+     * @return true если можно ответить 304 Not Modified
+     */
+    static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Отвечает 304 Not Modified без тела.
+     *
+     * @param resp HTTP ответ
+     */
+    static void sendNotModified(HttpServletResponse resp) {
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        resp.setContentLength(0);
+    }
+
+    /**
+     * Проверяет значение If-None-Match: "*" или список ETag через запятую.
+     * Для If-None-Match ETag сравниваются без учета признака слабости W/ с обеих сторон.
+     *
+     * @param ifNoneMatch значение заголовка
+     * @param etag текущий ETag ответа
+     * @return true если один из ETag клиента совпадает с текущим
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaqueTag = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = opaque(candidate.trim());
+            if (tag.equals("*") || tag.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает ETag без признака слабости W/.
+     *
+     * @param tag ETag
+     * @return значение ETag в кавычках
+     */
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
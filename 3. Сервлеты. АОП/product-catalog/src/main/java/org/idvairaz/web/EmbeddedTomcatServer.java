@@ -80,12 +80,16 @@ public class EmbeddedTomcatServer {
             Tomcat.addServlet(context, "AuthServlet", new AuthServlet());
             context.addServletMappingDecoded("/api/auth/*", "AuthServlet");
 
+            Tomcat.addServlet(context, "StatsServlet", new StatsServlet());
+            context.addServletMappingDecoded("/api/stats", "StatsServlet");
+
 
             System.out.printf("""
                     Сервлеты зарегистрированы:
              - ProductServlet: /api/products/*
              - UserServlet: /api/users/*
              - AuthServlet: /api/auth/*
+             - StatsServlet: /api/stats
              """);
 
 
@@ -0,0 +1,163 @@
+package org.idvairaz.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.idvairaz.cache.CacheService;
+import org.idvairaz.cache.impl.InMemoryCacheService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых JSON ответов списков товаров.
+ * Хранит тело ответа в UTF-8 и, для достаточно больших ответов, его сжатую gzip копию,
+ * поэтому попадание записывает байты прямо в поток ответа без маппинга в DTO и сериализации.
+ *
+ * <p>Ключ записи - вид запроса и нормализованные параметры (например, "category:" и категория
+ * в нижнем регистре). Запись хранит версию списка из кэша товаров, по которой она построена,
+ * и действительна только пока версия списка не изменилась: изменения товаров меняют версии
+ * списков в ProductCacheService, поэтому отдельный сброс этого кэша при записи не нужен.</p>
+ *
+ * <p>Сжатый и несжатый варианты ответа получают один и тот же ETag, поэтому он слабый
+ * (см. {@link ConditionalGet#listTag}).</p>
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+public class JsonResponseCache {
+
+    /** Кэш ответов по ключам запросов */
+    private final CacheService<String, CachedResponse> responses;
+
+    /** Минимальный размер ответа, который хранится также в сжатом виде, байт */
+    private final int gzipMinBytes;
+
+    /**
+     * Готовый ответ.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class CachedResponse {
+
+        /** Версия списка, по которой построен ответ */
+        private final long version;
+
+        /** Тело ответа в UTF-8 */
+        private final byte[] json;
+
+        /** Тело ответа, сжатое gzip, или null если ответ хранится только несжатым */
+        private final byte[] gzip;
+
+        /**
+         * Возвращает объем памяти, занимаемый ответом.
+         *
+         * @return размер тела и сжатой копии, байт
+         */
+        int weight() {
+            return Math.max(1, json.length + (gzip != null ? gzip.length : 0));
+        }
+    }
+
+    /**
+     * Создает кэш ответов.
+     *
+     * @param ttlMillis время жизни ответов в миллисекундах
+     * @param maximumBytes максимальный суммарный размер ответов, байт
+     * @param gzipMinBytes минимальный размер ответа, который хранится также в сжатом виде, байт
+     * @throws IllegalArgumentException если ttlMillis или maximumBytes не положительны
+     */
+    public JsonResponseCache(long ttlMillis, long maximumBytes, int gzipMinBytes) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("Maximum bytes must be positive");
+        }
+        this.responses = new InMemoryCacheService<>(ttlMillis, maximumBytes, CachedResponse::weight);
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Возвращает готовый ответ, построенный по указанной версии списка.
+     *
+     * @param key ключ запроса
+     * @param version текущая версия списка
+     * @return Optional с ответом или empty если ответа нет или он построен по другой версии
+     */
+    public Optional<CachedResponse> get(String key, long version) {
+        return responses.get(key).filter(response -> response.getVersion() == version);
+    }
+
+    /**
+     * Сохраняет ответ, построенный по указанной версии списка.
+     *
+     * @param key ключ запроса
+     * @param version версия списка, по которой построен ответ
+     * @param json тело ответа в UTF-8
+     * @return сохраненный ответ
+     */
+    public CachedResponse put(String key, long version, byte[] json) {
+        CachedResponse response = new CachedResponse(version, json, json.length >= gzipMinBytes ? gzip(json) : null);
+        responses.put(key, response);
+        return response;
+    }
+
+    /**
+     * Записывает ответ в HTTP ответ: сжатую копию, если клиент принимает gzip, иначе тело как есть.
+     *
+     * @param response готовый ответ
+     * @param req HTTP запрос
+     * @param resp HTTP ответ
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void write(CachedResponse response, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        resp.setHeader("Vary", "Accept-Encoding");
+        byte[] body = response.getJson();
+        if (response.getGzip() != null && acceptsGzip(req)) {
+            resp.setHeader("Content-Encoding", "gzip");
+            body = response.getGzip();
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * Возвращает статистику кэша ответов.
+     *
+     * @return карта с попаданиями, промахами и размером кэша
+     */
+    public Map<String, Object> getStats() {
+        return responses.getStats();
+    }
+
+    /**
+     * Проверяет, принимает ли клиент ответы, сжатые gzip.
+     *
+     * @param req HTTP запрос
+     * @return true если заголовок Accept-Encoding содержит gzip
+     */
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Сжимает тело ответа.
+     *
+     * @param json тело ответа
+     * @return сжатое тело
+     */
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,183 @@
+package org.idvairaz.web;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Потоковая запись JSON ответов через JsonGenerator прямо в поток ответа в UTF-8,
+ * без промежуточной строки и перекодирования char[] в byte[].
+ * Элементы массивов преобразуются в DTO и записываются по одному, поэтому в памяти
+ * одновременно находятся только текущий элемент, буфер генератора (8 КБ) и буфер
+ * ответа контейнера, независимо от размера списка.
+ *
+ * <p>Каждые {@value #FLUSH_EVERY_ITEMS} элементов записанное отправляется клиенту.
+ * После первой отправки ответ зафиксирован: ошибка на середине списка уже не может
+ * стать ответом с ошибкой, поэтому незакрытый массив не дописывается и клиент получает
+ * заведомо некорректный JSON, а не обрезанный, но корректный список.</p>
+ *
+ * <p>Элементы можно передавать и источником с обратным вызовом (например, потоковым чтением
+ * из базы данных): тогда первые элементы отправляются клиенту, пока остальные еще читаются.</p>
+ *
+ * @author idvavraz
+ * @version 1.1
+ */
+final class JsonResponseWriter {
+
+    /** Количество элементов массива между отправками записанного клиенту */
+    static final int FLUSH_EVERY_ITEMS = 256;
+
+    /**
+     * Записывает значение в поток ответа.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param resp HTTP ответ
+     * @param value значение (DTO)
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static void writeValue(ObjectMapper objectMapper, HttpServletResponse resp, Object value) throws IOException {
+        try (JsonGenerator generator = open(objectMapper, resp)) {
+            writer(objectMapper).writeValue(generator, value);
+        }
+    }
+
+    /**
+     * Записывает массив в поток ответа, преобразуя элементы по одному.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param resp HTTP ответ
+     * @param items элементы
+     * @param converter преобразование элемента в DTO
+     * @param <T> тип элемента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static <T> void writeArray(ObjectMapper objectMapper, HttpServletResponse resp, Iterable<? extends T> items,
+                               Function<? super T, ?> converter) throws IOException {
+        try (JsonGenerator generator = open(objectMapper, resp)) {
+            writeArray(objectMapper, generator, items, converter);
+        }
+    }
+
+    /**
+     * Записывает массив в поток ответа, получая элементы от источника по одному.
+     * Источник вызывает переданный ему обработчик для каждого элемента по мере их получения.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param resp HTTP ответ
+     * @param source источник элементов
+     * @param converter преобразование элемента в DTO
+     * @param <T> тип элемента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static <T> void writeEach(ObjectMapper objectMapper, HttpServletResponse resp, Consumer<Consumer<? super T>> source,
+                              Function<? super T, ?> converter) throws IOException {
+        try (JsonGenerator generator = open(objectMapper, resp)) {
+            writeEach(objectMapper, generator, source, converter);
+        }
+    }
+
+    /**
+     * Сериализует массив в байты UTF-8, преобразуя элементы по одному
+     * (для ответов, которые сохраняются в кэш готовых ответов).
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param items элементы
+     * @param converter преобразование элемента в DTO
+     * @param <T> тип элемента
+     * @return JSON массив в UTF-8
+     * @throws IOException если произошла ошибка сериализации
+     */
+    static <T> byte[] toBytes(ObjectMapper objectMapper, Iterable<? extends T> items,
+                              Function<? super T, ?> converter) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            writeArray(objectMapper, generator, items, converter);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Записывает массив в открытый генератор, преобразуя элементы по одному.
+     * Используется для массивов внутри объекта ответа.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param generator генератор, открытый через {@link #open(ObjectMapper, HttpServletResponse)}
+     * @param items элементы
+     * @param converter преобразование элемента в DTO
+     * @param <T> тип элемента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static <T> void writeArray(ObjectMapper objectMapper, JsonGenerator generator, Iterable<? extends T> items,
+                               Function<? super T, ?> converter) throws IOException {
+        JsonResponseWriter.<T>writeEach(objectMapper, generator, items::forEach, converter);
+    }
+
+    /**
+     * Записывает массив в открытый генератор, получая элементы от источника по одному.
+     * Ошибка записи прерывает источник и пробрасывается как IOException.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param generator генератор, открытый через {@link #open(ObjectMapper, HttpServletResponse)}
+     * @param source источник элементов
+     * @param converter преобразование элемента в DTO
+     * @param <T> тип элемента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static <T> void writeEach(ObjectMapper objectMapper, JsonGenerator generator, Consumer<Consumer<? super T>> source,
+                              Function<? super T, ?> converter) throws IOException {
+        ObjectWriter writer = writer(objectMapper);
+        AtomicInteger written = new AtomicInteger();
+        generator.writeStartArray();
+        try {
+            source.accept(item -> {
+                try {
+                    writer.writeValue(generator, converter.apply(item));
+                    if (written.incrementAndGet() % FLUSH_EVERY_ITEMS == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Открывает генератор JSON в UTF-8 на потоке ответа.
+     * Закрытие генератора не закрывает поток ответа и не дописывает незакрытые массивы и объекты.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @param resp HTTP ответ
+     * @return генератор, который нужно закрыть после записи
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    static JsonGenerator open(ObjectMapper objectMapper, HttpServletResponse resp) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(resp.getOutputStream(), JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        return generator;
+    }
+
+    /**
+     * Возвращает ObjectWriter, не сбрасывающий генератор после каждого значения.
+     *
+     * @param objectMapper настроенный ObjectMapper
+     * @return ObjectWriter для записи элементов в генератор
+     */
+    private static ObjectWriter writer(ObjectMapper objectMapper) {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+}
@@ -1,27 +1,43 @@
 package org.idvairaz.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.idvairaz.aspect.HttpAuditable;
+import org.idvairaz.dto.BatchItemResultDTO;
+import org.idvairaz.dto.BatchProductRequestDTO;
+import org.idvairaz.dto.BatchResultDTO;
+import org.idvairaz.dto.BatchUpdateProductDTO;
 import org.idvairaz.dto.CreateProductDTO;
 import org.idvairaz.dto.ProductDTO;
 import org.idvairaz.dto.UpdateProductDTO;
 import org.idvairaz.mapper.ProductMapper;
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductPage;
 import org.idvairaz.service.ProductService;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Сервлет для управления товарами через REST API.
  * Предоставляет endpoints для создания, получения, обновления и удаления товаров.
- * Поддерживает поиск товаров по категории и бренду.
+ * Поддерживает поиск товаров по категории и бренду, полнотекстовый поиск
+ * и поиск по похожему названию с учетом опечаток.
  *
  * @author idvavraz
  * @version 1.0
@@ -30,6 +46,36 @@ import java.util.stream.Collectors;
 @HttpAuditable("Product API")
 public class ProductServlet extends HttpServlet {
 
+    /**
+     * Размер страницы по умолчанию при постраничной выборке.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Максимально допустимый размер страницы.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Максимальное количество операций в одном пакетном запросе.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Максимальная длина полнотекстового поискового запроса.
+     */
+    private static final int MAX_SEARCH_QUERY_LENGTH = 200;
+
+    /**
+     * Количество товаров по умолчанию при поиске по похожему названию.
+     */
+    private static final int DEFAULT_SIMILAR_LIMIT = 10;
+
+    /**
+     * Максимальное количество товаров при поиске по похожему названию.
+     */
+    private static final int MAX_SIMILAR_LIMIT = 50;
+
     /**
      * Сервис для работы с товарами.
      */
@@ -45,6 +91,36 @@ public class ProductServlet extends HttpServlet {
      */
     private ObjectMapper objectMapper;
 
+    /**
+     * Кэш готовых JSON ответов списков товаров; null если отключен.
+     */
+    private JsonResponseCache responseCache;
+
+    /**
+     * Значение max-age заголовка Cache-Control ответов GET, секунд (0 - проверять всегда).
+     */
+    private int maxAgeSeconds;
+
+    /**
+     * Позиция в результатах поиска: релевантность и идентификатор последнего товара предыдущей страницы.
+     */
+    private static final class SearchCursor {
+
+        /** Позиция первой страницы */
+        private static final SearchCursor FIRST_PAGE = new SearchCursor(null, null);
+
+        /** Релевантность последнего товара предыдущей страницы или null для первой страницы */
+        private final Float rank;
+
+        /** Идентификатор последнего товара предыдущей страницы или null для первой страницы */
+        private final Long afterId;
+
+        private SearchCursor(Float rank, Long afterId) {
+            this.rank = rank;
+            this.afterId = afterId;
+        }
+    }
+
     /**
      * Инициализирует сервлет, создавая необходимые зависимости.
      * Вызывается контейнером сервлетов при развертывании приложения.
@@ -54,6 +130,8 @@ public class ProductServlet extends HttpServlet {
         this.productMapper = ProductMapper.INSTANCE;
         this.objectMapper = JacksonConfig.getObjectMapper();;
         this.productService = ServiceFactory.getProductService();
+        this.responseCache = ServiceFactory.getJsonResponseCache();
+        this.maxAgeSeconds = ServiceFactory.getHttpMaxAgeSeconds();
     }
 
     /**
@@ -63,6 +141,15 @@ public class ProductServlet extends HttpServlet {
      * - GET /api/products/{id} - товар по идентификатору
      * - GET /api/products/category/{category} - товары по категории
      * - GET /api/products/brand/{brand} - товары по бренду
+     * - GET /api/products/search?q= - полнотекстовый поиск (всегда постранично, по убыванию релевантности)
+     * - GET /api/products/similar?name= - товары с похожими названиями (limit - количество, до MAX_SIMILAR_LIMIT)
+     * Списки поддерживают постраничную выборку по ключу через параметры
+     * limit (размер страницы) и after (курсор из nextCursor предыдущей страницы).
+     * Полные списки категорий и брендов отдаются из кэша готовых JSON ответов,
+     * пока версия списка в кэше товаров не изменилась.
+     * Товары отдаются с сильным ETag, полные списки категорий и брендов - со слабым,
+     * общим для сжатого и несжатого тела; на условный запрос
+     * с актуальным If-None-Match (для товара также If-Modified-Since) возвращается 304 без тела.
      *
      * @param req HTTP запрос
      * @param resp HTTP ответ с данными товаров
@@ -79,13 +166,17 @@ public class ProductServlet extends HttpServlet {
 
         try {
             if (pathInfo == null || pathInfo.equals("/")) {
-                getAllProducts(resp);
+                getAllProducts(req, resp);
             } else if (pathInfo.startsWith("/category/")) {
-                getProductsByCategory(resp, pathInfo);
+                getProductsByCategory(req, resp, pathInfo);
             } else if (pathInfo.startsWith("/brand/")) {
-                getProductsByBrand(resp, pathInfo);
+                getProductsByBrand(req, resp, pathInfo);
+            } else if (pathInfo.equals("/search")) {
+                searchProducts(req, resp);
+            } else if (pathInfo.equals("/similar")) {
+                getProductsBySimilarName(req, resp);
             } else {
-                getProductById(resp, pathInfo);
+                getProductById(req, resp, pathInfo);
             }
         } catch (Exception e) {
             sendErrorResponse(resp, "Internal server error: " + e.getMessage(),
@@ -95,10 +186,12 @@ public class ProductServlet extends HttpServlet {
 
     /**
      * Обрабатывает POST запросы для создания новых товаров.
-     * Endpoint: POST /api/products
+     * Поддерживает следующие endpoints:
+     * - POST /api/products - создание товара
+     * - POST /api/products/batch - пакетное создание, обновление и удаление товаров
      *
-     * @param req HTTP запрос с телом содержащим CreateProductDTO
-     * @param resp HTTP ответ с созданным товаром
+     * @param req HTTP запрос с телом содержащим CreateProductDTO или BatchProductRequestDTO
+     * @param resp HTTP ответ с созданным товаром или результатами пакетной обработки
      * @throws IOException если произошла ошибка ввода-вывода
      */
     @Override
@@ -107,6 +200,11 @@ public class ProductServlet extends HttpServlet {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
+        if ("/batch".equals(req.getPathInfo())) {
+            processBatch(req, resp);
+            return;
+        }
+
         try {
             CreateProductDTO createDto = objectMapper.readValue(req.getReader(), CreateProductDTO.class);
 
@@ -207,37 +305,55 @@ public class ProductServlet extends HttpServlet {
 
     /**
      * Возвращает список всех товаров.
+     * Если заданы параметры limit или after, возвращает страницу товаров с курсором следующей страницы.
+     * Полный список пишется в ответ по мере чтения из базы данных, без загрузки каталога в память.
      *
+     * @param req HTTP запрос с необязательными параметрами постраничной выборки
      * @param resp HTTP ответ со списком товаров
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    private void getAllProducts(HttpServletResponse resp)
+    private void getAllProducts(HttpServletRequest req, HttpServletResponse resp)
             throws IOException {
-        List<Product> products = productService.getAllProducts();
-        List<ProductDTO> productDTOs = products.stream()
-                .map(productMapper::toDTO)
-                .collect(Collectors.toList());
+        if (isPageRequested(req)) {
+            try {
+                int limit = parseLimit(req);
+                ProductPage page = productService.getProductsPage(parseCursor(req), limit);
+                writePage(resp, page, limit);
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(resp, e.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
+            }
+            return;
+        }
 
-        String jsonResponse = objectMapper.writeValueAsString(productDTOs);
-        resp.getWriter().write(jsonResponse);
+        JsonResponseWriter.<Product>writeEach(objectMapper, resp, productService::forEachProduct, productMapper::toDTO);
     }
 
     /**
      * Возвращает товар по идентификатору.
+     * Ответ получает ETag и Last-Modified по времени обновления товара; если версия у клиента
+     * актуальна, возвращается 304 без маппинга и сериализации (товар берется из кэша).
      *
+     * @param req HTTP запрос с необязательными заголовками If-None-Match и If-Modified-Since
      * @param resp HTTP ответ с данными товара
      * @param pathInfo путь запроса содержащий идентификатор товара
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    private void getProductById(HttpServletResponse resp, String pathInfo)
+    private void getProductById(HttpServletRequest req, HttpServletResponse resp, String pathInfo)
             throws IOException {
         Long id = extractIdFromPath(pathInfo);
         Optional<Product> product = productService.getProductById(id);
 
         if (product.isPresent()) {
-            ProductDTO productDTO = productMapper.toDTO(product.get());
-            String jsonResponse = objectMapper.writeValueAsString(productDTO);
-            resp.getWriter().write(jsonResponse);
+            String etag = ConditionalGet.productTag(product.get());
+            if (etag != null) {
+                long lastModified = ConditionalGet.lastModified(product.get());
+                ConditionalGet.setValidators(resp, etag, lastModified, maxAgeSeconds);
+                if (ConditionalGet.isNotModified(req, etag, lastModified)) {
+                    ConditionalGet.sendNotModified(resp);
+                    return;
+                }
+            }
+            JsonResponseWriter.writeValue(objectMapper, resp, productMapper.toDTO(product.get()));
         } else {
             sendErrorResponse(resp, "Товар не найден", HttpServletResponse.SC_NOT_FOUND);
         }
@@ -258,8 +374,7 @@ public class ProductServlet extends HttpServlet {
             ProductDTO responseDto = productMapper.toDTO(savedProduct);
 
             resp.setStatus(HttpServletResponse.SC_CREATED);
-            String jsonResponse = objectMapper.writeValueAsString(responseDto);
-            resp.getWriter().write(jsonResponse);
+            JsonResponseWriter.writeValue(objectMapper, resp, responseDto);
 
         } catch (IllegalArgumentException e) {
             sendErrorResponse(resp, "Ошибка валидации: " + e.getMessage(),
@@ -287,25 +402,12 @@ public class ProductServlet extends HttpServlet {
                 return;
             }
 
-            Product existing = existingProduct.get();
-
-            Product updatedProduct = Product.builder()
-                    .id(id)
-                    .name(updateDto.getName() != null ? updateDto.getName() : existing.getName())
-                    .description(updateDto.getDescription() != null ? updateDto.getDescription() : existing.getDescription())
-                    .price(updateDto.getPrice() != null ? updateDto.getPrice() : existing.getPrice())
-                    .category(updateDto.getCategory() != null ? updateDto.getCategory() : existing.getCategory())
-                    .brand(updateDto.getBrand() != null ? updateDto.getBrand() : existing.getBrand())
-                    .stockQuantity(updateDto.getStockQuantity() != null ? updateDto.getStockQuantity() : existing.getStockQuantity())
-                    .createdAt(existing.getCreatedAt())
-                    .updatedAt(java.time.LocalDateTime.now())
-                    .build();
+            Product updatedProduct = mergeUpdate(existingProduct.get(), updateDto);
 
             Product savedProduct = productService.updateProduct(id, updatedProduct);
             ProductDTO responseDto = productMapper.toDTO(savedProduct);
 
-            String jsonResponse = objectMapper.writeValueAsString(responseDto);
-            resp.getWriter().write(jsonResponse);
+            JsonResponseWriter.writeValue(objectMapper, resp, responseDto);
 
         } catch (IllegalArgumentException e) {
             sendErrorResponse(resp, "Ошибка валидации: " + e.getMessage(),
@@ -331,14 +433,260 @@ public class ProductServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Выполняет пакетную обработку товаров.
+     * Каждый элемент проверяется отдельно: невалидные элементы, несуществующие товары,
+     * повторные идентификаторы и конфликты имен (с другими товарами и с предыдущими
+     * элементами пакета) отклоняются с собственным статусом,
+     * остальные применяются одним вызовом сервиса в одной транзакции: если она не удалась,
+     * ни одна операция не применена и все принятые элементы получают статус ошибки пакета.
+     * Ответ всегда содержит результат по каждому элементу в порядке: создание, обновление, удаление.
+     *
+     * @param req HTTP запрос с телом содержащим BatchProductRequestDTO
+     * @param resp HTTP ответ с BatchResultDTO
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void processBatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        BatchProductRequestDTO batch;
+        try {
+            batch = objectMapper.readValue(req.getReader(), BatchProductRequestDTO.class);
+        } catch (Exception e) {
+            sendErrorResponse(resp, "Неверное тело запроса: " + e.getMessage(),
+                    HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        List<CreateProductDTO> creates = batch.getCreate() != null ? batch.getCreate() : List.of();
+        List<BatchUpdateProductDTO> updates = batch.getUpdate() != null ? batch.getUpdate() : List.of();
+        List<Long> deletes = batch.getDelete() != null ? batch.getDelete() : List.of();
+
+        int total = creates.size() + updates.size() + deletes.size();
+        if (total == 0) {
+            sendErrorResponse(resp, "Пакет не содержит операций", HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (total > MAX_BATCH_SIZE) {
+            sendErrorResponse(resp, "Размер пакета не должен превышать " + MAX_BATCH_SIZE + " операций",
+                    HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        List<BatchItemResultDTO> results = new ArrayList<>(total);
+        List<Product> toSave = new ArrayList<>();
+        List<BatchItemResultDTO> saveResults = new ArrayList<>();
+        List<Product> toDelete = new ArrayList<>();
+        List<BatchItemResultDTO> deleteResults = new ArrayList<>();
+        Set<String> claimedNames = new HashSet<>();
+
+        try {
+            for (int i = 0; i < creates.size(); i++) {
+                CreateProductDTO createDto = creates.get(i);
+                BatchItemResultDTO result = batchResult("create", i, null);
+                results.add(result);
+
+                String validationError = createDto != null ? ValidationUtil.validate(createDto) : "пустой элемент";
+                if (validationError != null) {
+                    rejectItem(result, HttpServletResponse.SC_BAD_REQUEST, "Ошибка валидации: " + validationError);
+                    continue;
+                }
+                Product product = productMapper.toEntity(createDto);
+                if (claimName(result, null, product.getName(), claimedNames)) {
+                    toSave.add(product);
+                    saveResults.add(result);
+                }
+            }
+
+            Set<Long> ids = new HashSet<>(deletes);
+            updates.stream().filter(Objects::nonNull).map(BatchUpdateProductDTO::getId).forEach(ids::add);
+            ids.remove(null);
+            Map<Long, Product> existing = productService.getProductsByIds(ids).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            Set<Long> touchedIds = new HashSet<>();
+
+            for (int i = 0; i < updates.size(); i++) {
+                BatchUpdateProductDTO updateDto = updates.get(i);
+                BatchItemResultDTO result = batchResult("update", i, updateDto != null ? updateDto.getId() : null);
+                results.add(result);
+
+                String validationError = updateDto != null ? ValidationUtil.validate(updateDto) : "пустой элемент";
+                if (validationError != null) {
+                    rejectItem(result, HttpServletResponse.SC_BAD_REQUEST, "Ошибка валидации: " + validationError);
+                    continue;
+                }
+                Product current = existing.get(updateDto.getId());
+                if (current == null) {
+                    rejectItem(result, HttpServletResponse.SC_NOT_FOUND, "Товар не найден");
+                } else if (!touchedIds.add(current.getId())) {
+                    rejectItem(result, HttpServletResponse.SC_CONFLICT, "Товар уже изменяется в этом пакете");
+                } else {
+                    Product updatedProduct = mergeUpdate(current, updateDto);
+                    if (claimName(result, current, updatedProduct.getName(), claimedNames)) {
+                        toSave.add(updatedProduct);
+                        saveResults.add(result);
+                    }
+                }
+            }
+
+            for (int i = 0; i < deletes.size(); i++) {
+                Long id = deletes.get(i);
+                BatchItemResultDTO result = batchResult("delete", i, id);
+                results.add(result);
+
+                Product current = id != null ? existing.get(id) : null;
+                if (id == null) {
+                    rejectItem(result, HttpServletResponse.SC_BAD_REQUEST, "Идентификатор товара обязателен");
+                } else if (current == null) {
+                    rejectItem(result, HttpServletResponse.SC_NOT_FOUND, "Товар не найден");
+                } else if (!touchedIds.add(id)) {
+                    rejectItem(result, HttpServletResponse.SC_CONFLICT, "Товар уже изменяется в этом пакете");
+                } else {
+                    toDelete.add(current);
+                    deleteResults.add(result);
+                }
+            }
+
+            if (!toSave.isEmpty() || !toDelete.isEmpty()) {
+                List<Product> saved = productService.applyBatch(toSave, toDelete);
+                for (int i = 0; i < saved.size(); i++) {
+                    BatchItemResultDTO result = saveResults.get(i);
+                    result.setId(saved.get(i).getId());
+                    result.setStatus("create".equals(result.getOperation())
+                            ? HttpServletResponse.SC_CREATED : HttpServletResponse.SC_OK);
+                }
+                deleteResults.forEach(result -> result.setStatus(HttpServletResponse.SC_OK));
+            }
+
+        } catch (IllegalArgumentException e) {
+            String message = "Пакет не применен: " + e.getMessage();
+            results.stream()
+                    .filter(result -> result.getStatus() == 0)
+                    .forEach(result -> rejectItem(result, HttpServletResponse.SC_BAD_REQUEST, message));
+        } catch (Exception e) {
+            String message = "Пакет не применен: " + e.getMessage();
+            results.stream()
+                    .filter(result -> result.getStatus() == 0)
+                    .forEach(result -> rejectItem(result, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, message));
+        }
+
+        int succeeded = (int) results.stream()
+                .filter(result -> result.getStatus() < HttpServletResponse.SC_BAD_REQUEST)
+                .count();
+        BatchResultDTO response = BatchResultDTO.builder()
+                .results(results)
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .build();
+
+        JsonResponseWriter.writeValue(objectMapper, resp, response);
+    }
+
+    /**
+     * Создает результат обработки элемента пакета.
+     *
+     * @param operation операция элемента
+     * @param index позиция элемента в списке операции
+     * @param id идентификатор товара или null
+     * @return результат элемента без статуса
+     */
+    private BatchItemResultDTO batchResult(String operation, int index, Long id) {
+        return BatchItemResultDTO.builder()
+                .operation(operation)
+                .index(index)
+                .id(id)
+                .build();
+    }
+
+    /**
+     * Отмечает элемент пакета как отклоненный.
+     *
+     * @param result результат элемента
+     * @param status HTTP статус ошибки
+     * @param error сообщение об ошибке
+     */
+    private void rejectItem(BatchItemResultDTO result, int status, String error) {
+        result.setStatus(status);
+        result.setError(error);
+    }
+
+    /**
+     * Закрепляет название за элементом пакета, если оно свободно. Название не должно
+     * принадлежать другому товару и не должно быть занято предыдущим принятым элементом
+     * пакета без учета регистра: иначе уникальный индекс названий отклонил бы весь пакет.
+     * Конфликтующий элемент отклоняется.
+     *
+     * @param result результат элемента
+     * @param current текущее состояние товара или null для нового товара
+     * @param name название товара после применения элемента
+     * @param claimedNames названия принятых элементов пакета в нижнем регистре
+     * @return true если название закреплено за элементом
+     */
+    private boolean claimName(BatchItemResultDTO result, Product current, String name, Set<String> claimedNames) {
+        String key = name.toLowerCase();
+        if (claimedNames.contains(key)) {
+            rejectItem(result, HttpServletResponse.SC_CONFLICT,
+                    "Название '" + name + "' уже используется в этом пакете");
+            return false;
+        }
+
+        boolean taken = current != null
+                ? isNameTaken(current, name)
+                : productService.getProductByName(name).isPresent();
+        if (taken) {
+            rejectItem(result, HttpServletResponse.SC_BAD_REQUEST, "Товар с именем '" + name + "' уже существует");
+            return false;
+        }
+
+        claimedNames.add(key);
+        return true;
+    }
+
+    /**
+     * Проверяет, занято ли новое название товара другим товаром.
+     *
+     * @param current текущее состояние товара
+     * @param newName новое название товара
+     * @return true если название изменилось и принадлежит другому товару
+     */
+    private boolean isNameTaken(Product current, String newName) {
+        if (current.getName().equals(newName)) {
+            return false;
+        }
+        Optional<Product> productWithSameName = productService.getProductByName(newName);
+        return productWithSameName.isPresent() && !productWithSameName.get().getId().equals(current.getId());
+    }
+
+    /**
+     * Применяет частичное обновление к текущему состоянию товара.
+     * Поля DTO со значением null оставляют соответствующие поля товара без изменений.
+     *
+     * @param existing текущее состояние товара
+     * @param updateDto DTO с обновленными данными
+     * @return новый объект товара с примененными изменениями
+     */
+    private Product mergeUpdate(Product existing, UpdateProductDTO updateDto) {
+        return Product.builder()
+                .id(existing.getId())
+                .name(updateDto.getName() != null ? updateDto.getName() : existing.getName())
+                .description(updateDto.getDescription() != null ? updateDto.getDescription() : existing.getDescription())
+                .price(updateDto.getPrice() != null ? updateDto.getPrice() : existing.getPrice())
+                .category(updateDto.getCategory() != null ? updateDto.getCategory() : existing.getCategory())
+                .brand(updateDto.getBrand() != null ? updateDto.getBrand() : existing.getBrand())
+                .stockQuantity(updateDto.getStockQuantity() != null ? updateDto.getStockQuantity() : existing.getStockQuantity())
+                .createdAt(existing.getCreatedAt())
+                .updatedAt(java.time.LocalDateTime.now())
+                .build();
+    }
+
     /**
      * Возвращает товары по категории.
+     * Если заданы параметры limit или after, возвращает страницу товаров с курсором следующей страницы.
      *
+     * @param req HTTP запрос с необязательными параметрами постраничной выборки
      * @param resp HTTP ответ со списком товаров
      * @param pathInfo путь запроса содержащий название категории
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    private void getProductsByCategory(HttpServletResponse resp, String pathInfo)
+    private void getProductsByCategory(HttpServletRequest req, HttpServletResponse resp, String pathInfo)
             throws IOException {
         try {
             String category = pathInfo.substring("/category/".length());
@@ -347,14 +695,24 @@ public class ProductServlet extends HttpServlet {
                 return;
             }
 
-            List<Product> products = productService.getProductsByCategory(category);
-            List<ProductDTO> productDTOs = products.stream()
-                    .map(productMapper::toDTO)
-                    .collect(Collectors.toList());
+            if (isPageRequested(req)) {
+                int limit = parseLimit(req);
+                ProductPage page = productService.getProductsByCategoryPage(category, parseCursor(req), limit);
+                writePage(resp, page, limit);
+                return;
+            }
 
-            String jsonResponse = objectMapper.writeValueAsString(productDTOs);
-            resp.getWriter().write(jsonResponse);
+            String cacheKey = "category:" + category.toLowerCase();
+            OptionalLong version = productService.getCategoryVersion(category);
+            if (writeCachedList(req, resp, cacheKey, "c", version)) {
+                return;
+            }
 
+            List<Product> products = productService.getProductsByCategory(category);
+            writeList(req, resp, cacheKey, "c", version, productService.getCategoryVersion(category), products);
+
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(resp, e.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
         } catch (Exception e) {
             sendErrorResponse(resp, "Ошибка поиска по категории: " + e.getMessage(),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -363,12 +721,14 @@ public class ProductServlet extends HttpServlet {
 
     /**
      * Возвращает товары по бренду.
+     * Если заданы параметры limit или after, возвращает страницу товаров с курсором следующей страницы.
      *
+     * @param req HTTP запрос с необязательными параметрами постраничной выборки
      * @param resp HTTP ответ со списком товаров
      * @param pathInfo путь запроса содержащий название бренда
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    private void getProductsByBrand(HttpServletResponse resp, String pathInfo)
+    private void getProductsByBrand(HttpServletRequest req, HttpServletResponse resp, String pathInfo)
             throws IOException {
         try {
             String brand = pathInfo.substring("/brand/".length());
@@ -377,20 +737,297 @@ public class ProductServlet extends HttpServlet {
                 return;
             }
 
-            List<Product> products = productService.getProductsByBrand(brand);
-            List<ProductDTO> productDTOs = products.stream()
-                    .map(productMapper::toDTO)
-                    .collect(Collectors.toList());
+            if (isPageRequested(req)) {
+                int limit = parseLimit(req);
+                ProductPage page = productService.getProductsByBrandPage(brand, parseCursor(req), limit);
+                writePage(resp, page, limit);
+                return;
+            }
 
-            String jsonResponse = objectMapper.writeValueAsString(productDTOs);
-            resp.getWriter().write(jsonResponse);
+            String cacheKey = "brand:" + brand.toLowerCase();
+            OptionalLong version = productService.getBrandVersion(brand);
+            if (writeCachedList(req, resp, cacheKey, "b", version)) {
+                return;
+            }
+
+            List<Product> products = productService.getProductsByBrand(brand);
+            writeList(req, resp, cacheKey, "b", version, productService.getBrandVersion(brand), products);
 
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(resp, e.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
         } catch (Exception e) {
             sendErrorResponse(resp, "Ошибка поиска по бренду: " + e.getMessage(),
                     HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Выполняет полнотекстовый поиск товаров по названию, описанию, бренду и категории.
+     * Результаты всегда отдаются страницами по убыванию релевантности: параметр limit
+     * задает размер страницы (по умолчанию DEFAULT_PAGE_SIZE), after - курсор следующей страницы.
+     *
+     * @param req HTTP запрос с параметром q и необязательными параметрами постраничной выборки
+     * @param resp HTTP ответ со страницей найденных товаров
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void searchProducts(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        try {
+            String query = req.getParameter("q");
+            if (query == null || query.isBlank()) {
+                sendErrorResponse(resp, "Поисковый запрос обязателен", HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            if (query.length() > MAX_SEARCH_QUERY_LENGTH) {
+                sendErrorResponse(resp, "Поисковый запрос не должен превышать " + MAX_SEARCH_QUERY_LENGTH
+                        + " символов", HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            int limit = parseLimit(req);
+            SearchCursor cursor = parseSearchCursor(req);
+            ProductPage page = productService.searchProducts(query, cursor.rank, cursor.afterId, limit);
+            writePage(resp, page, limit);
+
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(resp, e.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
+        } catch (Exception e) {
+            sendErrorResponse(resp, "Ошибка поиска товаров: " + e.getMessage(),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Возвращает товары с названиями, похожими на указанное, по убыванию сходства.
+     * Используется, когда точный поиск по названию не нашел товар из-за опечатки.
+     *
+     * @param req HTTP запрос с параметром name и необязательным параметром limit
+     * @param resp HTTP ответ со списком товаров
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void getProductsBySimilarName(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        try {
+            String name = req.getParameter("name");
+            if (name == null || name.isBlank()) {
+                sendErrorResponse(resp, "Название товара обязательно", HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            if (name.length() > MAX_SEARCH_QUERY_LENGTH) {
+                sendErrorResponse(resp, "Название товара не должно превышать " + MAX_SEARCH_QUERY_LENGTH
+                        + " символов", HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            int limit = parseLimit(req, DEFAULT_SIMILAR_LIMIT, MAX_SIMILAR_LIMIT);
+            List<Product> products = productService.findProductsBySimilarName(name, limit);
+            JsonResponseWriter.writeArray(objectMapper, resp, products, productMapper::toDTO);
+
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(resp, e.getMessage(), HttpServletResponse.SC_BAD_REQUEST);
+        } catch (Exception e) {
+            sendErrorResponse(resp, "Ошибка поиска по похожему названию: " + e.getMessage(),
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Отвечает на запрос списка товаров без его сборки: 304, если у клиента актуальная версия,
+     * или готовым ответом из кэша ответов, если он построен по текущей версии списка.
+     *
+     * @param req HTTP запрос
+     * @param resp HTTP ответ
+     * @param cacheKey ключ запроса в кэше ответов
+     * @param kind вид списка для ETag
+     * @param version текущая версия списка в кэше товаров
+     * @return true если ответ записан
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private boolean writeCachedList(HttpServletRequest req, HttpServletResponse resp, String cacheKey,
+                                    String kind, OptionalLong version) throws IOException {
+        if (version.isEmpty()) {
+            return false;
+        }
+        String etag = ConditionalGet.listTag(kind, version.getAsLong());
+        if (ConditionalGet.isNotModified(req, etag, -1)) {
+            ConditionalGet.setValidators(resp, etag, -1, maxAgeSeconds);
+            resp.setHeader("Vary", "Accept-Encoding");
+            ConditionalGet.sendNotModified(resp);
+            return true;
+        }
+        if (responseCache == null) {
+            return false;
+        }
+        Optional<JsonResponseCache.CachedResponse> cached = responseCache.get(cacheKey, version.getAsLong());
+        if (cached.isEmpty()) {
+            return false;
+        }
+        ConditionalGet.setValidators(resp, etag, -1, maxAgeSeconds);
+        JsonResponseCache.write(cached.get(), req, resp);
+        return true;
+    }
+
+    /**
+     * Сериализует список товаров и записывает его в HTTP ответ.
+     * Ответ сохраняется в кэш ответов и получает ETag, только если версия списка не менялась
+     * с начала запроса: иначе список мог быть собран из товаров разных версий.
+     * Ответ, который не сохраняется в кэш, пишется в поток ответа по одному товару.
+     *
+     * @param req HTTP запрос
+     * @param resp HTTP ответ
+     * @param cacheKey ключ запроса в кэше ответов
+     * @param kind вид списка для ETag
+     * @param versionBefore версия списка до получения товаров
+     * @param versionAfter версия списка после получения товаров
+     * @param products товары
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void writeList(HttpServletRequest req, HttpServletResponse resp, String cacheKey, String kind,
+                           OptionalLong versionBefore, OptionalLong versionAfter, List<Product> products)
+            throws IOException {
+        if (versionBefore.isPresent() && versionBefore.equals(versionAfter)) {
+            ConditionalGet.setValidators(resp, ConditionalGet.listTag(kind, versionBefore.getAsLong()), -1, maxAgeSeconds);
+            if (responseCache != null) {
+                byte[] json = JsonResponseWriter.toBytes(objectMapper, products, productMapper::toDTO);
+                JsonResponseCache.write(responseCache.put(cacheKey, versionBefore.getAsLong(), json), req, resp);
+                return;
+            }
+        }
+        JsonResponseWriter.writeArray(objectMapper, resp, products, productMapper::toDTO);
+    }
+
+    /**
+     * Записывает страницу товаров в HTTP ответ в формате ProductPageDTO,
+     * преобразуя товары в DTO по одному.
+     *
+     * @param resp HTTP ответ
+     * @param page страница товаров
+     * @param limit размер страницы
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void writePage(HttpServletResponse resp, ProductPage page, int limit) throws IOException {
+        try (JsonGenerator generator = JsonResponseWriter.open(objectMapper, resp)) {
+            generator.writeStartObject();
+            generator.writeFieldName("items");
+            JsonResponseWriter.writeArray(objectMapper, generator, page.getItems(), productMapper::toDTO);
+            generator.writeNumberField("limit", limit);
+            generator.writeStringField("nextCursor", page.hasNext() ? encodeCursor(page) : null);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Проверяет, запрошена ли постраничная выборка.
+     *
+     * @param req HTTP запрос
+     * @return true если задан параметр limit или after
+     */
+    private boolean isPageRequested(HttpServletRequest req) {
+        return req.getParameter("limit") != null || req.getParameter("after") != null;
+    }
+
+    /**
+     * Извлекает размер страницы из параметра limit.
+     *
+     * @param req HTTP запрос
+     * @return размер страницы в диапазоне 1..MAX_PAGE_SIZE
+     * @throws IllegalArgumentException если параметр не является числом или вне допустимого диапазона
+     */
+    private int parseLimit(HttpServletRequest req) {
+        return parseLimit(req, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Извлекает количество товаров из параметра limit.
+     *
+     * @param req HTTP запрос
+     * @param defaultLimit значение, если параметр не задан
+     * @param maxLimit максимально допустимое значение
+     * @return количество товаров в диапазоне 1..maxLimit
+     * @throws IllegalArgumentException если параметр не является числом или вне допустимого диапазона
+     */
+    private int parseLimit(HttpServletRequest req, int defaultLimit, int maxLimit) {
+        String limitParam = req.getParameter("limit");
+        if (limitParam == null || limitParam.isBlank()) {
+            return defaultLimit;
+        }
+
+        try {
+            int limit = Integer.parseInt(limitParam.trim());
+            if (limit < 1 || limit > maxLimit) {
+                throw new IllegalArgumentException("Параметр limit должен быть от 1 до " + maxLimit);
+            }
+            return limit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный параметр limit");
+        }
+    }
+
+    /**
+     * Извлекает идентификатор начала страницы из курсора в параметре after.
+     *
+     * @param req HTTP запрос
+     * @return идентификатор, после которого начинается страница, или null для первой страницы
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    private Long parseCursor(HttpServletRequest req) {
+        String cursor = req.getParameter("after");
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            return Long.parseLong(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неверный курсор страницы");
+        }
+    }
+
+    /**
+     * Извлекает позицию в результатах поиска из курсора в параметре after.
+     * Курсор поиска содержит релевантность и идентификатор последнего товара предыдущей страницы.
+     *
+     * @param req HTTP запрос
+     * @return позиция, после которой начинается страница (пустая для первой страницы)
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    private SearchCursor parseSearchCursor(HttpServletRequest req) {
+        String cursor = req.getParameter("after");
+        if (cursor == null || cursor.isBlank()) {
+            return SearchCursor.FIRST_PAGE;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException();
+            }
+            float rank = Float.parseFloat(decoded.substring(0, separator));
+            if (!Float.isFinite(rank)) {
+                throw new IllegalArgumentException();
+            }
+            return new SearchCursor(rank, Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неверный курсор страницы");
+        }
+    }
+
+    /**
+     * Кодирует последний товар страницы в непрозрачный курсор: идентификатор,
+     * а для результатов поиска - релевантность и идентификатор через двоеточие.
+     * Float.toString при разборе дает то же значение, поэтому релевантность сравнивается точно.
+     *
+     * @param page страница, у которой есть следующая
+     * @return курсор для параметра after
+     */
+    private String encodeCursor(ProductPage page) {
+        String position = page.getNextAfterRank() != null
+                ? page.getNextAfterRank() + ":" + page.getNextAfterId()
+                : page.getNextAfterId().toString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+
     /**
      * Извлекает идентификатор из пути запроса.
      *
@@ -409,12 +1046,17 @@ public class ProductServlet extends HttpServlet {
      * @param resp HTTP ответ для записи
      * @param message сообщение об ошибке
      * @param statusCode HTTP статус код ошибки
-     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws IOException если произошла ошибка ввода-вывода или ответ уже частично отправлен
+     *         (соединение прерывается, чтобы клиент не принял обрезанный ответ за полный)
      */
     private void sendErrorResponse(HttpServletResponse resp, String message, int statusCode) throws IOException {
+        if (resp.isCommitted()) {
+            throw new IOException("Ответ уже частично отправлен: " + message);
+        }
+        resp.resetBuffer();
         resp.setStatus(statusCode);
         String errorResponse = String.format("{\"error\": \"%s\", \"status\": %d}", message, statusCode);
-        resp.getWriter().write(errorResponse);
+        resp.getOutputStream().write(errorResponse.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -427,7 +1069,7 @@ public class ProductServlet extends HttpServlet {
     private void sendSuccessResponse(HttpServletResponse resp, String message) throws IOException {
         String successResponse = String.format("{\"message\": \"%s\", \"status\": %d}",
                 message, HttpServletResponse.SC_OK);
-        resp.getWriter().write(successResponse);
+        resp.getOutputStream().write(successResponse.getBytes(StandardCharsets.UTF_8));
     }
 }
 
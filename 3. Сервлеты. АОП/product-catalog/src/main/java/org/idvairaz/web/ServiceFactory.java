@@ -1,6 +1,7 @@
 package org.idvairaz.web;
 
 import org.idvairaz.cache.ProductCacheService;
+import org.idvairaz.config.AuditConfig;
 import org.idvairaz.config.CacheConfig;
 import org.idvairaz.repository.AuditRepository;
 import org.idvairaz.repository.ProductRepository;
@@ -10,10 +11,14 @@ import org.idvairaz.repository.impl.PostgresProductRepository;
 import org.idvairaz.repository.impl.PostgresUserRepository;
 import org.idvairaz.service.AuditService;
 import org.idvairaz.service.AuthService;
+import org.idvairaz.service.CacheWarmupService;
 import org.idvairaz.service.MetricsService;
+import org.idvairaz.service.ProductCacheNotifier;
 import org.idvairaz.service.ProductService;
 import org.idvairaz.service.UserService;
 
+import java.util.Map;
+
 /**
  * Фабрика для создания и управления сервисами приложения.
  * Реализует паттерн Singleton для обеспечения единственного экземпляра каждого сервиса.
@@ -29,6 +34,26 @@ public class ServiceFactory {
      */
     private static ProductService productService;
 
+    /**
+     * Оповещение других экземпляров приложения об изменениях товаров; null если отключено.
+     */
+    private static ProductCacheNotifier productCacheNotifier;
+
+    /**
+     * Сервис прогрева кэша товаров; null если прогрев отключен.
+     */
+    private static CacheWarmupService cacheWarmupService;
+
+    /**
+     * Кэш готовых JSON ответов списков товаров; null если отключен.
+     */
+    private static JsonResponseCache jsonResponseCache;
+
+    /**
+     * Признак того, что кэш готовых ответов уже создан (или отключен).
+     */
+    private static boolean jsonResponseCacheCreated;
+
     /**
      * Единственный экземпляр сервиса для работы с пользователями.
      */
@@ -50,6 +75,7 @@ public class ServiceFactory {
      * - MetricsService для сбора метрик
      * - PostgresProductRepository для работы с базой данных
      * - ProductCacheService для кэширования
+     * - ProductCacheNotifier для согласования кэшей между экземплярами приложения
      *
      * @return экземпляр ProductService готовый к использованию
      * @throws RuntimeException если произошла ошибка при инициализации сервиса
@@ -64,7 +90,11 @@ public class ServiceFactory {
                 CacheConfig cacheConfig = new CacheConfig();
                 ProductCacheService cacheService = cacheConfig.createProductCacheService();
 
-                productService = new ProductService(productRepository, metricsService, cacheService);
+                productCacheNotifier = cacheConfig.createProductCacheNotifier(productRepository, cacheService);
+
+                productService = new ProductService(productRepository, metricsService, cacheService,
+                        productCacheNotifier);
+                cacheWarmupService = cacheConfig.createCacheWarmupService(productRepository, cacheService);
                 System.out.println("ProductService успешно инициализирован");
 
             } catch (Exception e) {
@@ -76,21 +106,101 @@ public class ServiceFactory {
         return productService;
     }
 
+    /**
+     * Возвращает кэш готовых JSON ответов списков товаров.
+     *
+     * @return кэш ответов или null если он отключен
+     */
+    public static synchronized JsonResponseCache getJsonResponseCache() {
+        if (!jsonResponseCacheCreated) {
+            jsonResponseCache = new CacheConfig().createJsonResponseCache();
+            jsonResponseCacheCreated = true;
+        }
+        return jsonResponseCache;
+    }
+
+    /**
+     * Возвращает значение max-age заголовка Cache-Control ответов о товарах.
+     *
+     * @return время, в течение которого ответ можно отдавать без проверки, секунд
+     */
+    public static int getHttpMaxAgeSeconds() {
+        return new CacheConfig().getHttpMaxAgeSeconds();
+    }
+
+    /**
+     * Возвращает статистику кэша готовых JSON ответов.
+     *
+     * @return карта с попаданиями и промахами (пустая если кэш отключен)
+     */
+    public static Map<String, Object> getJsonResponseCacheStats() {
+        JsonResponseCache cache = getJsonResponseCache();
+        return cache != null ? cache.getStats() : Map.of();
+    }
+
     /**
      * Возвращает экземпляр сервиса для работы с аудитом.
-     * При первом вызове инициализирует сервис с зависимостью:
+     * При первом вызове инициализирует сервис с зависимостями:
      * - PostgresAuditRepository для работы с таблицей аудита в базе данных
+     * - AuditConfig для настройки асинхронной пакетной записи
      *
      * @return экземпляр AuditService готовый к использованию
      */
     public static AuditService getAuditService() {
         if (auditService == null) {
             AuditRepository auditRepository = new PostgresAuditRepository();
-            auditService = new AuditService(auditRepository);
+            auditService = new AuditConfig().createAuditService(auditRepository);
         }
         return auditService;
     }
 
+    /**
+     * Прогревает кэш товаров по снимку горячих ключей, сохраненному при прошлой остановке.
+     * Должен вызываться после миграций и до запуска приема HTTP запросов.
+     */
+    public static void warmUpCaches() {
+        getProductService();
+        if (cacheWarmupService != null) {
+            cacheWarmupService.warmUp();
+        }
+    }
+
+    /**
+     * Возвращает результат прогрева кэша товаров.
+     *
+     * @return карта с длительностью прогрева и количеством загруженных ключей (пустая если прогрева не было)
+     */
+    public static Map<String, Object> getCacheWarmupStats() {
+        return cacheWarmupService != null ? cacheWarmupService.getStats() : Map.of();
+    }
+
+    /**
+     * Возвращает статистику оповещений об изменениях товаров между экземплярами приложения.
+     *
+     * @return карта со счетчиками оповещений (пустая если оповещения отключены)
+     */
+    public static Map<String, Object> getCacheInvalidationStats() {
+        return productCacheNotifier != null ? productCacheNotifier.getStats() : Map.of();
+    }
+
+    /**
+     * Освобождает ресурсы созданных сервисов.
+     * Останавливает слушатель оповещений кэша, сохраняет снимок горячих ключей кэша
+     * и дописывает накопленные записи журнала аудита.
+     * Должен вызываться при завершении работы приложения до закрытия пула соединений.
+     */
+    public static void shutdown() {
+        if (productCacheNotifier != null) {
+            productCacheNotifier.close();
+        }
+        if (cacheWarmupService != null) {
+            cacheWarmupService.saveSnapshot();
+        }
+        if (auditService != null) {
+            auditService.shutdown();
+        }
+    }
+
     /**
      * Возвращает экземпляр сервиса для работы с пользователями.
      *
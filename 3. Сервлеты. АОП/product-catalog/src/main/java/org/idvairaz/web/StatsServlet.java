@@ -0,0 +1,68 @@
+package org.idvairaz.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.idvairaz.config.DatabaseConfig;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сервлет для получения эксплуатационной статистики приложения через REST API.
+ * Отдает состояние пула соединений, журнала аудита, кэша товаров, результат его прогрева
+ * и счетчики оповещений об изменениях товаров между экземплярами,
+ * что позволяет подбирать размеры пула и кэшей под нагрузкой.
+ *
+ * @author idvavraz
+ * @version 1.0
+ */
+@WebServlet("/api/stats")
+public class StatsServlet extends HttpServlet {
+
+    /**
+     * Объект для работы с JSON.
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * Инициализирует сервлет, создавая необходимые зависимости.
+     */
+    @Override
+    public void init() {
+        this.objectMapper = JacksonConfig.getObjectMapper();
+    }
+
+    /**
+     * Обрабатывает GET запросы для получения статистики.
+     * Endpoint: GET /api/stats
+     *
+     * @param req HTTP запрос
+     * @param resp HTTP ответ со статистикой
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("connectionPool", DatabaseConfig.getPoolStats());
+            stats.put("audit", ServiceFactory.getAuditService().getStats());
+            stats.put("productCache", ServiceFactory.getProductService().getCacheStats());
+            stats.put("responseCache", ServiceFactory.getJsonResponseCacheStats());
+            stats.put("cacheWarmup", ServiceFactory.getCacheWarmupStats());
+            stats.put("cacheInvalidation", ServiceFactory.getCacheInvalidationStats());
+
+            resp.getWriter().write(objectMapper.writeValueAsString(stats));
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write(String.format("{\"error\": \"%s\", \"status\": %d}",
+                    "Ошибка получения статистики: " + e.getMessage(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+        }
+    }
+}
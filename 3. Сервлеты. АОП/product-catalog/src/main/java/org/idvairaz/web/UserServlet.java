@@ -14,9 +14,9 @@ import org.idvairaz.model.User;
 import org.idvairaz.service.UserService;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Сервлет для управления пользователями через REST API.
@@ -203,12 +203,7 @@ public class UserServlet extends HttpServlet {
      */
     private void getAllUsers(HttpServletResponse resp) throws IOException {
         List<User> users = userService.getAllUsers();
-        List<UserDTO> userDTOs = users.stream()
-                .map(userMapper::toDTO)
-                .collect(Collectors.toList());
-
-        String jsonResponse = objectMapper.writeValueAsString(userDTOs);
-        resp.getWriter().write(jsonResponse);
+        JsonResponseWriter.writeArray(objectMapper, resp, users, userMapper::toDTO);
     }
 
     /**
@@ -224,9 +219,7 @@ public class UserServlet extends HttpServlet {
             Optional<User> user = userService.getUserById(id);
 
             if (user.isPresent()) {
-                UserDTO userDTO = userMapper.toDTO(user.get());
-                String jsonResponse = objectMapper.writeValueAsString(userDTO);
-                resp.getWriter().write(jsonResponse);
+                JsonResponseWriter.writeValue(objectMapper, resp, userMapper.toDTO(user.get()));
             } else {
                 sendErrorResponse(resp, "Пользователь не найден", HttpServletResponse.SC_NOT_FOUND);
             }
@@ -251,8 +244,7 @@ public class UserServlet extends HttpServlet {
             UserDTO responseDto = userMapper.toDTO(savedUser);
 
             resp.setStatus(HttpServletResponse.SC_CREATED);
-            String jsonResponse = objectMapper.writeValueAsString(responseDto);
-            resp.getWriter().write(jsonResponse);
+            JsonResponseWriter.writeValue(objectMapper, resp, responseDto);
 
         } catch (IllegalArgumentException e) {
             sendErrorResponse(resp, "Ошибка валидации: " + e.getMessage(),
@@ -283,8 +275,7 @@ public class UserServlet extends HttpServlet {
             User updatedUser = userService.updateUserRole(existing.getUsername(), newRole);
             UserDTO responseDto = userMapper.toDTO(updatedUser);
 
-            String jsonResponse = objectMapper.writeValueAsString(responseDto);
-            resp.getWriter().write(jsonResponse);
+            JsonResponseWriter.writeValue(objectMapper, resp, responseDto);
 
         } catch (IllegalArgumentException e) {
             sendErrorResponse(resp, "Ошибка валидации: " + e.getMessage(),
@@ -393,7 +384,7 @@ public class UserServlet extends HttpServlet {
     private void sendSuccessResponse(HttpServletResponse resp, String message) throws IOException {
         String successResponse = String.format("{\"message\": \"%s\", \"status\": %d}",
                 message, HttpServletResponse.SC_OK);
-        resp.getWriter().write(successResponse);
+        resp.getOutputStream().write(successResponse.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -413,11 +404,15 @@ public class UserServlet extends HttpServlet {
      * @param resp HTTP ответ
      * @param message сообщение об ошибке
      * @param statusCode код статуса HTTP
-     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws IOException если произошла ошибка ввода-вывода или ответ уже частично отправлен
      */
     private void sendErrorResponse(HttpServletResponse resp, String message, int statusCode) throws IOException {
+        if (resp.isCommitted()) {
+            throw new IOException("Ответ уже частично отправлен: " + message);
+        }
+        resp.resetBuffer();
         resp.setStatus(statusCode);
         String errorResponse = String.format("{\"error\": \"%s\", \"status\": %d}", message, statusCode);
-        resp.getWriter().write(errorResponse);
+        resp.getOutputStream().write(errorResponse.getBytes(StandardCharsets.UTF_8));
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FrequencySketchTest {
+
+    /** Минимальная ширина строки счетчиков */
+    private static final int WIDTH = 16;
+
+    private FrequencySketch sketch;
+    private SoftAssertions softly;
+
+    @BeforeEach
+    void setUp() {
+        sketch = new FrequencySketch(WIDTH);
+        softly = new SoftAssertions();
+    }
+
+    @Test
+    @DisplayName("increment - должен увеличивать частоту ключа")
+    void increment_ShouldCountAccesses() {
+        for (int i = 0; i < 3; i++) {
+            sketch.increment("key");
+        }
+
+        softly.assertThat(sketch.frequency("key")).isEqualTo(3);
+        softly.assertThat(sketch.frequency("other")).isZero();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("increment - должен ограничивать частоту значением 15")
+    void increment_ShouldCapFrequencyAtFifteen() {
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("key");
+        }
+
+        softly.assertThat(sketch.frequency("key")).isEqualTo(15);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("increment - должен делить счетчики пополам после 10 * ширина увеличений")
+    void increment_ShouldHalveCountersAfterSampleSize() {
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+
+        int increments = 0;
+        while (sketch.frequency("hot") == 15 && increments < 10 * WIDTH) {
+            sketch.increment(increments);
+            increments++;
+        }
+
+        softly.assertThat(sketch.frequency("hot")).isEqualTo(7);
+        softly.assertThat(increments).isLessThanOrEqualTo(10 * WIDTH - 15);
+        softly.assertAll();
+    }
+}
@@ -0,0 +1,427 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+class InMemoryCacheServiceTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    /** Вес обычной записи: в основную область (990) помещается девять таких записей */
+    private static final int ENTRY_WEIGHT = 100;
+
+    /** Порог фонового обновления записей */
+    private static final long REFRESH_AFTER_MILLIS = 20;
+
+    /** Максимальное время ожидания фоновых потоков, секунд */
+    private static final long WAIT_SECONDS = 5;
+
+    private SoftAssertions softly;
+
+    @BeforeEach
+    void setUp() {
+        softly = new SoftAssertions();
+    }
+
+    /**
+     * Кэш весом 1000: окно 10, основная область 990, защищенный сегмент 792.
+     * Вес записи равен ее значению, поэтому запись весом 100 сразу проходит проверку допуска.
+     */
+    private static InMemoryCacheService<Integer, Integer> weightedCache() {
+        return new InMemoryCacheService<>(TTL_MILLIS, 1000, value -> value);
+    }
+
+    private static void putAll(InMemoryCacheService<Integer, Integer> cache, int fromInclusive, int toInclusive) {
+        IntStream.rangeClosed(fromInclusive, toInclusive).forEach(key -> cache.put(key, ENTRY_WEIGHT));
+    }
+
+    private static void touch(InMemoryCacheService<Integer, Integer> cache, int key, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.get(key);
+        }
+    }
+
+    /** Кэш без ограничения размера, обновляющий в фоне записи старше REFRESH_AFTER_MILLIS */
+    private static InMemoryCacheService<Integer, Integer> refreshingCache() {
+        return new InMemoryCacheService<>(TTL_MILLIS, 0, value -> 1, REFRESH_AFTER_MILLIS);
+    }
+
+    /** Блокировка политики кэша: удерживая ее, тест имитирует проход политики в другом потоке */
+    private static ReentrantLock policyLock(InMemoryCacheService<?, ?> cache) {
+        try {
+            var field = InMemoryCacheService.class.getDeclaredField("policyLock");
+            field.setAccessible(true);
+            return (ReentrantLock) field.get(cache);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Latch was not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("put - не должен допускать редкие новые записи вместо часто читаемых")
+    void put_ShouldKeepFrequentEntriesAgainstOneTimeScan() {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS, 100);
+        IntStream.rangeClosed(1, 20).forEach(key -> cache.put(key, key));
+        IntStream.rangeClosed(1, 20).forEach(key -> touch(cache, key, 10));
+
+        IntStream.rangeClosed(1000, 1099).forEach(key -> cache.put(key, key));
+
+        IntStream.rangeClosed(1, 20).forEach(key ->
+                softly.assertThat(cache.containsKey(key)).as("key %d", key).isTrue());
+        softly.assertThat(cache.size()).isLessThanOrEqualTo(100);
+        softly.assertThat((Long) cache.getStats().get("admissionRejections")).isPositive();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - должен вытеснять самую старую испытательную запись ради более частой новой")
+    void put_ShouldEvictProbationHeadForMoreFrequentCandidate() {
+        InMemoryCacheService<Integer, Integer> cache = weightedCache();
+        putAll(cache, 1, 9);
+        IntStream.rangeClosed(1, 3).forEach(key -> touch(cache, key, 1));
+
+        cache.put(10, ENTRY_WEIGHT);
+        touch(cache, 100, 5);
+        cache.put(100, ENTRY_WEIGHT);
+
+        softly.assertThat(cache.containsKey(10)).as("редкий кандидат отклонен").isFalse();
+        softly.assertThat(cache.containsKey(4)).as("голова испытательного сегмента вытеснена").isFalse();
+        softly.assertThat(cache.containsKey(100)).as("частый кандидат допущен").isTrue();
+        IntStream.of(1, 2, 3, 5, 6, 7, 8, 9).forEach(key ->
+                softly.assertThat(cache.containsKey(key)).as("key %d", key).isTrue());
+        softly.assertThat(cache.getStats())
+                .containsEntry("admissionRejections", 1L)
+                .containsEntry("evictions", 2L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get - переполнение защищенного сегмента должно возвращать его старые записи в испытательный")
+    void get_ShouldDemoteOldestProtectedEntryOnOverflow() {
+        InMemoryCacheService<Integer, Integer> cache = weightedCache();
+        putAll(cache, 1, 9);
+        // 1..8 в защищенном сегменте (800 > 792), поэтому 1 возвращается в испытательный
+        IntStream.rangeClosed(1, 8).forEach(key -> touch(cache, key, 1));
+
+        touch(cache, 100, 5);
+        cache.put(100, ENTRY_WEIGHT);
+        touch(cache, 200, 5);
+        cache.put(200, ENTRY_WEIGHT);
+
+        softly.assertThat(cache.containsKey(9)).as("испытательная запись вытеснена первой").isFalse();
+        softly.assertThat(cache.containsKey(1)).as("пониженная запись вытеснена второй").isFalse();
+        IntStream.rangeClosed(2, 8).forEach(key ->
+                softly.assertThat(cache.containsKey(key)).as("key %d", key).isTrue());
+        softly.assertThat(cache.containsKey(100)).isTrue();
+        softly.assertThat(cache.containsKey(200)).isTrue();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - запись тяжелее основной области не должна вытеснять остальные записи")
+    void put_ShouldRejectEntryHeavierThanMainArea() {
+        InMemoryCacheService<Integer, Integer> cache = weightedCache();
+        putAll(cache, 1, 9);
+        touch(cache, 10, 15);
+
+        cache.put(10, 2000);
+
+        softly.assertThat(cache.containsKey(10)).isFalse();
+        IntStream.rangeClosed(1, 9).forEach(key ->
+                softly.assertThat(cache.containsKey(key)).as("key %d", key).isTrue());
+        softly.assertThat(cache.getStats())
+                .containsEntry("admissionRejections", 1L)
+                .containsEntry("evictions", 1L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get - обращение при занятой блокировке политики должно учитываться позже, а не теряться")
+    void get_ShouldApplyAccessBufferedWhileLockIsHeld() {
+        InMemoryCacheService<Integer, Integer> cache = weightedCache();
+        putAll(cache, 1, 9);
+
+        ReentrantLock lock = policyLock(cache);
+        lock.lock();
+        try {
+            CompletableFuture.runAsync(() -> cache.get(1)).join();
+        } finally {
+            lock.unlock();
+        }
+        touch(cache, 10, 3);
+        cache.put(10, ENTRY_WEIGHT);
+
+        softly.assertThat(cache.containsKey(1)).as("запись переведена в защищенный сегмент").isTrue();
+        softly.assertThat(cache.containsKey(2)).as("вытеснена следующая испытательная запись").isFalse();
+        softly.assertThat(cache.containsKey(10)).isTrue();
+        softly.assertThat(cache.getStats()).containsEntry("droppedAccesses", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - запись при занятой блокировке политики не должна ее ждать, а вытеснение должно выполняться позже")
+    void put_ShouldNotWaitForPolicyLockAndEvictLater() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = weightedCache();
+        putAll(cache, 1, 9);
+
+        ReentrantLock lock = policyLock(cache);
+        lock.lock();
+        try {
+            CompletableFuture.runAsync(() -> cache.put(10, ENTRY_WEIGHT)).get(WAIT_SECONDS, TimeUnit.SECONDS);
+            softly.assertThat(cache.containsKey(10)).as("запись сохранена без учета политикой").isTrue();
+        } finally {
+            lock.unlock();
+        }
+        cache.get(5);
+
+        softly.assertThat(cache.containsKey(10)).as("редкий кандидат отклонен при разборе буфера").isFalse();
+        softly.assertThat(cache.size()).isEqualTo(9);
+        softly.assertThat(cache.getStats())
+                .containsEntry("admissionRejections", 1L)
+                .containsEntry("weightedSize", 900L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put, remove, computeIfPresent - неограниченный кэш не должен брать блокировку политики")
+    void writes_ShouldNotTakePolicyLockInUnboundedCache() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+
+        ReentrantLock lock = policyLock(cache);
+        lock.lock();
+        try {
+            CompletableFuture.runAsync(() -> {
+                cache.put(1, 10);
+                cache.put(2, 20);
+                cache.computeIfPresent(1, (key, value) -> value + 1);
+                cache.remove(2);
+            }).get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            lock.unlock();
+        }
+
+        softly.assertThat(cache.get(1)).contains(11);
+        softly.assertThat(cache.containsKey(2)).isFalse();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - одновременные промахи по ключу должны ждать одну загрузку")
+    void getWithLoader_ShouldShareOneLoadBetweenConcurrentMisses() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Function<Integer, Integer> loader = key -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return key * 10;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> cache.get(1, loader), executor);
+            await(started);
+            CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> cache.get(1, loader), executor);
+            waitUntil(() -> cache.getStats().get("deduplicatedLoads").equals(1L));
+            release.countDown();
+
+            softly.assertThat(first.get(WAIT_SECONDS, TimeUnit.SECONDS)).isEqualTo(10);
+            softly.assertThat(second.get(WAIT_SECONDS, TimeUnit.SECONDS)).isEqualTo(10);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(calls).hasValue(1);
+        softly.assertThat(cache.get(1)).contains(10);
+        softly.assertThat(cache.getStats())
+                .containsEntry("loads", 1L)
+                .containsEntry("deduplicatedLoads", 1L)
+                .containsEntry("loadFailures", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - не должен сохранять результат загрузки, обогнанной явной записью")
+    void getWithLoader_ShouldNotStoreLoadOvertakenByPut() {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+
+        Integer loaded = cache.get(1, key -> {
+            cache.put(key, 2);
+            return 1;
+        });
+
+        softly.assertThat(loaded).isEqualTo(1);
+        softly.assertThat(cache.get(1)).contains(2);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - не должен сохранять результат загрузки ключа, удаленного во время нее")
+    void getWithLoader_ShouldNotStoreLoadOvertakenByRemove() {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+
+        Integer loaded = cache.get(1, key -> {
+            cache.remove(key);
+            return 1;
+        });
+
+        softly.assertThat(loaded).isEqualTo(1);
+        softly.assertThat(cache.containsKey(1)).isFalse();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - не должен сохранять результат загрузки, начатой до removeIf")
+    void getWithLoader_ShouldNotStoreLoadOvertakenByRemoveIf() {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+
+        Integer loaded = cache.get(1, key -> {
+            cache.removeIf((otherKey, value) -> false);
+            return 1;
+        });
+
+        softly.assertThat(loaded).isEqualTo(1);
+        softly.assertThat(cache.containsKey(1)).isFalse();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - должен сохранять загруженное значение и не вызывать loader при попадании")
+    void getWithLoader_ShouldStoreLoadedValue() {
+        InMemoryCacheService<Integer, Integer> cache = new InMemoryCacheService<>(TTL_MILLIS);
+        AtomicInteger calls = new AtomicInteger();
+
+        Integer first = cache.get(1, key -> calls.incrementAndGet());
+        Integer second = cache.get(1, key -> calls.incrementAndGet());
+
+        softly.assertThat(first).isEqualTo(1);
+        softly.assertThat(second).isEqualTo(1);
+        softly.assertThat(calls).hasValue(1);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - должен сразу возвращать устаревшую запись и обновлять ее один раз в фоне")
+    void getWithLoader_ShouldReturnStaleValueAndRefreshOnceInBackground() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = refreshingCache();
+        cache.put(1, 1);
+        Thread.sleep(REFRESH_AFTER_MILLIS * 3);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Function<Integer, Integer> loader = key -> {
+            calls.incrementAndGet();
+            await(release);
+            return 2;
+        };
+
+        Integer first = cache.get(1, loader);
+        Integer second = cache.get(1, loader);
+        release.countDown();
+        waitUntil(() -> cache.get(1).filter(value -> value == 2).isPresent());
+
+        softly.assertThat(first).isEqualTo(1);
+        softly.assertThat(second).isEqualTo(1);
+        softly.assertThat(cache.get(1)).contains(2);
+        softly.assertThat(calls).hasValue(1);
+        softly.assertThat(cache.getStats())
+                .containsEntry("refreshes", 1L)
+                .containsEntry("refreshFailures", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - фоновое обновление должно удалять запись, если loader вернул null")
+    void getWithLoader_ShouldRemoveEntryWhenRefreshReturnsNull() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = refreshingCache();
+        cache.put(1, 1);
+        Thread.sleep(REFRESH_AFTER_MILLIS * 3);
+
+        Integer stale = cache.get(1, key -> null);
+        waitUntil(() -> !cache.containsKey(1));
+
+        softly.assertThat(stale).isEqualTo(1);
+        softly.assertThat(cache.containsKey(1)).isFalse();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - фоновое обновление, вернувшее текущее значение, должно оставлять запись")
+    void getWithLoader_ShouldKeepEntryWhenRefreshReturnsCurrentValue() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = refreshingCache();
+        cache.put(1, 1000);
+        Thread.sleep(REFRESH_AFTER_MILLIS * 3);
+        Function<Integer, Integer> keepCurrent = key -> cache.get(key).orElse(null);
+
+        // Запись не заменяется и остается устаревшей, поэтому следующее чтение начинает новое обновление
+        waitUntil(() -> cache.get(1, keepCurrent) != null
+                && cache.getStats().get("refreshes").equals(2L));
+
+        softly.assertThat(cache.get(1)).contains(1000);
+        softly.assertThat(cache.getStats())
+                .containsEntry("refreshes", 2L)
+                .containsEntry("puts", 1L)
+                .containsEntry("removals", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - фоновое обновление не должно перезаписывать явную запись, сделанную во время него")
+    void getWithLoader_ShouldNotStoreRefreshOvertakenByPut() throws Exception {
+        InMemoryCacheService<Integer, Integer> cache = refreshingCache();
+        cache.put(1, 1);
+        Thread.sleep(REFRESH_AFTER_MILLIS * 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        cache.get(1, key -> {
+            started.countDown();
+            await(release);
+            return 2;
+        });
+        await(started);
+        cache.put(1, 3);
+        release.countDown();
+        // Второе обновление начинается только после завершения первого
+        Thread.sleep(REFRESH_AFTER_MILLIS * 3);
+        waitUntil(() -> cache.get(1, key -> 4) == 4);
+
+        // Записи: исходная, явная и второе обновление; результат первого обновления отброшен
+        softly.assertThat(cache.getStats())
+                .containsEntry("refreshes", 2L)
+                .containsEntry("puts", 3L);
+        softly.assertAll();
+    }
+}
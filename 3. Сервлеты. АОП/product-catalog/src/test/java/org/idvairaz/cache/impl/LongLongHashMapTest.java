@@ -0,0 +1,103 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class LongLongHashMapTest {
+
+    private static final long MISSING = -1L;
+
+    /** Емкость таблицы, созданной с expectedSize = 1 */
+    private static final int CAPACITY = 16;
+
+    private LongLongHashMap map;
+    private SoftAssertions softly;
+
+    @BeforeEach
+    void setUp() {
+        map = new LongLongHashMap(1, MISSING);
+        softly = new SoftAssertions();
+    }
+
+    private List<Long> keysWithHome(int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            if (LongLongHashMap.indexOf(key, CAPACITY - 1) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    @DisplayName("put/get - должен возвращать сохраненное значение и заменять его по тому же ключу")
+    void put_ShouldStoreAndReplaceValue() {
+        long previous = map.put(42L, 1L);
+        long replaced = map.put(42L, 2L);
+
+        softly.assertThat(previous).isEqualTo(MISSING);
+        softly.assertThat(replaced).isEqualTo(1L);
+        softly.assertThat(map.get(42L)).isEqualTo(2L);
+        softly.assertThat(map.get(43L)).isEqualTo(MISSING);
+        softly.assertThat(map.size()).isEqualTo(1);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("remove - должен сдвигать назад цепочку, переходящую через конец таблицы")
+    void remove_ShouldShiftBackChainWrappingAroundTable() {
+        List<Long> lastSlot = keysWithHome(CAPACITY - 1, 3);
+        long firstSlotKey = keysWithHome(0, 1).get(0);
+        // Цепочка занимает ячейки 15, 0, 1, 2: три ключа с домашней ячейкой 15 и один с ячейкой 0
+        lastSlot.forEach(key -> map.put(key, key * 10));
+        map.put(firstSlotKey, firstSlotKey * 10);
+
+        long removed = map.remove(lastSlot.get(0));
+
+        softly.assertThat(removed).isEqualTo(lastSlot.get(0) * 10);
+        softly.assertThat(map.get(lastSlot.get(0))).isEqualTo(MISSING);
+        softly.assertThat(map.get(lastSlot.get(1))).isEqualTo(lastSlot.get(1) * 10);
+        softly.assertThat(map.get(lastSlot.get(2))).isEqualTo(lastSlot.get(2) * 10);
+        softly.assertThat(map.get(firstSlotKey)).isEqualTo(firstSlotKey * 10);
+        softly.assertThat(map.size()).isEqualTo(3);
+
+        map.remove(lastSlot.get(2));
+
+        softly.assertThat(map.get(lastSlot.get(1))).isEqualTo(lastSlot.get(1) * 10);
+        softly.assertThat(map.get(firstSlotKey)).isEqualTo(firstSlotKey * 10);
+        softly.assertThat(map.remove(lastSlot.get(2))).isEqualTo(MISSING);
+        softly.assertThat(map.size()).isEqualTo(2);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("remove - должен сохранять достижимость ключей при случайных удалениях")
+    void remove_ShouldKeepRemainingKeysReachable() {
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextInt(64);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        for (long key = 0; key < 64; key++) {
+            softly.assertThat(map.get(key)).as("key %d", key).isEqualTo(expected.getOrDefault(key, MISSING));
+        }
+        softly.assertThat(map.size()).isEqualTo(expected.size());
+        softly.assertAll();
+    }
+}
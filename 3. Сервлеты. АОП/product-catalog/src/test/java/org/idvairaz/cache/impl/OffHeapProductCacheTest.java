@@ -0,0 +1,200 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.idvairaz.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+class OffHeapProductCacheTest {
+
+    /** Размер слаба: ровно десять записей по RECORD_BYTES */
+    private static final int SLAB_BYTES = 1000;
+
+    /** Размер записи товара из product(id): заголовок 53, четыре длины строк 16, название 31 */
+    private static final int RECORD_BYTES = 100;
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private OffHeapProductCache cache;
+    private SoftAssertions softly;
+
+    @BeforeEach
+    void setUp() {
+        // Три слаба: два рабочих и один резервный для уплотнения
+        cache = new OffHeapProductCache(TTL_MILLIS, 3L * SLAB_BYTES, SLAB_BYTES);
+        softly = new SoftAssertions();
+    }
+
+    private static Product product(long id) {
+        String name = String.format("product-%023d", id);
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .price(new BigDecimal("10.00"))
+                .stockQuantity(1)
+                .build();
+    }
+
+    private void putAll(long fromInclusive, long toInclusive) {
+        LongStream.rangeClosed(fromInclusive, toInclusive).forEach(id -> cache.put(id, product(id)));
+    }
+
+    @Test
+    @DisplayName("put/get - должен возвращать сохраненный товар и заменять его новой версией")
+    void put_ShouldStoreAndReplaceProduct() {
+        Product first = product(1).withStockQuantity(5);
+        Product second = first.withStockQuantity(7);
+
+        cache.put(1L, first);
+        Optional<Product> stored = cache.get(1L);
+        cache.put(1L, second);
+        Optional<Product> replaced = cache.get(1L);
+
+        softly.assertThat(stored).map(Product::getStockQuantity).contains(5);
+        softly.assertThat(replaced).map(Product::getStockQuantity).contains(7);
+        softly.assertThat(cache.get(2L)).isEmpty();
+        softly.assertThat(cache.size()).isEqualTo(1);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("remove - должен удалять запись и учитывать ее как мусор")
+    void remove_ShouldDeleteRecord() {
+        cache.put(1L, product(1));
+        cache.put(2L, product(2));
+
+        cache.remove(1L);
+
+        softly.assertThat(cache.get(1L)).isEmpty();
+        softly.assertThat(cache.get(2L)).isPresent();
+        softly.assertThat(cache.getStats())
+                .containsEntry("currentSize", 1)
+                .containsEntry("liveBytes", (long) RECORD_BYTES)
+                .containsEntry("bytesUsed", 2L * RECORD_BYTES);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get/put - должен восстанавливать все поля товара")
+    void get_ShouldRoundTripAllFields() {
+        Product product = Product.builder()
+                .id(10L)
+                .name("Наушники беспроводные")
+                .description("Описание с эмодзи 🎧")
+                .price(new BigDecimal("1999.90"))
+                .category("Электроника")
+                .brand("Brand")
+                .stockQuantity(42)
+                .createdAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 123_000_000))
+                .updatedAt(LocalDateTime.of(2024, 2, 3, 4, 5, 6, 456_000_000))
+                .build();
+
+        cache.put(10L, product);
+
+        softly.assertThat(cache.get(10L)).get().usingRecursiveComparison().isEqualTo(product);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get/put - должен восстанавливать null-поля товара")
+    void get_ShouldRoundTripNullFields() {
+        Product product = Product.builder().id(11L).build();
+
+        cache.put(11L, product);
+
+        softly.assertThat(cache.get(11L)).get().usingRecursiveComparison().isEqualTo(product);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - должен отклонять запись больше слаба и удалять прежнюю версию")
+    void put_ShouldRejectRecordLargerThanSlab() {
+        cache.put(1L, product(1));
+
+        cache.put(1L, product(1).withName("x".repeat(SLAB_BYTES)));
+
+        softly.assertThat(cache.get(1L)).isEmpty();
+        softly.assertThat(cache.getStats()).containsEntry("rejected", 1L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - должен отклонять товар с ценой вне диапазона long")
+    void put_ShouldRejectPriceOutOfLongRange() {
+        cache.put(1L, product(1).withPrice(new BigDecimal(BigInteger.TWO.pow(70))));
+
+        softly.assertThat(cache.get(1L)).isEmpty();
+        softly.assertThat(cache.getStats()).containsEntry("rejected", 1L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - должен уплотнять слаб с малым объемом живых записей в резервный")
+    void put_ShouldCompactLiveRecordsIntoReserveSlab() {
+        putAll(1, 20);
+        LongStream.rangeClosed(1, 8).forEach(cache::remove);
+
+        cache.put(21L, product(21));
+
+        softly.assertThat(cache.getStats())
+                .containsEntry("compactions", 1L)
+                .containsEntry("evictions", 0L)
+                .containsEntry("slabs", 3)
+                .containsEntry("currentSize", 13);
+        LongStream.rangeClosed(9, 21).forEach(id ->
+                softly.assertThat(cache.get(id)).as("id %d", id).map(Product::getName).contains(product(id).getName()));
+        LongStream.rangeClosed(1, 8).forEach(id -> softly.assertThat(cache.get(id)).as("id %d", id).isEmpty());
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("put - должен вытеснять записи слаба, когда кэш заполнен живыми записями")
+    void put_ShouldEvictWhenCacheIsFull() {
+        putAll(1, 20);
+
+        cache.put(21L, product(21));
+
+        Map<String, Object> stats = cache.getStats();
+        softly.assertThat(stats)
+                .containsEntry("evictions", 10L)
+                .containsEntry("compactions", 0L)
+                .containsEntry("currentSize", 11);
+        LongStream.rangeClosed(1, 10).forEach(id -> softly.assertThat(cache.get(id)).as("id %d", id).isEmpty());
+        LongStream.rangeClosed(11, 21).forEach(id -> softly.assertThat(cache.get(id)).as("id %d", id).isPresent());
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - не должен сохранять результат загрузки, обогнанной явной записью")
+    void getWithLoader_ShouldNotStoreLoadOvertakenByPut() {
+        Product stale = product(1).withStockQuantity(1);
+        Product fresh = product(1).withStockQuantity(2);
+
+        Product loaded = cache.get(1L, key -> {
+            cache.put(key, fresh);
+            return stale;
+        });
+
+        softly.assertThat(loaded.getStockQuantity()).isEqualTo(1);
+        softly.assertThat(cache.get(1L)).map(Product::getStockQuantity).contains(2);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get(key, loader) - должен сохранять загруженный товар")
+    void getWithLoader_ShouldStoreLoadedProduct() {
+        Product loaded = cache.get(1L, OffHeapProductCacheTest::product);
+
+        softly.assertThat(loaded.getId()).isEqualTo(1L);
+        softly.assertThat(cache.get(1L)).isPresent();
+        softly.assertAll();
+    }
+}
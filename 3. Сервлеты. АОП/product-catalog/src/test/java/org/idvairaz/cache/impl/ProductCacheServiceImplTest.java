@@ -0,0 +1,229 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.idvairaz.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ProductCacheServiceImplTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private InMemoryCacheService<Long, Product> productCache;
+    private InMemoryCacheService<String, IndexEntry> categoryCache;
+    private ProductCacheServiceImpl cacheService;
+    private SoftAssertions softly;
+
+    @BeforeEach
+    void setUp() {
+        productCache = new InMemoryCacheService<>(TTL_MILLIS);
+        categoryCache = new InMemoryCacheService<>(TTL_MILLIS);
+        cacheService = new ProductCacheServiceImpl(
+                productCache,
+                categoryCache,
+                new InMemoryCacheService<>(TTL_MILLIS),
+                new InMemoryCacheService<>(TTL_MILLIS),
+                new InMemoryCacheService<>(TTL_MILLIS),
+                new InMemoryCacheService<>(TTL_MILLIS));
+        softly = new SoftAssertions();
+    }
+
+    private static Product product(long id, String name, String category) {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .category(category)
+                .brand("Brand")
+                .price(new BigDecimal("10.00"))
+                .stockQuantity(1)
+                .createdAt(CREATED_AT)
+                .updatedAt(CREATED_AT)
+                .build();
+    }
+
+    /** Новая версия товара: обновлена позже прежней */
+    private static Product updated(Product product) {
+        return product.withUpdatedAt(product.getUpdatedAt().plusMinutes(1));
+    }
+
+    private void loadCategory(String category, Product... products) {
+        cacheService.getProductsByCategory(category, ignored -> List.of(products));
+    }
+
+    private Optional<List<Long>> cachedCategoryIds(String category) {
+        return cacheService.getCachedProductsByCategory(category)
+                .map(products -> products.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    @DisplayName("cacheNewProduct - должен вставлять товар в закэшированную категорию по порядку названий")
+    void cacheNewProduct_ShouldInsertIntoCachedCategoryInNameOrder() {
+        loadCategory("Phones", product(1, "Alpha", "Phones"), product(3, "Gamma", "Phones"));
+        OptionalLong versionBefore = cacheService.getCategoryVersion("Phones");
+
+        cacheService.cacheNewProduct(product(2, "Beta", "Phones"));
+
+        softly.assertThat(cachedCategoryIds("phones")).contains(List.of(1L, 2L, 3L));
+        softly.assertThat(versionBefore).isPresent();
+        softly.assertThat(cacheService.getCategoryVersion("Phones")).isPresent().isNotEqualTo(versionBefore);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("applyProductChanges - переименованный товар должен перемещаться на новое место в категории")
+    void applyProductChanges_ShouldMoveRenamedProductWithinCategory() {
+        Product alpha = product(1, "Alpha", "Phones");
+        loadCategory("Phones", alpha, product(2, "Beta", "Phones"), product(3, "Gamma", "Phones"));
+        cacheService.getProductByName("Alpha", name -> Optional.of(alpha));
+        AtomicInteger nameLoads = new AtomicInteger();
+
+        cacheService.applyProductChanges(List.of(updated(alpha).withName("Zeta")), List.of());
+
+        softly.assertThat(cachedCategoryIds("Phones")).contains(List.of(2L, 3L, 1L));
+        softly.assertThat(cacheService.getProductByName("zeta", name -> {
+            nameLoads.incrementAndGet();
+            return Optional.empty();
+        })).map(Product::getId).contains(1L);
+        softly.assertThat(nameLoads).as("новое название найдено по индексу названий").hasValue(0);
+        softly.assertThat(cacheService.getProductByName("Alpha", name -> {
+            nameLoads.incrementAndGet();
+            return Optional.empty();
+        })).isEmpty();
+        softly.assertThat(nameLoads).as("прежнее название удалено из индекса названий").hasValue(1);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("applyProductChanges - товар, сменивший категорию, должен переходить в индекс новой категории")
+    void applyProductChanges_ShouldMoveProductBetweenCategories() {
+        Product beta = product(2, "Beta", "Phones");
+        loadCategory("Phones", product(1, "Alpha", "Phones"), beta);
+        loadCategory("Tablets", product(3, "Gamma", "Tablets"));
+
+        cacheService.applyProductChanges(List.of(updated(beta).withCategory("Tablets")), List.of());
+
+        softly.assertThat(cachedCategoryIds("Phones")).contains(List.of(1L));
+        softly.assertThat(cachedCategoryIds("Tablets")).contains(List.of(2L, 3L));
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("invalidateProduct - удаленный товар должен исчезать из кэша и индексов")
+    void invalidateProduct_ShouldRemoveProductFromIndexes() {
+        loadCategory("Phones", product(1, "Alpha", "Phones"), product(2, "Beta", "Phones"));
+
+        cacheService.invalidateProduct(1L);
+
+        softly.assertThat(cacheService.getCachedProduct(1L)).isEmpty();
+        softly.assertThat(cachedCategoryIds("Phones")).contains(List.of(2L));
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("applyProductChanges - при неизвестной прежней версии товара должен удалять индексы других категорий с ним")
+    void applyProductChanges_ShouldDropMisplacedIndexesForUnknownPreviousVersion() {
+        Product alpha = product(1, "Alpha", "Phones");
+        loadCategory("Phones", alpha, product(2, "Beta", "Phones"));
+        loadCategory("Tablets", product(3, "Gamma", "Tablets"));
+        productCache.remove(1L);
+
+        cacheService.applyProductChanges(List.of(updated(alpha).withCategory("Tablets")), List.of());
+
+        softly.assertThat(categoryCache.containsKey("phones")).isFalse();
+        softly.assertThat(cachedCategoryIds("Tablets")).contains(List.of(1L, 3L));
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("getProductsByCategory - не должен кэшировать список, загруженный во время изменения товаров")
+    void getProductsByCategory_ShouldNotCacheListLoadedDuringWrite() {
+        Product stale = product(1, "Alpha", "Phones");
+        Product fresh = updated(stale).withStockQuantity(5);
+        cacheService.cacheProduct(stale);
+
+        List<Product> loaded = cacheService.getProductsByCategory("Phones", ignored -> {
+            cacheService.applyProductChanges(List.of(fresh), List.of());
+            return List.of(stale);
+        });
+
+        softly.assertThat(loaded).containsExactly(stale);
+        softly.assertThat(categoryCache.containsKey("phones")).isFalse();
+        softly.assertThat(cacheService.getCachedProduct(1L)).map(Product::getStockQuantity).contains(5);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("getProduct - должен запоминать отсутствие товара до его создания")
+    void getProduct_ShouldRememberMissingIdUntilCreated() {
+        AtomicInteger loads = new AtomicInteger();
+
+        Optional<Product> first = cacheService.getProduct(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        Optional<Product> second = cacheService.getProduct(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        cacheService.cacheNewProduct(product(1, "Alpha", "Phones"));
+        Optional<Product> created = cacheService.getProduct(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        softly.assertThat(first).isEmpty();
+        softly.assertThat(second).isEmpty();
+        softly.assertThat(loads).hasValue(1);
+        softly.assertThat(created).map(Product::getName).contains("Alpha");
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("getProduct - не должен запоминать отсутствие, загруженное во время создания товара")
+    void getProduct_ShouldNotRememberMissingIdLoadedDuringCreate() {
+        Optional<Product> loaded = cacheService.getProduct(1L, id -> {
+            cacheService.cacheNewProduct(product(1, "Alpha", "Phones"));
+            return Optional.empty();
+        });
+
+        softly.assertThat(loaded).isEmpty();
+        softly.assertThat(cacheService.getProduct(1L, id -> Optional.empty())).map(Product::getId).contains(1L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("getProductByName - переименование должно сбрасывать запомненное отсутствие названия")
+    void getProductByName_ShouldForgetMissingNameOnRename() {
+        Product alpha = product(1, "Alpha", "Phones");
+        cacheService.cacheNewProduct(alpha);
+        AtomicInteger loads = new AtomicInteger();
+
+        cacheService.getProductByName("Delta", name -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        cacheService.getProductByName("Delta", name -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        cacheService.applyProductChanges(List.of(updated(alpha).withName("Delta")), List.of());
+        Optional<Product> renamed = cacheService.getProductByName("Delta", name -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        softly.assertThat(loads).hasValue(1);
+        softly.assertThat(renamed).map(Product::getId).contains(1L);
+        softly.assertAll();
+    }
+}
@@ -0,0 +1,89 @@
+package org.idvairaz.cache.impl;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class TieredCacheServiceTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private InMemoryCacheService<Integer, Integer> firstLevel;
+    private InMemoryCacheService<Integer, Integer> secondLevel;
+    private TieredCacheService<Integer, Integer> cache;
+    private SoftAssertions softly;
+
+    /** Действие, выполняемое один раз сразу после следующего чтения второго уровня */
+    private Runnable afterSecondLevelRead;
+
+    @BeforeEach
+    void setUp() {
+        afterSecondLevelRead = () -> { };
+        firstLevel = new InMemoryCacheService<>(TTL_MILLIS);
+        secondLevel = new InMemoryCacheService<>(TTL_MILLIS) {
+            @Override
+            public Optional<Integer> get(Integer key) {
+                Optional<Integer> value = super.get(key);
+                Runnable action = afterSecondLevelRead;
+                afterSecondLevelRead = () -> { };
+                action.run();
+                return value;
+            }
+        };
+        cache = new TieredCacheService<>(firstLevel, secondLevel);
+        softly = new SoftAssertions();
+    }
+
+    @Test
+    @DisplayName("get - должен поднимать значение второго уровня в первый")
+    void get_ShouldPromoteSecondLevelHit() {
+        secondLevel.put(1, 10);
+
+        Optional<Integer> value = cache.get(1);
+
+        softly.assertThat(value).contains(10);
+        softly.assertThat(firstLevel.get(1)).contains(10);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get - не должен поднимать значение, замененное записью во время подъема")
+    void get_ShouldNotPromoteValueOvertakenByPut() {
+        cache.put(1, 1);
+        firstLevel.remove(1);
+        afterSecondLevelRead = () -> cache.put(1, 2);
+
+        Optional<Integer> read = cache.get(1);
+
+        softly.assertThat(read).contains(1);
+        softly.assertThat(firstLevel.get(1)).contains(2);
+        softly.assertThat(cache.get(1)).contains(2);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get - не должен поднимать значение, удаленное во время подъема")
+    void get_ShouldNotPromoteValueOvertakenByRemove() {
+        cache.put(1, 1);
+        firstLevel.remove(1);
+        afterSecondLevelRead = () -> cache.remove(1);
+
+        Optional<Integer> read = cache.get(1);
+
+        softly.assertThat(read).contains(1);
+        softly.assertThat(firstLevel.containsKey(1)).isFalse();
+        softly.assertThat(cache.get(1)).isEmpty();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("get - промах обоих уровней не должен сохранять запись")
+    void get_ShouldReturnEmptyOnMissOfBothLevels() {
+        softly.assertThat(cache.get(1)).isEmpty();
+        softly.assertThat(firstLevel.containsKey(1)).isFalse();
+        softly.assertAll();
+    }
+}
@@ -0,0 +1,243 @@
+package org.idvairaz.service;
+
+import org.assertj.core.api.SoftAssertions;
+import org.idvairaz.model.AuditEntry;
+import org.idvairaz.repository.AuditRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+class AsyncAuditWriterTest {
+
+    /** Интервал сброса, который не истекает за время теста */
+    private static final long LONG_INTERVAL_MILLIS = 60_000;
+
+    /** Максимальное время ожидания фоновых потоков, секунд */
+    private static final long WAIT_SECONDS = 5;
+
+    private RecordingAuditRepository repository;
+    private AsyncAuditWriter writer;
+    private SoftAssertions softly;
+
+    /**
+     * Репозиторий, запоминающий сохраненные пакеты. Может задержать первое сохранение
+     * до release, чтобы фоновый поток писателя был занят и очередь заполнялась.
+     */
+    private static class RecordingAuditRepository implements AuditRepository {
+
+        private final List<List<AuditEntry>> saved = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean blockFirstSave = new AtomicBoolean();
+        private final CountDownLatch firstSaveStarted = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void save(String username, String action, String details) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void saveAll(List<AuditEntry> entries) {
+            if (blockFirstSave.compareAndSet(true, false)) {
+                firstSaveStarted.countDown();
+                try {
+                    if (!release.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Save was not released");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Запись пакета прервана", e);
+                }
+            }
+            saved.add(List.copyOf(entries));
+        }
+
+        @Override
+        public List<String> findAll() {
+            return List.of();
+        }
+
+        @Override
+        public void clear() {
+            saved.clear();
+        }
+
+        List<AuditEntry> savedEntries() {
+            return saved.stream().flatMap(List::stream).toList();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new RecordingAuditRepository();
+        softly = new SoftAssertions();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.release.countDown();
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static AuditEntry entry(String action) {
+        return AuditEntry.builder()
+                .username("admin")
+                .action(action)
+                .build();
+    }
+
+    /**
+     * Писатель с очередью на одну запись и пакетами по одной записи, у которого первое
+     * сохранение задержано: после вызова фоновый поток занят записью a1, а a2 заполняет очередь.
+     */
+    private AsyncAuditWriter busyWriter(AsyncAuditWriter.OverflowPolicy policy) {
+        repository.blockFirstSave.set(true);
+        AsyncAuditWriter busy = new AsyncAuditWriter(repository, 1, 1, LONG_INTERVAL_MILLIS, policy);
+        busy.submit(entry("a1"));
+        await(repository.firstSaveStarted);
+        busy.submit(entry("a2"));
+        return busy;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Latch was not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("submit - должен записывать пакет, как только набрано flushSize записей")
+    void submit_ShouldFlushWhenBatchIsFull() throws Exception {
+        writer = new AsyncAuditWriter(repository, 10, 3, LONG_INTERVAL_MILLIS, AsyncAuditWriter.OverflowPolicy.DROP);
+
+        writer.submit(entry("a1"));
+        writer.submit(entry("a2"));
+        writer.submit(entry("a3"));
+        waitUntil(() -> !repository.saved.isEmpty());
+
+        softly.assertThat(repository.saved).containsExactly(List.of(entry("a1"), entry("a2"), entry("a3")));
+        softly.assertThat(writer.getStats()).containsEntry("batches", 1L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("submit - должен записывать неполный пакет по истечении flushIntervalMillis")
+    void submit_ShouldFlushIncompleteBatchAfterInterval() throws Exception {
+        writer = new AsyncAuditWriter(repository, 10, 100, 50, AsyncAuditWriter.OverflowPolicy.DROP);
+
+        writer.submit(entry("a1"));
+        waitUntil(() -> !repository.saved.isEmpty());
+
+        softly.assertThat(repository.saved).containsExactly(List.of(entry("a1")));
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("submit - политика DROP должна отбрасывать запись при переполненной очереди")
+    void submit_ShouldDropEntryWhenQueueIsFull() {
+        writer = busyWriter(AsyncAuditWriter.OverflowPolicy.DROP);
+
+        writer.submit(entry("a3"));
+        repository.release.countDown();
+        writer.close();
+
+        softly.assertThat(repository.savedEntries()).containsExactly(entry("a1"), entry("a2"));
+        softly.assertThat(writer.getStats())
+                .containsEntry("dropped", 1L)
+                .containsEntry("flushed", 2L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("submit - политика SPILL должна сохранять запись синхронно при переполненной очереди")
+    void submit_ShouldSpillEntryWhenQueueIsFull() {
+        writer = busyWriter(AsyncAuditWriter.OverflowPolicy.SPILL);
+
+        writer.submit(entry("a3"));
+
+        softly.assertThat(repository.saved).as("сохранено в потоке вызывающего").containsExactly(List.of(entry("a3")));
+        repository.release.countDown();
+        writer.close();
+        softly.assertThat(repository.savedEntries()).containsExactlyInAnyOrder(entry("a1"), entry("a2"), entry("a3"));
+        softly.assertThat(writer.getStats())
+                .containsEntry("spilled", 1L)
+                .containsEntry("dropped", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("submit - политика BLOCK должна ждать места в очереди, не теряя запись")
+    void submit_ShouldBlockUntilQueueHasRoom() throws Exception {
+        writer = busyWriter(AsyncAuditWriter.OverflowPolicy.BLOCK);
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> writer.submit(entry("a3")));
+
+        softly.assertThatThrownBy(() -> blocked.get(200, TimeUnit.MILLISECONDS))
+                .isInstanceOf(TimeoutException.class);
+        repository.release.countDown();
+        blocked.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        writer.close();
+        softly.assertThat(repository.savedEntries()).containsExactly(entry("a1"), entry("a2"), entry("a3"));
+        softly.assertThat(writer.getStats()).containsEntry("dropped", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("close - должен дописывать очередь, а записи после остановки сохранять синхронно")
+    void close_ShouldDrainQueueAndWriteLaterEntriesSynchronously() {
+        writer = new AsyncAuditWriter(repository, 10, 10, LONG_INTERVAL_MILLIS, AsyncAuditWriter.OverflowPolicy.DROP);
+        List.of("a1", "a2", "a3", "a4", "a5").forEach(action -> writer.submit(entry(action)));
+
+        writer.close();
+        writer.submit(entry("a6"));
+
+        softly.assertThat(repository.savedEntries())
+                .containsExactly(entry("a1"), entry("a2"), entry("a3"), entry("a4"), entry("a5"), entry("a6"));
+        softly.assertThat(writer.getStats())
+                .containsEntry("flushed", 5L)
+                .containsEntry("spilled", 1L)
+                .containsEntry("failed", 0L);
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("close - не должен прерывать пакет, который фоновый поток записывает в момент остановки")
+    void close_ShouldNotInterruptBatchInProgress() throws Exception {
+        writer = busyWriter(AsyncAuditWriter.OverflowPolicy.BLOCK);
+        Thread closer = new Thread(writer::close);
+
+        closer.start();
+        waitUntil(() -> closer.getState() == Thread.State.TIMED_WAITING);
+        repository.release.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(WAIT_SECONDS));
+
+        softly.assertThat(repository.savedEntries()).containsExactly(entry("a1"), entry("a2"));
+        softly.assertThat(writer.getStats())
+                .containsEntry("flushed", 2L)
+                .containsEntry("failed", 0L);
+        softly.assertAll();
+    }
+}
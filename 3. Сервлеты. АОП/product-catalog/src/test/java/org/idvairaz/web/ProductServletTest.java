@@ -1,12 +1,16 @@
 package org.idvairaz.web;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.idvairaz.dto.CreateProductDTO;
 import org.idvairaz.dto.ProductDTO;
 import org.idvairaz.mapper.ProductMapper;
 import org.idvairaz.model.Product;
+import org.idvairaz.model.ProductPage;
 import org.idvairaz.service.ProductService;
 import org.instancio.Instancio;
 import static org.instancio.Select.field;
@@ -22,13 +26,19 @@ import org.mockito.quality.Strictness;
 import org.assertj.core.api.SoftAssertions;
 
 import java.io.BufferedReader;
-import java.io.PrintWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,7 +60,7 @@ class ProductServletTest {
 
     private ProductServlet productServlet;
     private ObjectMapper objectMapper;
-    private StringWriter responseWriter;
+    private ByteArrayOutputStream responseBody;
     private SoftAssertions softly;
 
     @BeforeEach
@@ -60,10 +70,32 @@ class ProductServletTest {
         setField(productServlet, "productMapper", productMapper);
         setField(productServlet, "objectMapper", JacksonConfig.getObjectMapper());
         objectMapper = JacksonConfig.getObjectMapper();
-        responseWriter = new StringWriter();
+        responseBody = new ByteArrayOutputStream();
         softly = new SoftAssertions();
     }
 
+    private String responseText() {
+        return responseBody.toString(StandardCharsets.UTF_8);
+    }
+
+    private ServletOutputStream outputStreamOf(ByteArrayOutputStream buffer) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+        };
+    }
+
     private void setField(Object target, String fieldName, Object value) {
         try {
             var field = target.getClass().getDeclaredField(fieldName);
@@ -81,17 +113,21 @@ class ProductServletTest {
         ProductDTO productDTO = Instancio.create(ProductDTO.class);
 
         when(request.getPathInfo()).thenReturn("/");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
-        when(productService.getAllProducts()).thenReturn(List.of(product));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        doAnswer(invocation -> {
+            Consumer<Product> action = invocation.getArgument(0);
+            action.accept(product);
+            return null;
+        }).when(productService).forEachProduct(any());
         when(productMapper.toDTO(product)).thenReturn(productDTO);
 
         productServlet.doGet(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains(productDTO.getName());
+        softly.assertThat(responseText()).contains(productDTO.getName());
         softly.assertThatCode(() -> {
             verify(response).setContentType("application/json");
             verify(response).setCharacterEncoding("UTF-8");
-            verify(productService).getAllProducts();
+            verify(productService).forEachProduct(any());
         }).doesNotThrowAnyException();
         softly.assertAll();
     }
@@ -103,7 +139,7 @@ class ProductServletTest {
         ProductDTO productDTO = Instancio.create(ProductDTO.class);
 
         when(request.getPathInfo()).thenReturn("/1");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(productService.getProductById(1L)).thenReturn(Optional.of(product));
         when(productMapper.toDTO(product)).thenReturn(productDTO);
 
@@ -116,16 +152,38 @@ class ProductServletTest {
         softly.assertAll();
     }
 
+    @Test
+    @DisplayName("GET /api/products/{id} - должен вернуть 304 если ETag клиента актуален")
+    void doGet_ShouldReturn304WhenETagMatches() throws Exception {
+        Product product = Instancio.create(Product.class);
+        String etag = ConditionalGet.productTag(product);
+
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn(etag);
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).isEmpty();
+        softly.assertThatCode(() -> {
+            verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            verify(response).setHeader("ETag", etag);
+            verify(productMapper, never()).toDTO(any(Product.class));
+        }).doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
     @Test
     @DisplayName("GET /api/products/{id} - должен вернуть 404 если товар не найден")
     void doGet_ShouldReturn404WhenProductNotFound() throws Exception {
         when(request.getPathInfo()).thenReturn("/999");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(productService.getProductById(999L)).thenReturn(Optional.empty());
 
         productServlet.doGet(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains("Товар не найден");
+        softly.assertThat(responseText()).contains("Товар не найден");
         softly.assertThatCode(() -> verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND)).doesNotThrowAnyException();
         softly.assertAll();
     }
@@ -138,14 +196,14 @@ class ProductServletTest {
         ProductDTO productDTO = Instancio.create(ProductDTO.class);
 
         when(request.getReader()).thenReturn(new BufferedReader(new StringReader(objectMapper.writeValueAsString(createDto))));
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(productMapper.toEntity(any(CreateProductDTO.class))).thenReturn(product);
         when(productService.addProduct(any(Product.class))).thenReturn(product);
         when(productMapper.toDTO(product)).thenReturn(productDTO);
 
         productServlet.doPost(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains(productDTO.getName());
+        softly.assertThat(responseText()).contains(productDTO.getName());
         softly.assertThatCode(() -> {
             verify(response).setStatus(HttpServletResponse.SC_CREATED);
             verify(productService).addProduct(any(Product.class));
@@ -160,28 +218,108 @@ class ProductServletTest {
                 .ignore(field(CreateProductDTO::getName))
                 .create();
         when(request.getReader()).thenReturn(new BufferedReader(new StringReader(objectMapper.writeValueAsString(invalidDto))));
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
 
         productServlet.doPost(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains("Ошибка валидации");
+        softly.assertThat(responseText()).contains("Ошибка валидации");
         softly.assertThatCode(() -> verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST)).doesNotThrowAnyException();
         softly.assertAll();
     }
 
+    @Test
+    @DisplayName("POST /api/products/batch - должен применить валидные элементы и вернуть результат по каждому")
+    void doPost_ShouldProcessBatchWithPerItemResults() throws Exception {
+        Product created = Instancio.of(Product.class)
+                .ignore(field(Product::getId))
+                .create();
+        Product existing = Instancio.of(Product.class)
+                .set(field(Product::getId), 7L)
+                .create();
+        String body = """
+                {"create":[{"name":"Batch Product","description":"d","price":10.5,"category":"C","brand":"B","stockQuantity":1}],
+                 "update":[{"id":999,"price":5}],
+                 "delete":[7]}
+                """;
+
+        when(request.getPathInfo()).thenReturn("/batch");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(body)));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productMapper.toEntity(any(CreateProductDTO.class))).thenReturn(created);
+        when(productService.getProductsByIds(any())).thenReturn(List.of(existing));
+        when(productService.applyBatch(any(), any())).thenAnswer(invocation -> {
+            List<Product> toSave = invocation.getArgument(0);
+            return toSave.stream().map(product -> product.withId(100L)).toList();
+        });
+
+        productServlet.doPost(request, response);
+
+        softly.assertThat(responseText())
+                .contains("\"operation\":\"create\"", "\"id\":100", "\"status\":201")
+                .contains("\"operation\":\"update\"", "\"status\":404")
+                .contains("\"succeeded\":2", "\"failed\":1");
+        softly.assertThatCode(() -> verify(productService).applyBatch(List.of(created), List.of(existing)))
+                .doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("POST /api/products/batch - должен отклонять только элементы с занятыми или повторяющимися названиями")
+    void doPost_ShouldRejectOnlyBatchItemsWithConflictingNames() throws Exception {
+        Product existing = Instancio.of(Product.class)
+                .set(field(Product::getId), 7L)
+                .set(field(Product::getName), "Old")
+                .create();
+        Product taken = Instancio.of(Product.class)
+                .set(field(Product::getId), 5L)
+                .set(field(Product::getName), "Existing")
+                .create();
+        String body = """
+                {"create":[{"name":"Phone","description":"d","price":10.5,"category":"C","brand":"B","stockQuantity":1},
+                           {"name":"phone","description":"d","price":10.5,"category":"C","brand":"B","stockQuantity":1},
+                           {"name":"Existing","description":"d","price":10.5,"category":"C","brand":"B","stockQuantity":1}],
+                 "update":[{"id":7,"name":"PHONE"}]}
+                """;
+        List<String> savedNames = new ArrayList<>();
+
+        when(request.getPathInfo()).thenReturn("/batch");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(body)));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productMapper.toEntity(any(CreateProductDTO.class))).thenAnswer(invocation ->
+                Product.builder().name(invocation.<CreateProductDTO>getArgument(0).getName()).build());
+        when(productService.getProductByName(any())).thenReturn(Optional.empty());
+        when(productService.getProductByName("Existing")).thenReturn(Optional.of(taken));
+        when(productService.getProductsByIds(any())).thenReturn(List.of(existing));
+        when(productService.applyBatch(any(), any())).thenAnswer(invocation -> {
+            List<Product> toSave = invocation.getArgument(0);
+            toSave.forEach(product -> savedNames.add(product.getName()));
+            return toSave.stream().map(product -> product.withId(100L)).toList();
+        });
+
+        productServlet.doPost(request, response);
+
+        JsonNode result = objectMapper.readTree(responseText());
+        softly.assertThat(result.get("results"))
+                .extracting(item -> item.get("status").asInt())
+                .containsExactly(201, 409, 400, 409);
+        softly.assertThat(result.get("succeeded").asInt()).isEqualTo(1);
+        softly.assertThat(savedNames).containsExactly("Phone");
+        softly.assertAll();
+    }
+
     @Test
     @DisplayName("DELETE /api/products/{id} - должен удалить товар и вернуть подтверждение")
     void doDelete_ShouldDeleteProduct() throws Exception {
         Product product = Instancio.create(Product.class);
 
         when(request.getPathInfo()).thenReturn("/1");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(productService.getProductById(1L)).thenReturn(Optional.of(product));
 
         productServlet.doDelete(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains("Товар успешно удален");
-        softly.assertThat(responseWriter.toString()).contains("\"status\"");
+        softly.assertThat(responseText()).contains("Товар успешно удален");
+        softly.assertThat(responseText()).contains("\"status\"");
         softly.assertThatCode(() -> verify(productService).deleteProduct(1L)).doesNotThrowAnyException();
         softly.assertAll();
     }
@@ -193,7 +331,7 @@ class ProductServletTest {
         ProductDTO productDTO = Instancio.create(ProductDTO.class);
 
         when(request.getPathInfo()).thenReturn("/category/Electronics");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(productService.getProductsByCategory("Electronics")).thenReturn(List.of(product));
         when(productMapper.toDTO(product)).thenReturn(productDTO);
 
@@ -203,6 +341,159 @@ class ProductServletTest {
             verify(productService).getProductsByCategory("Electronics");
             verify(response).setContentType("application/json");
         }).doesNotThrowAnyException();
+        softly.assertThat(responseText())
+                .isEqualTo(objectMapper.writeValueAsString(List.of(productDTO)));
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/category/{category} - должен отдавать слабый ETag и вернуть 304 по нему")
+    void doGet_ShouldReturn304ForWeakCategoryListETag() throws Exception {
+        String etag = ConditionalGet.listTag("c", 5L);
+
+        when(request.getPathInfo()).thenReturn("/category/Electronics");
+        when(request.getHeader("If-None-Match")).thenReturn(etag.substring(2));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.getCategoryVersion("Electronics")).thenReturn(OptionalLong.of(5L));
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(etag).startsWith("W/\"");
+        softly.assertThat(responseText()).isEmpty();
+        softly.assertThatCode(() -> {
+            verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            verify(response).setHeader("ETag", etag);
+            verify(productService, never()).getProductsByCategory(any());
+        }).doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products?limit= - должен вернуть страницу товаров с курсором следующей страницы")
+    void doGet_ShouldReturnProductsPage() throws Exception {
+        Product product = Instancio.create(Product.class);
+        ProductDTO productDTO = Instancio.create(ProductDTO.class);
+
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("limit")).thenReturn("1");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.getProductsPage(null, 1)).thenReturn(new ProductPage(List.of(product), 5L));
+        when(productMapper.toDTO(product)).thenReturn(productDTO);
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).contains(productDTO.getName());
+        softly.assertThat(responseText()).contains("\"nextCursor\":\"NQ\"");
+        softly.assertThatCode(() -> verify(productService).getProductsPage(null, 1)).doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products?limit= - должен вернуть 400 при неверном размере страницы")
+    void doGet_ShouldReturn400ForInvalidLimit() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("limit")).thenReturn("0");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).contains("limit");
+        softly.assertThatCode(() -> verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST)).doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search?q= - должен вернуть страницу найденных товаров")
+    void doGet_ShouldReturnSearchResultsPage() throws Exception {
+        Product product = Instancio.create(Product.class);
+        ProductDTO productDTO = Instancio.create(ProductDTO.class);
+
+        when(request.getPathInfo()).thenReturn("/search");
+        when(request.getParameter("q")).thenReturn("wireless headphones");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.searchProducts("wireless headphones", null, null, 50))
+                .thenReturn(new ProductPage(List.of(product), null));
+        when(productMapper.toDTO(product)).thenReturn(productDTO);
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).contains(productDTO.getName());
+        softly.assertThat(responseText()).contains("\"nextCursor\":null");
+        softly.assertThatCode(() -> verify(productService).searchProducts("wireless headphones", null, null, 50))
+                .doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search?after= - должен передать релевантность и id из курсора и вернуть курсор с релевантностью")
+    void doGet_ShouldPassSearchCursorRankAndId() throws Exception {
+        Product product = Instancio.create(Product.class);
+        ProductDTO productDTO = Instancio.create(ProductDTO.class);
+
+        when(request.getPathInfo()).thenReturn("/search");
+        when(request.getParameter("q")).thenReturn("headphones");
+        when(request.getParameter("after")).thenReturn("MC4yNTo3");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.searchProducts("headphones", 0.25f, 7L, 50))
+                .thenReturn(new ProductPage(List.of(product), 9L, 0.5f));
+        when(productMapper.toDTO(product)).thenReturn(productDTO);
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).contains("\"nextCursor\":\"MC41Ojk\"");
+        softly.assertThatCode(() -> verify(productService).searchProducts("headphones", 0.25f, 7L, 50))
+                .doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search?after= - должен вернуть 400 для курсора без релевантности")
+    void doGet_ShouldReturn400ForSearchCursorWithoutRank() throws Exception {
+        when(request.getPathInfo()).thenReturn("/search");
+        when(request.getParameter("q")).thenReturn("headphones");
+        when(request.getParameter("after")).thenReturn("NQ");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).contains("Неверный курсор страницы");
+        softly.assertThatCode(() -> verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST)).doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/similar?name= - должен вернуть товары с похожими названиями")
+    void doGet_ShouldReturnProductsWithSimilarName() throws Exception {
+        Product product = Instancio.create(Product.class);
+        ProductDTO productDTO = Instancio.create(ProductDTO.class);
+
+        when(request.getPathInfo()).thenReturn("/similar");
+        when(request.getParameter("name")).thenReturn("Ipohne");
+        when(request.getParameter("limit")).thenReturn("5");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+        when(productService.findProductsBySimilarName("Ipohne", 5)).thenReturn(List.of(product));
+        when(productMapper.toDTO(product)).thenReturn(productDTO);
+
+        productServlet.doGet(request, response);
+
+        softly.assertThat(responseText()).isEqualTo(objectMapper.writeValueAsString(List.of(productDTO)));
+        softly.assertThatCode(() -> verify(productService).findProductsBySimilarName("Ipohne", 5))
+                .doesNotThrowAnyException();
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("GET /api/products/search - должен вернуть 400 без поискового запроса")
+    void doGet_ShouldReturn400ForBlankSearchQuery() throws Exception {
+        when(request.getPathInfo()).thenReturn("/search");
+        when(request.getParameter("q")).thenReturn(" ");
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
+
+        productServlet.doGet(request, response);
+
+        softly.assertThatCode(() -> verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST)).doesNotThrowAnyException();
+        softly.assertThatCode(() -> verify(productService, never()).searchProducts(any(), any(), any(), anyInt()))
+                .doesNotThrowAnyException();
         softly.assertAll();
     }
-}
\ No newline at end of file
+}
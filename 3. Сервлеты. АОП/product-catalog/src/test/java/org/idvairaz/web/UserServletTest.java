@@ -1,6 +1,8 @@
 package org.idvairaz.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -20,9 +22,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.assertj.core.api.SoftAssertions;
 
 import java.io.BufferedReader;
-import java.io.PrintWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -53,7 +55,7 @@ class UserServletTest {
 
     private UserServlet userServlet;
     private ObjectMapper objectMapper;
-    private StringWriter responseWriter;
+    private ByteArrayOutputStream responseBody;
     private SoftAssertions softly;
 
     @BeforeEach
@@ -64,10 +66,32 @@ class UserServletTest {
         setField(userServlet, "createUserMapper", createUserMapper);
         setField(userServlet, "objectMapper", JacksonConfig.getObjectMapper());
         objectMapper = JacksonConfig.getObjectMapper();
-        responseWriter = new StringWriter();
+        responseBody = new ByteArrayOutputStream();
         softly = new SoftAssertions();
     }
 
+    private String responseText() {
+        return responseBody.toString(StandardCharsets.UTF_8);
+    }
+
+    private ServletOutputStream outputStreamOf(ByteArrayOutputStream buffer) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+        };
+    }
+
     private void setField(Object target, String fieldName, Object value) {
         try {
             var field = target.getClass().getDeclaredField(fieldName);
@@ -85,13 +109,13 @@ class UserServletTest {
         UserDTO userDTO = Instancio.create(UserDTO.class);
 
         when(request.getPathInfo()).thenReturn("/");
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(userService.getAllUsers()).thenReturn(List.of(user));
         when(userMapper.toDTO(user)).thenReturn(userDTO);
 
         userServlet.doGet(request, response);
 
-        softly.assertThat(responseWriter.toString()).contains(userDTO.getUsername());
+        softly.assertThat(responseText()).contains(userDTO.getUsername());
         softly.assertThatCode(() -> {
             verify(response).setContentType("application/json");
             verify(userService).getAllUsers();
@@ -107,7 +131,7 @@ class UserServletTest {
         UserDTO userDTO = Instancio.create(UserDTO.class);
 
         when(request.getReader()).thenReturn(new BufferedReader(new StringReader(objectMapper.writeValueAsString(createDto))));
-        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        when(response.getOutputStream()).thenReturn(outputStreamOf(responseBody));
         when(createUserMapper.toEntity(any(CreateUserDTO.class))).thenReturn(user);
         when(userService.createUser(any(), any(), any())).thenReturn(user);
         when(userMapper.toDTO(user)).thenReturn(userDTO);